@@ -32,4 +32,8 @@ public class LongIdGenerator {
     public long skip(long size) {
         return count.addAndGet(size);
     }
+
+    public void reset(long id) {
+        count.set(id);
+    }
 }
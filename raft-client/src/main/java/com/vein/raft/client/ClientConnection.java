@@ -4,6 +4,7 @@ import com.vein.common.Address;
 import com.vein.common.base.LoggerSupport;
 import com.vein.raft.client.protocal.ConnectRequest;
 import com.vein.raft.client.protocal.ConnectResponse;
+import com.vein.raft.client.protocal.RaftError;
 import com.vein.raft.client.protocal.RaftResponse;
 import com.vein.transport.api.Connection;
 import com.vein.transport.api.TransportClient;
@@ -13,22 +14,42 @@ import org.apache.commons.collections.CollectionUtils;
 import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static com.vein.raft.client.protocal.RaftResponse.SUCCESS;
 
 /**
+ * 客户端到集群的连接：请求直接发送给leader，同时保持一个到follower的备用连接。
+ * leader连接断开或响应表明leader已变化时，优先通过备用连接查询新的leader，响应中带有leader地址时直接连接该地址；
+ * 无法连接leader时退回到通过follower转发
+ *
  * @author shifeng.luo
  * @version created on 2017/11/18 上午11:55
  */
 public class ClientConnection extends LoggerSupport {
 
     private TransportClient client;
+
+    /**
+     * 发送请求的连接，通常是到leader的连接
+     */
     private volatile Connection connection;
+
+    /**
+     * 到follower的备用连接，用于leader失效后快速查询新的leader
+     */
+    private volatile Connection standby;
     private AtomicReference<CompletableFuture<Connection>> connectFuture = new AtomicReference<>();
-    private Address leader;
+    private volatile Address leader;
+
+    /**
+     * 正在连接的新leader，连接完成之前不重复切换
+     */
+    private final AtomicReference<Address> switching = new AtomicReference<>();
     private volatile List<Address> clusters;
     private volatile int index;
+    private final AtomicInteger reads = new AtomicInteger();
 
     ClientConnection(TransportClient client) {
         this.client = client;
@@ -53,6 +74,7 @@ public class ClientConnection extends LoggerSupport {
             if (error == null) {
                 connection.<T>request(request).whenComplete((response, e) -> {
                     if (e == null) {
+                        route(connection, response);
                         future.complete(response);
                     } else {
                         logger.error("send request:{} caught exception", request, e);
@@ -66,6 +88,34 @@ public class ClientConnection extends LoggerSupport {
         return future;
     }
 
+    /**
+     * 可以由任意成员处理的请求(如有界陈旧读)，轮流通过leader连接和备用连接发送以分摊leader的负载
+     */
+    public <T> CompletableFuture<T> requestAny(Object request) {
+        Connection standby = this.standby;
+        if (standby == null || standby.closed() || (reads.getAndIncrement() & 1) == 0) {
+            return request(request);
+        }
+
+        CompletableFuture<T> future = new CompletableFuture<>();
+        standby.<T>request(request).whenComplete((response, error) -> {
+            if (error == null) {
+                future.complete(response);
+            } else {
+                logger.error("send request:{} by standby:{} caught exception", request, standby.getConnectionId(), error);
+                closeStandby(standby);
+                this.<T>request(request).whenComplete((result, e) -> {
+                    if (e == null) {
+                        future.complete(result);
+                    } else {
+                        future.completeExceptionally(e);
+                    }
+                });
+            }
+        });
+        return future;
+    }
+
     public CompletableFuture<Void> send(Object request) {
         CompletableFuture<Void> future = new CompletableFuture<>();
         connect().whenComplete((connection, error) -> {
@@ -83,17 +133,88 @@ public class ClientConnection extends LoggerSupport {
         return future;
     }
 
+    /**
+     * 根据响应调整路由：响应带有leader地址时改为直接连接leader，leader已失效时下次请求重新查询leader
+     */
+    private void route(Connection connection, Object response) {
+        if (!(response instanceof RaftResponse)) {
+            return;
+        }
+
+        RaftResponse<?> raftResponse = (RaftResponse<?>) response;
+        Address redirect = raftResponse.getRedirect();
+        if (redirect != null && !redirect.equals(connection.remoteAddress()) && !redirect.equals(leader)
+            && switching.compareAndSet(null, redirect)) {
+            logger.info("leader changed to:{}, redirect from:{}", redirect, connection.remoteAddress());
+            switchTo(redirect, connection);
+            return;
+        }
+
+        byte status = raftResponse.getStatus();
+        if (status == RaftError.NOT_LEADER_ERROR.code || status == RaftError.NO_LEADER_ERROR.code) {
+            invalidate(connection);
+        }
+    }
+
+    /**
+     * 直接连接新的leader，原连接作为备用连接，连接成功之前请求仍然通过原连接发送；
+     * 连接成功后才更新leader，连接失败时leader保持不变，之后的重定向会再次尝试
+     */
+    private void switchTo(Address address, Connection current) {
+        client.connect(address).whenComplete((conn, error) -> {
+            if (error != null) {
+                logger.error("connect to leader:{} failed, keep sending by:{}", address, current.remoteAddress());
+                switching.set(null);
+                return;
+            }
+
+            conn.addCloseListener(() -> invalidate(conn));
+            this.leader = address;
+            this.connection = conn;
+            switching.set(null);
+            if (current != conn && !current.closed()) {
+                keepStandby(current);
+            }
+        });
+    }
+
+    private void invalidate(Connection connection) {
+        if (this.connection == connection) {
+            this.connection = null;
+        }
+    }
+
+    private void keepStandby(Connection connection) {
+        Connection prev = this.standby;
+        this.standby = connection;
+        if (prev != null && prev != connection && prev != this.connection) {
+            try {
+                prev.close();
+            } catch (Exception e) {
+                logger.error("close standby connection:{} caught exception", prev.getConnectionId(), e);
+            }
+        }
+    }
 
     CompletableFuture<Connection> connect() {
-        if (connection != null) {
+        Connection connection = this.connection;
+        if (connection != null && !connection.closed()) {
             return CompletableFuture.completedFuture(connection);
         }
 
-        if (!connectFuture.compareAndSet(null, new CompletableFuture<>())) {
-            return connectFuture.get();
+        CompletableFuture<Connection> future = new CompletableFuture<>();
+        if (!connectFuture.compareAndSet(null, future)) {
+            CompletableFuture<Connection> pending = connectFuture.get();
+            return pending == null ? connect() : pending;
+        }
+        future.whenComplete((conn, error) -> connectFuture.compareAndSet(future, null));
+
+        Connection standby = this.standby;
+        if (standby != null && !standby.closed()) {
+            connectCluster(standby, future);
+            return future;
         }
 
-        CompletableFuture<Connection> future = connectFuture.get();
         if (CollectionUtils.isEmpty(clusters)) {
             logger.error("cluster is empty");
             future.completeExceptionally(new RuntimeException("cluster is empty"));
@@ -122,27 +243,79 @@ public class ClientConnection extends LoggerSupport {
         }
     }
 
+    /**
+     * 通过任意成员查询leader，然后直接连接leader；当前连接的成员不是leader时保留为备用连接
+     */
     private void connectCluster(Connection connection, CompletableFuture<Connection> future) {
-        connection.addCloseListener(() -> this.connection = null);
-
         ConnectRequest request = new ConnectRequest();
         connection.<RaftResponse<ConnectResponse>>request(request).whenComplete((response, error) -> {
             if (error != null) {
                 logger.error("send connect request:{} by connection:{} failed", request, connection.getConnectionId());
+                closeStandby(connection);
                 connect(future);
-            } else {
-                if (response.getStatus() == SUCCESS) {
-                    ConnectResponse data = response.getData();
-                    this.leader = data.getLeader();
-                    this.clusters = data.getMembers();
-                    this.index = 0;
-                    future.complete(connection);
+                return;
+            }
+
+            if (response.getStatus() != SUCCESS || response.getData().getLeader() == null) {
+                closeStandby(connection);
+                connect(future);
+                return;
+            }
+
+            ConnectResponse data = response.getData();
+            this.leader = data.getLeader();
+            this.clusters = data.getMembers();
+            this.index = 0;
+            if (leader.equals(connection.remoteAddress())) {
+                use(connection, future);
+                connectStandby();
+                return;
+            }
+
+            client.connect(leader).whenComplete((conn, e) -> {
+                if (e != null) {
+                    // 无法直接连接leader时由follower转发
+                    logger.error("connect to leader:{} failed, send by follower:{}", leader, connection.remoteAddress());
+                    use(connection, future);
                 } else {
-                    connect(future);
+                    keepStandby(connection);
+                    use(conn, future);
                 }
-            }
+            });
         });
     }
 
+    private void use(Connection connection, CompletableFuture<Connection> future) {
+        connection.addCloseListener(() -> invalidate(connection));
+        this.connection = connection;
+        future.complete(connection);
+    }
+
+    private void closeStandby(Connection connection) {
+        if (this.standby == connection) {
+            this.standby = null;
+        }
+    }
+
+    /**
+     * 连接到leader之外的一个成员作为备用连接
+     */
+    private void connectStandby() {
+        Connection standby = this.standby;
+        if (standby != null && !standby.closed() && standby != this.connection) {
+            return;
+        }
 
+        for (Address address : clusters) {
+            if (!address.equals(leader)) {
+                client.connect(address).whenComplete((conn, error) -> {
+                    if (error == null) {
+                        conn.addCloseListener(() -> closeStandby(conn));
+                        keepStandby(conn);
+                    }
+                });
+                return;
+            }
+        }
+    }
 }
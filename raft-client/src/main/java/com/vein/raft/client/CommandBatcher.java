@@ -0,0 +1,164 @@
+package com.vein.raft.client;
+
+import com.vein.common.NamedThreadFactory;
+import com.vein.common.base.LoggerSupport;
+import com.vein.raft.client.protocal.BatchCommandRequest;
+import com.vein.raft.client.protocal.BatchCommandResponse;
+import com.vein.raft.client.protocal.RaftResponse;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static com.vein.raft.client.protocal.RaftResponse.SUCCESS;
+
+/**
+ * 客户端command批量发送：linger时间内提交的command打包为一个{@link BatchCommandRequest}，
+ * 达到maxBatchSize时立即发送；同时在途的批次数达到maxInflight后，新的批次排队等待之前的批次返回
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午10:00
+ */
+public class CommandBatcher extends LoggerSupport {
+    private final Function<BatchCommandRequest, CompletableFuture<BatchCommandResponse>> sender;
+    private final int maxBatchSize;
+    private final int maxInflight;
+    private final long lingerMicros;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+        new NamedThreadFactory("RaftClientBatchThread", true));
+
+    private final Queue<Batch> ready = new ArrayDeque<>();
+    private Batch current;
+    private int inflight;
+
+    /**
+     * @param sender       发送批次请求
+     * @param maxBatchSize 每批最多的command数
+     * @param maxInflight  最多同时在途的批次数
+     * @param lingerMicros 批次中第一条command等待更多command的时间(微秒)
+     */
+    public CommandBatcher(Function<BatchCommandRequest, CompletableFuture<BatchCommandResponse>> sender, int maxBatchSize,
+                          int maxInflight, long lingerMicros) {
+        this.sender = sender;
+        this.maxBatchSize = maxBatchSize;
+        this.maxInflight = maxInflight;
+        this.lingerMicros = lingerMicros;
+    }
+
+    public <T> CompletableFuture<T> submit(Command command) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Batch batch;
+        synchronized (this) {
+            if (current == null) {
+                current = new Batch(maxBatchSize);
+                Batch lingering = current;
+                timer.schedule(() -> seal(lingering), lingerMicros, TimeUnit.MICROSECONDS);
+            }
+            current.add(command, future);
+            if (current.commands.size() < maxBatchSize) {
+                return future;
+            }
+            ready.add(current);
+            current = null;
+            batch = poll();
+        }
+
+        send(batch);
+        return future;
+    }
+
+    public void close() {
+        timer.shutdown();
+    }
+
+    /**
+     * linger到期，还在攒的批次结束并进入发送队列
+     */
+    private void seal(Batch batch) {
+        Batch next;
+        synchronized (this) {
+            if (current != batch) {
+                return;
+            }
+            ready.add(current);
+            current = null;
+            next = poll();
+        }
+        send(next);
+    }
+
+    /**
+     * 取出下一个可以发送的批次并占用在途名额，调用方持有锁
+     */
+    private Batch poll() {
+        if (inflight >= maxInflight || ready.isEmpty()) {
+            return null;
+        }
+        inflight++;
+        return ready.poll();
+    }
+
+    private void send(Batch batch) {
+        if (batch == null) {
+            return;
+        }
+
+        BatchCommandRequest request = new BatchCommandRequest();
+        request.setCommands(batch.commands);
+        sender.apply(request).whenComplete((response, error) -> {
+            complete(batch, response, error);
+            Batch next;
+            synchronized (this) {
+                inflight--;
+                next = poll();
+            }
+            send(next);
+        });
+    }
+
+    private void complete(Batch batch, BatchCommandResponse response, Throwable error) {
+        if (error == null && response.getStatus() != SUCCESS) {
+            error = new RaftException(response.getStatus());
+        }
+        if (error == null && (response.getResponses() == null || response.getResponses().size() != batch.futures.size())) {
+            error = new IllegalStateException("batch response size mismatch, commands:" + batch.futures.size());
+        }
+
+        for (int i = 0; i < batch.futures.size(); i++) {
+            CompletableFuture<Object> future = batch.futures.get(i);
+            if (error != null) {
+                future.completeExceptionally(error);
+                continue;
+            }
+
+            RaftResponse<Object> result = response.getResponses().get(i);
+            if (result.getStatus() == SUCCESS) {
+                future.complete(result.getData());
+            } else {
+                future.completeExceptionally(new RaftException(result.getStatus()));
+            }
+        }
+    }
+
+    private static final class Batch {
+        final List<Command> commands;
+        final List<CompletableFuture<Object>> futures;
+
+        Batch(int capacity) {
+            this.commands = new ArrayList<>(capacity);
+            this.futures = new ArrayList<>(capacity);
+        }
+
+        @SuppressWarnings("unchecked")
+        void add(Command command, CompletableFuture<?> future) {
+            commands.add(command);
+            futures.add((CompletableFuture<Object>) future);
+        }
+    }
+}
@@ -16,6 +16,24 @@ public interface RaftClient {
 
     <T> CompletableFuture<T> submit(Command command);
 
+    /**
+     * 线性一致的只读查询，不写入日志
+     *
+     * @param command 查询command
+     * @return 查询结果
+     */
+    <T> CompletableFuture<T> query(Command command);
+
+    /**
+     * 指定一致性级别的只读查询，不写入日志
+     *
+     * @param command      查询command
+     * @param consistency  一致性级别
+     * @param maxStaleness {@link ReadConsistency#STALE}时允许落后leader的最长时间(ms)，其它级别忽略
+     * @return 查询结果
+     */
+    <T> CompletableFuture<T> query(Command command, ReadConsistency consistency, long maxStaleness);
+
     void register(Watcher watcher);
 
     void close();
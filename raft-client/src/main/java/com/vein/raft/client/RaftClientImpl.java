@@ -3,6 +3,10 @@ package com.vein.raft.client;
 import com.vein.common.Address;
 import com.vein.common.base.LoggerSupport;
 import com.vein.common.utils.AddressUtil;
+import com.vein.raft.client.protocal.BatchCommandResponse;
+import com.vein.raft.client.protocal.CommandRequest;
+import com.vein.raft.client.protocal.QueryRequest;
+import com.vein.raft.client.protocal.RaftResponse;
 import com.vein.serializer.api.Serializer;
 import com.vein.transport.api.Connection;
 import com.vein.transport.api.Transport;
@@ -20,6 +24,7 @@ public class RaftClientImpl extends LoggerSupport implements RaftClient {
     private List<Address> clusters;
     private Transport transport;
     private ClientConnection connection;
+    private volatile CommandBatcher batcher;
 
     public RaftClientImpl() {
         this.transport = TransportFactory.create("netty");
@@ -59,9 +64,54 @@ public class RaftClientImpl extends LoggerSupport implements RaftClient {
         return null;
     }
 
+    /**
+     * 开启批量模式，在{@link #start()}之前调用
+     *
+     * @param maxBatchSize 每批最多的command数
+     * @param maxInflight  最多同时在途的批次数
+     * @param lingerMicros 批次中第一条command等待更多command的时间(微秒)
+     */
+    public void enableBatch(int maxBatchSize, int maxInflight, long lingerMicros) {
+        this.batcher = new CommandBatcher(request -> connection.<BatchCommandResponse>request(request), maxBatchSize,
+            maxInflight, lingerMicros);
+    }
+
     @Override
     public <T> CompletableFuture<T> submit(Command command) {
-        return connection.request(command);
+        CommandBatcher batcher = this.batcher;
+        if (batcher != null) {
+            return batcher.submit(command);
+        }
+
+        CommandRequest request = new CommandRequest();
+        request.setCommand(command);
+        return unwrap(connection.<RaftResponse<T>>request(request));
+    }
+
+    @Override
+    public <T> CompletableFuture<T> query(Command command) {
+        return query(command, ReadConsistency.LINEARIZABLE, 0);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> query(Command command, ReadConsistency consistency, long maxStaleness) {
+        QueryRequest request = new QueryRequest();
+        request.setCommand(command);
+        request.setConsistency(consistency.code);
+        request.setMaxStaleness(maxStaleness);
+        if (consistency == ReadConsistency.STALE) {
+            return unwrap(connection.<RaftResponse<T>>requestAny(request));
+        }
+        return unwrap(connection.<RaftResponse<T>>request(request));
+    }
+
+    private <T> CompletableFuture<T> unwrap(CompletableFuture<RaftResponse<T>> future) {
+        return future.thenApply(response -> {
+            if (response.getStatus() != RaftResponse.SUCCESS) {
+                throw new RaftException(response.getStatus());
+            }
+            return response.getData();
+        });
     }
 
     @Override
@@ -71,7 +121,9 @@ public class RaftClientImpl extends LoggerSupport implements RaftClient {
 
     @Override
     public void close() {
-
+        if (batcher != null) {
+            batcher.close();
+        }
     }
 
     public void setClusters(List<Address> clusters) {
@@ -0,0 +1,20 @@
+package com.vein.raft.client;
+
+/**
+ * 服务端返回了失败的{@link com.vein.raft.client.protocal.RaftResponse}
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午9:55
+ */
+public class RaftException extends RuntimeException {
+    private final byte status;
+
+    public RaftException(byte status) {
+        super("raft response status:" + status);
+        this.status = status;
+    }
+
+    public byte getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,39 @@
+package com.vein.raft.client;
+
+/**
+ * 只读查询的一致性级别
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午10:40
+ */
+public enum ReadConsistency {
+    /**
+     * ReadIndex：leader通过一轮心跳确认身份后读，线性一致
+     */
+    LINEARIZABLE(0),
+
+    /**
+     * leader在租约期内直接读，不发送心跳；依赖各节点时钟速率的偏差有界，租约失效时退化为ReadIndex
+     */
+    LEASE(1),
+
+    /**
+     * 有界陈旧读：任意成员在落后leader不超过指定时间时直接读，可能读不到最近写入的数据
+     */
+    STALE(2);
+
+    ReadConsistency(int code) {
+        this.code = (byte) code;
+    }
+
+    public final byte code;
+
+    public static ReadConsistency valueOf(byte code) {
+        for (ReadConsistency consistency : values()) {
+            if (consistency.code == code) {
+                return consistency;
+            }
+        }
+        throw new IllegalArgumentException("unknown read consistency:" + code);
+    }
+}
@@ -0,0 +1,24 @@
+package com.vein.raft.client.protocal;
+
+import com.vein.raft.client.Command;
+
+import java.util.List;
+
+/**
+ * 一次发送的多条command，服务端拆分为独立的日志，按顺序返回每条command的结果
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午9:50
+ */
+public class BatchCommandRequest {
+
+    private List<Command> commands;
+
+    public List<Command> getCommands() {
+        return commands;
+    }
+
+    public void setCommands(List<Command> commands) {
+        this.commands = commands;
+    }
+}
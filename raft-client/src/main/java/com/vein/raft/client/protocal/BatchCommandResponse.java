@@ -0,0 +1,22 @@
+package com.vein.raft.client.protocal;
+
+import java.util.List;
+
+/**
+ * {@link BatchCommandRequest}的响应，responses与请求中的command一一对应
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午9:50
+ */
+public class BatchCommandResponse extends RaftResponse {
+
+    private List<RaftResponse<Object>> responses;
+
+    public List<RaftResponse<Object>> getResponses() {
+        return responses;
+    }
+
+    public void setResponses(List<RaftResponse<Object>> responses) {
+        this.responses = responses;
+    }
+}
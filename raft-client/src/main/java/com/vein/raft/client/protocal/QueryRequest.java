@@ -0,0 +1,49 @@
+package com.vein.raft.client.protocal;
+
+import com.vein.raft.client.Command;
+import com.vein.raft.client.ReadConsistency;
+
+/**
+ * 只读查询，不写入日志，按一致性级别由leader或任意成员直接查询状态机
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午10:20
+ */
+public class QueryRequest {
+
+    private Command command;
+
+    /**
+     * {@link ReadConsistency#code}
+     */
+    private byte consistency = ReadConsistency.LINEARIZABLE.code;
+
+    /**
+     * {@link ReadConsistency#STALE}允许落后leader的最长时间(ms)
+     */
+    private long maxStaleness;
+
+    public Command getCommand() {
+        return command;
+    }
+
+    public void setCommand(Command command) {
+        this.command = command;
+    }
+
+    public byte getConsistency() {
+        return consistency;
+    }
+
+    public void setConsistency(byte consistency) {
+        this.consistency = consistency;
+    }
+
+    public long getMaxStaleness() {
+        return maxStaleness;
+    }
+
+    public void setMaxStaleness(long maxStaleness) {
+        this.maxStaleness = maxStaleness;
+    }
+}
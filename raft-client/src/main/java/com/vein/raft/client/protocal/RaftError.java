@@ -6,7 +6,9 @@ package com.vein.raft.client.protocal;
  */
 public enum RaftError {
     NO_LEADER_ERROR(1),
-    INTERNAL_ERROR(2);
+    INTERNAL_ERROR(2),
+    NOT_LEADER_ERROR(3),
+    TOO_MANY_PROPOSALS_ERROR(4);
 
     RaftError(int code) {
         this.code = (byte) code;
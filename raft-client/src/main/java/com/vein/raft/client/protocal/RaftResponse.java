@@ -1,5 +1,7 @@
 package com.vein.raft.client.protocal;
 
+import com.vein.common.Address;
+
 /**
  * @author shifeng.luo
  * @version created on 2017/11/7 下午10:52
@@ -11,6 +13,11 @@ public class RaftResponse<T> {
 
     private T data;
 
+    /**
+     * 处理请求的节点不是leader时，告知客户端当前的leader地址，客户端据此直接连接leader
+     */
+    private Address redirect;
+
     public RaftResponse() {
     }
 
@@ -39,6 +46,14 @@ public class RaftResponse<T> {
         this.status = status;
     }
 
+    public Address getRedirect() {
+        return redirect;
+    }
+
+    public void setRedirect(Address redirect) {
+        this.redirect = redirect;
+    }
+
     public T getData() {
         return data;
     }
@@ -0,0 +1,303 @@
+package com.vein.raft.client;
+
+import com.vein.common.Address;
+import com.vein.common.base.CloseListener;
+import com.vein.raft.client.protocal.ConnectRequest;
+import com.vein.raft.client.protocal.ConnectResponse;
+import com.vein.raft.client.protocal.RaftError;
+import com.vein.raft.client.protocal.RaftResponse;
+import com.vein.transport.api.Connection;
+import com.vein.transport.api.ConnectionManager;
+import com.vein.transport.api.TransportClient;
+import com.vein.transport.api.handler.RequestHandler;
+import com.vein.transport.api.handler.ResponseHandler;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author shifeng.luo
+ * @version created on 2026/10/19 上午11:10
+ */
+public class ClientConnectionTest {
+    private final Address a = address(2001);
+    private final Address b = address(2002);
+    private final Address c = address(2003);
+
+    private FakeTransportClient client;
+
+    @Before
+    public void setUp() {
+        client = new FakeTransportClient();
+        client.start(a, message -> "a");
+        client.start(b, message -> "b");
+    }
+
+    @Test
+    public void connectLeaderAndStandby() throws Exception {
+        ClientConnection connection = new ClientConnection(client, Arrays.asList(a, b, c));
+
+        assertEquals("a", request(connection));
+        assertEquals(a, connection.getLeader());
+        assertEquals(1, client.attempts(b));
+
+        // 可以由任意成员处理的请求轮流通过leader连接和备用连接发送
+        assertEquals("a", connection.<RaftResponse<String>>requestAny("read").get(5, TimeUnit.SECONDS).getData());
+        assertEquals("b", connection.<RaftResponse<String>>requestAny("read").get(5, TimeUnit.SECONDS).getData());
+    }
+
+    @Test
+    public void sendByFollowerWhenLeaderUnreachable() throws Exception {
+        client.stop(a);
+        ClientConnection connection = new ClientConnection(client, Arrays.asList(b));
+
+        assertEquals("b", request(connection));
+        assertEquals(a, connection.getLeader());
+        assertEquals(1, client.attempts(a));
+    }
+
+    @Test
+    public void keepLeaderWhenSwitchFails() throws Exception {
+        ClientConnection connection = new ClientConnection(client, Arrays.asList(a, b, c));
+        assertEquals("a", request(connection));
+
+        client.start(a, message -> redirect(c));
+        request(connection);
+        assertEquals(1, client.attempts(c));
+        assertEquals(a, connection.getLeader());
+
+        // 连接失败后leader不变，之后的重定向再次尝试连接
+        client.start(c, message -> "c");
+        request(connection);
+        assertEquals(2, client.attempts(c));
+        assertEquals(c, connection.getLeader());
+        assertEquals("c", request(connection));
+    }
+
+    @Test
+    public void reconnectByStandby() throws Exception {
+        ClientConnection connection = new ClientConnection(client, Arrays.asList(a, b, c));
+        assertEquals("a", request(connection));
+
+        // leader连接断开后通过备用连接查询leader
+        client.connections(a).get(0).close();
+        assertEquals("a", request(connection));
+        assertEquals(2, client.attempts(a));
+        assertTrue(client.connections(b).get(0).received.get(0) instanceof ConnectRequest);
+    }
+
+    private Object request(ClientConnection connection) throws Exception {
+        RaftResponse<Object> response = connection.<RaftResponse<Object>>request("command").get(5, TimeUnit.SECONDS);
+        return response.getData();
+    }
+
+    private static RaftResponse<Object> redirect(Address leader) {
+        RaftResponse<Object> response = RaftResponse.fail(RaftError.NOT_LEADER_ERROR);
+        response.setRedirect(leader);
+        return response;
+    }
+
+    private static Address address(int port) {
+        Address address = new Address();
+        address.setIp("127.0.0.1");
+        address.setPort(port);
+        return address;
+    }
+
+    /**
+     * 模拟的集群：ConnectRequest都返回a为leader，其他请求由各成员的handler处理，
+     * handler返回{@link RaftResponse}时原样返回，否则作为成功响应的数据
+     */
+    private class FakeTransportClient implements TransportClient {
+        private final Map<Address, Function<Object, Object>> handlers = new ConcurrentHashMap<>();
+        private final Map<Address, List<FakeConnection>> connections = new ConcurrentHashMap<>();
+        private final Map<Address, Integer> attempts = new ConcurrentHashMap<>();
+
+        void start(Address address, Function<Object, Object> handler) {
+            handlers.put(address, handler);
+        }
+
+        void stop(Address address) {
+            handlers.remove(address);
+        }
+
+        int attempts(Address address) {
+            return attempts.getOrDefault(address, 0);
+        }
+
+        List<FakeConnection> connections(Address address) {
+            return connections.getOrDefault(address, new ArrayList<>());
+        }
+
+        @Override
+        public CompletableFuture<Connection> connect(Address address) {
+            attempts.merge(address, 1, Integer::sum);
+            CompletableFuture<Connection> future = new CompletableFuture<>();
+            if (!handlers.containsKey(address)) {
+                future.completeExceptionally(new IOException("connect to " + address + " refused"));
+                return future;
+            }
+
+            FakeConnection connection = new FakeConnection(address);
+            connections.computeIfAbsent(address, key -> new CopyOnWriteArrayList<>()).add(connection);
+            future.complete(connection);
+            return future;
+        }
+
+        @Override
+        public CompletableFuture<Connection> connect(Address address, int retryTimes) {
+            return connect(address);
+        }
+
+        @Override
+        public ConnectionManager getConnectionManager() {
+            return null;
+        }
+
+        @Override
+        public void close(int timeout) {
+        }
+
+        @Override
+        public boolean isClosed() {
+            return false;
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private Object handle(Address address, Object message) {
+            if (message instanceof ConnectRequest) {
+                ConnectResponse response = new ConnectResponse();
+                response.setLeader(a);
+                response.setMembers(Arrays.asList(a, b, c));
+                return RaftResponse.success(response);
+            }
+
+            Function<Object, Object> handler = handlers.get(address);
+            if (handler == null) {
+                throw new IllegalStateException(address + " is down");
+            }
+            Object result = handler.apply(message);
+            return result instanceof RaftResponse ? result : RaftResponse.success(result);
+        }
+    }
+
+    private class FakeConnection implements Connection {
+        private final Address remote;
+        private final List<Object> received = new CopyOnWriteArrayList<>();
+        private final List<CloseListener> listeners = new CopyOnWriteArrayList<>();
+        private volatile boolean closed;
+
+        FakeConnection(Address remote) {
+            this.remote = remote;
+        }
+
+        @Override
+        public String getConnectionId() {
+            return remote.getAddressStr();
+        }
+
+        @Override
+        public void registerHandlers(List<RequestHandler> handlers) {
+        }
+
+        @Override
+        public void send(Object message) {
+            received.add(message);
+        }
+
+        @Override
+        public <T> void send(Object message, ResponseHandler<T> handler) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T> void send(Object message, int timeout, ResponseHandler<T> handler) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> CompletableFuture<T> request(Object message) {
+            received.add(message);
+            CompletableFuture<T> future = new CompletableFuture<>();
+            try {
+                future.complete((T) client.handle(remote, message));
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+            return future;
+        }
+
+        @Override
+        public <T> CompletableFuture<T> request(Object message, int timeout) {
+            return request(message);
+        }
+
+        @Override
+        public <T> T syncRequest(Object message) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T> T syncRequest(Object message, int timeout) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void onMessage(Object message) {
+        }
+
+        @Override
+        public void addCloseListener(CloseListener listener) {
+            listeners.add(listener);
+        }
+
+        @Override
+        public boolean closed() {
+            return closed;
+        }
+
+        @Override
+        public Address localAddress() {
+            return null;
+        }
+
+        @Override
+        public Address remoteAddress() {
+            return remote;
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            for (CloseListener listener : listeners) {
+                listener.onClose();
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.vein.raft.client;
+
+import com.vein.common.NamedThreadFactory;
+import com.vein.raft.client.protocal.BatchCommandRequest;
+import com.vein.raft.client.protocal.BatchCommandResponse;
+import com.vein.raft.client.protocal.RaftResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 客户端批量发送与逐条发送的吞吐对比。服务端为模拟的单线程处理：每个请求固定开销-Dbenchmark.request.micros(默认20微秒)，
+ * 每条command开销-Dbenchmark.command.micros(默认1微秒)，网络往返-Dbenchmark.rtt.micros(默认200微秒)
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午10:10
+ */
+public class CommandBatchBenchmark {
+    private static final int COMMANDS = Integer.getInteger("benchmark.commands", 200000);
+    private static final int OUTSTANDING = Integer.getInteger("benchmark.outstanding", 4096);
+    private static final long REQUEST_MICROS = Long.getLong("benchmark.request.micros", 20);
+    private static final long COMMAND_MICROS = Long.getLong("benchmark.command.micros", 1);
+    private static final long RTT_MICROS = Long.getLong("benchmark.rtt.micros", 200);
+
+    private static final ExecutorService server = Executors.newSingleThreadExecutor(new NamedThreadFactory("BenchmarkServer", true));
+    private static final ScheduledExecutorService network = Executors.newSingleThreadScheduledExecutor(
+        new NamedThreadFactory("BenchmarkNetwork", true));
+
+    public static void main(String[] args) throws Exception {
+        run("unbatched", c -> request(1).thenApply(response -> null));
+        for (int batchSize : new int[]{16, 128, 1024}) {
+            CommandBatcher batcher = new CommandBatcher(CommandBatchBenchmark::request, batchSize, 8, 100);
+            run("batched(size=" + batchSize + ")", batcher::submit);
+            batcher.close();
+        }
+        server.shutdown();
+        network.shutdown();
+    }
+
+    private static void run(String name, Function<Command, CompletableFuture<Object>> client) throws Exception {
+        Command command = new Command() {
+        };
+
+        Semaphore outstanding = new Semaphore(OUTSTANDING);
+        long start = System.nanoTime();
+        for (int i = 0; i < COMMANDS; i++) {
+            outstanding.acquire();
+            client.apply(command).whenComplete((result, error) -> outstanding.release());
+        }
+        outstanding.acquire(OUTSTANDING);
+
+        long elapsed = System.nanoTime() - start;
+        System.out.println(name + ": " + COMMANDS * TimeUnit.SECONDS.toNanos(1) / elapsed + " commands/s");
+    }
+
+    /**
+     * 模拟一次请求：往返各一半的网络延迟，服务端串行处理
+     */
+    private static CompletableFuture<BatchCommandResponse> request(BatchCommandRequest request) {
+        return request(request.getCommands().size());
+    }
+
+    private static CompletableFuture<BatchCommandResponse> request(int commands) {
+        CompletableFuture<BatchCommandResponse> future = new CompletableFuture<>();
+        network.schedule(() -> server.execute(() -> {
+            spin(REQUEST_MICROS + COMMAND_MICROS * commands);
+            List<RaftResponse<Object>> responses = new ArrayList<>(commands);
+            for (int i = 0; i < commands; i++) {
+                responses.add(RaftResponse.success(null));
+            }
+            BatchCommandResponse response = new BatchCommandResponse();
+            response.setResponses(responses);
+            network.schedule(() -> future.complete(response), RTT_MICROS / 2, TimeUnit.MICROSECONDS);
+        }), RTT_MICROS / 2, TimeUnit.MICROSECONDS);
+        return future;
+    }
+
+    private static void spin(long micros) {
+        long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(micros);
+        while (System.nanoTime() < deadline) {
+            // busy wait
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.vein.raft.server;
+
+import com.vein.raft.client.Command;
+import com.vein.common.NamedThreadFactory;
+import com.vein.common.base.LoggerSupport;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 按分区key把一批日志分发到多个有序的执行通道并行应用，每个通道是一个单线程执行器，同一通道内保持日志顺序；
+ * 分区key为null的command作为屏障，等之前分发的日志全部应用后在调用线程中单独应用。
+ * 只在{@link ServerStateMachine}的执行线程中调用
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午11:10
+ */
+public class ApplyLanes extends LoggerSupport {
+    private final PartitionedLogStateMachine stateMachine;
+    private final ExecutorService[] lanes;
+
+    /**
+     * 所有已经分发的日志应用完成后完成
+     */
+    private CompletableFuture<Void> dispatched = CompletableFuture.completedFuture(null);
+
+    public ApplyLanes(PartitionedLogStateMachine stateMachine, int laneCount) {
+        this.stateMachine = stateMachine;
+        this.lanes = new ExecutorService[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = Executors.newSingleThreadExecutor(new NamedThreadFactory("LogApplyLane-" + i, true));
+        }
+    }
+
+    /**
+     * 分发一批日志
+     *
+     * @param commands 按日志顺序排列的command
+     * @return 与commands一一对应的结果，语义同{@link LogStateMachine#applyBatch(List, long)}
+     */
+    public CompletableFuture<List<Object>> apply(List<Command> commands) {
+        Object[] results = new Object[commands.size()];
+        List<List<Integer>> groups = new ArrayList<>(lanes.length);
+        for (int i = 0; i < lanes.length; i++) {
+            groups.add(new ArrayList<>());
+        }
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < commands.size(); i++) {
+            Command command = commands.get(i);
+            Object key = stateMachine.partitionKey(command);
+            if (key != null) {
+                groups.get((key.hashCode() & Integer.MAX_VALUE) % lanes.length).add(i);
+                continue;
+            }
+
+            flush(commands, groups, results, futures);
+            dispatched.join();
+            CompletableFuture<Void> barrier = apply(command, results, i);
+            futures.add(barrier);
+            dispatched = barrier;
+        }
+        flush(commands, groups, results, futures);
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+            .thenApply(ignore -> Arrays.asList(results));
+    }
+
+    /**
+     * 把各通道积累的command作为一个任务交给通道执行
+     */
+    private void flush(List<Command> commands, List<List<Integer>> groups, Object[] results,
+                       List<CompletableFuture<Void>> futures) {
+        for (int lane = 0; lane < lanes.length; lane++) {
+            List<Integer> group = groups.get(lane);
+            if (group.isEmpty()) {
+                continue;
+            }
+
+            List<Integer> positions = new ArrayList<>(group);
+            group.clear();
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            lanes[lane].execute(() -> {
+                List<CompletableFuture<Void>> applies = new ArrayList<>(positions.size());
+                for (int position : positions) {
+                    applies.add(apply(commands.get(position), results, position));
+                }
+                CompletableFuture.allOf(applies.toArray(new CompletableFuture[0])).whenComplete((result, error) -> future.complete(null));
+            });
+            futures.add(future);
+            dispatched = CompletableFuture.allOf(dispatched, future);
+        }
+    }
+
+    private CompletableFuture<Void> apply(Command command, Object[] results, int position) {
+        CompletableFuture<Object> future;
+        try {
+            future = stateMachine.apply(command);
+        } catch (Throwable e) {
+            results[position] = e;
+            return CompletableFuture.completedFuture(null);
+        }
+        return future.handle((result, error) -> {
+            results[position] = error == null ? result : error;
+            return null;
+        });
+    }
+
+    public int size() {
+        return lanes.length;
+    }
+
+    public void close() {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+    }
+}
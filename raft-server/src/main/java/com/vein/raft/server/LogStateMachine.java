@@ -4,6 +4,8 @@ package com.vein.raft.server;
 import com.vein.raft.client.Command;
 import com.vein.serializer.api.Serializer;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -14,6 +16,44 @@ public interface LogStateMachine extends Snapshotable {
 
     <T> CompletableFuture<T> apply(Command command);
 
+    /**
+     * 批量应用一段连续的日志，默认逐条调用{@link #apply(Command)}；
+     * 适合批量写入的存储可以覆盖该方法，一次处理整批command
+     *
+     * @param commands   按日志顺序排列的command
+     * @param firstIndex 第一条command的日志index，之后的index连续
+     * @return 与commands一一对应的结果，某条command失败时对应位置为该异常(Throwable)，整体失败时所有command都以该异常完成
+     */
+    default CompletableFuture<List<Object>> applyBatch(List<Command> commands, long firstIndex) {
+        List<CompletableFuture<Object>> futures = new ArrayList<>(commands.size());
+        for (Command command : commands) {
+            CompletableFuture<Object> future = apply(command);
+            futures.add(future.handle((result, error) -> error == null ? result : error));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(ignore -> {
+            List<Object> results = new ArrayList<>(futures.size());
+            for (CompletableFuture<Object> future : futures) {
+                results.add(future.join());
+            }
+            return results;
+        });
+    }
+
+    /**
+     * 只读查询，不经过日志，调用时所有readIndex之前的日志都已经应用。
+     * 可能与{@link #apply(Command)}并发调用，实现需要保证读取的线程安全。
+     * 默认不支持查询，返回以{@link UnsupportedOperationException}完成的future
+     *
+     * @param command 查询command
+     * @return 查询结果
+     */
+    default <T> CompletableFuture<T> query(Command command) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(new UnsupportedOperationException("state machine doesn't support query"));
+        return future;
+    }
+
     Compactor compactor();
 
     Serializer getSerializer();
@@ -0,0 +1,21 @@
+package com.vein.raft.server;
+
+import com.vein.raft.client.Command;
+
+/**
+ * 可以按分区并行应用的状态机：相同分区key的command按日志顺序在同一个通道中应用，不同通道并行，
+ * 因此{@link #apply(Command)}会被多个线程同时调用，实现需要保证不同分区之间的线程安全
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午11:10
+ */
+public interface PartitionedLogStateMachine extends LogStateMachine {
+
+    /**
+     * command的分区key
+     *
+     * @param command command
+     * @return 分区key，返回null表示command涉及所有分区，等之前的日志全部应用后单独应用
+     */
+    Object partitionKey(Command command);
+}
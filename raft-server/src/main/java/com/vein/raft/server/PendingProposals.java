@@ -0,0 +1,196 @@
+package com.vein.raft.server;
+
+import com.vein.common.base.LoggerSupport;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongSupplier;
+
+/**
+ * leader上等待应用结果的提案，按日志index存放在环形数组中。
+ * 提案的index连续递增，完成后清空所在的槽并推进连续空槽的下界；未完成的提案数达到容量时拒绝新的提案
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午9:05
+ */
+public class PendingProposals extends LoggerSupport {
+    private final CompletableFuture[] futures;
+    private final int mask;
+
+    /**
+     * 最小的可能未完成的提案index
+     */
+    private long head = 1;
+
+    /**
+     * 最大的提案index
+     */
+    private long tail;
+
+    /**
+     * @param capacity 最多未完成的提案数，向上取整为2的幂
+     */
+    public PendingProposals(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.futures = new CompletableFuture[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * 添加日志并登记提案，日志的添加和登记在同一把锁内完成，避免日志在登记之前被应用
+     *
+     * @param append 添加日志，返回日志的index
+     * @param future 应用结果的future
+     * @return 日志的index，未完成的提案已满时返回-1且不添加日志
+     */
+    public synchronized long add(LongSupplier append, CompletableFuture<?> future) {
+        if (available() == 0) {
+            return -1;
+        }
+
+        long index = append.getAsLong();
+        if (head > tail) {
+            head = index;
+        }
+        if (index - head >= futures.length) {
+            // 提案之外的日志占用了index，不能再放入环中
+            future.completeExceptionally(new IllegalStateException("too many pending proposals, index:" + index));
+            return index;
+        }
+
+        futures[(int) (index & mask)] = future;
+        tail = Math.max(tail, index);
+        return index;
+    }
+
+    /**
+     * 批量添加日志并登记提案
+     *
+     * @param append  添加日志，返回最后一条日志的index，日志的index连续
+     * @param futures 与日志一一对应的应用结果的future
+     * @return 最后一条日志的index，剩余容量不足时返回-1且不添加日志
+     */
+    public synchronized long addAll(LongSupplier append, List<? extends CompletableFuture<?>> futures) {
+        int count = futures.size();
+        if (count > available()) {
+            return -1;
+        }
+
+        long lastIndex = append.getAsLong();
+        long firstIndex = lastIndex - count + 1;
+        if (head > tail) {
+            head = firstIndex;
+        }
+        if (lastIndex - head >= this.futures.length) {
+            IllegalStateException error = new IllegalStateException("too many pending proposals, index:" + lastIndex);
+            for (CompletableFuture<?> future : futures) {
+                future.completeExceptionally(error);
+            }
+            return lastIndex;
+        }
+
+        for (int i = 0; i < count; i++) {
+            this.futures[(int) ((firstIndex + i) & mask)] = futures.get(i);
+        }
+        tail = Math.max(tail, lastIndex);
+        return lastIndex;
+    }
+
+    /**
+     * 还能登记的提案数
+     */
+    public synchronized int available() {
+        return (int) Math.max(0, futures.length - (tail - head + 1));
+    }
+
+    /**
+     * 取出已经应用的提案
+     *
+     * @param index 日志index
+     * @return 提案的future，不是本节点的提案时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized CompletableFuture<Object> remove(long index) {
+        if (index < head || index > tail) {
+            return null;
+        }
+
+        int slot = (int) (index & mask);
+        CompletableFuture<Object> future = futures[slot];
+        futures[slot] = null;
+        while (head <= tail && futures[(int) (head & mask)] == null) {
+            head++;
+        }
+        return future;
+    }
+
+    /**
+     * 批量取出一段连续日志上已经应用的提案
+     *
+     * @param firstIndex 第一条日志的index
+     * @param count      日志条数
+     * @return 与日志一一对应的提案的future，不是本节点的提案时对应位置为null
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized CompletableFuture<Object>[] removeAll(long firstIndex, int count) {
+        CompletableFuture<Object>[] removed = new CompletableFuture[count];
+        long from = Math.max(head, firstIndex);
+        long to = Math.min(tail, firstIndex + count - 1);
+        for (long i = from; i <= to; i++) {
+            int slot = (int) (i & mask);
+            removed[(int) (i - firstIndex)] = futures[slot];
+            futures[slot] = null;
+        }
+        while (head <= tail && futures[(int) (head & mask)] == null) {
+            head++;
+        }
+        return removed;
+    }
+
+    /**
+     * 批量失败指定index之后的提案
+     *
+     * @param index 该index及之前的提案保留，它们已经提交，会在应用后正常完成
+     * @param error 失败原因
+     */
+    public void fail(long index, Throwable error) {
+        CompletableFuture[] failed;
+        int count = 0;
+        synchronized (this) {
+            long from = Math.max(head, index + 1);
+            if (from > tail) {
+                return;
+            }
+
+            failed = new CompletableFuture[(int) (tail - from + 1)];
+            for (long i = from; i <= tail; i++) {
+                int slot = (int) (i & mask);
+                if (futures[slot] != null) {
+                    failed[count++] = futures[slot];
+                    futures[slot] = null;
+                }
+            }
+            tail = from - 1;
+            while (head <= tail && futures[(int) (head & mask)] == null) {
+                head++;
+            }
+        }
+
+        if (count > 0) {
+            logger.info("fail {} pending proposals after index:{}", count, index);
+        }
+        for (int i = 0; i < count; i++) {
+            failed[i].completeExceptionally(error);
+        }
+    }
+
+    public synchronized int size() {
+        int size = 0;
+        for (long i = head; i <= tail; i++) {
+            if (futures[(int) (i & mask)] != null) {
+                size++;
+            }
+        }
+        return size;
+    }
+}
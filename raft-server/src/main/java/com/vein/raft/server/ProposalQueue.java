@@ -0,0 +1,184 @@
+package com.vein.raft.server;
+
+import com.vein.common.NamedThreadFactory;
+import com.vein.common.base.LoggerSupport;
+import com.vein.raft.server.exceptions.NotLeaderException;
+import com.vein.raft.server.exceptions.TooManyProposalsException;
+import com.vein.raft.server.storage.logs.RaftLogger;
+import com.vein.raft.server.storage.logs.entry.LogEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * leader的提案队列：客户端线程只负责序列化并入队，提案线程每次取出最多maxEntries条、maxBytes字节的提案，
+ * 不足时最多等待linger，然后通过{@link RaftLogger#appendAll(List, List)}一次写入并只唤醒一次复制，
+ * 每个提案的结果仍然单独完成
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午9:30
+ */
+public class ProposalQueue extends LoggerSupport {
+    private static final long IDLE_POLL_INTERVAL = 100;
+
+    private final RaftLogger raftLogger;
+    private final PendingProposals proposals;
+    private final BooleanSupplier leader;
+    private final int maxEntries;
+    private final int maxBytes;
+    private final long lingerNanos;
+    private final BlockingQueue<Proposal> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new NamedThreadFactory("ProposalBatchThread", true));
+
+    private volatile boolean running = true;
+
+    /**
+     * @param leader       当前是否为leader，提案写入日志前检查
+     * @param maxEntries   每批最多的提案数
+     * @param maxBytes     每批最多的字节数
+     * @param lingerMicros 不足一批时等待更多提案的时间(微秒)，0表示只取已经在队列中的提案
+     */
+    public ProposalQueue(RaftLogger raftLogger, PendingProposals proposals, BooleanSupplier leader, int maxEntries, int maxBytes,
+                         long lingerMicros) {
+        this.raftLogger = raftLogger;
+        this.proposals = proposals;
+        this.leader = leader;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.lingerNanos = TimeUnit.MICROSECONDS.toNanos(lingerMicros);
+        executor.execute(this::run);
+    }
+
+    /**
+     * 提交提案
+     *
+     * @param entry 日志记录
+     * @return 日志应用后以结果完成的future
+     */
+    public <T> CompletableFuture<T> propose(LogEntry entry) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (!running) {
+            future.completeExceptionally(new IllegalStateException("proposal queue has closed"));
+            return future;
+        }
+
+        byte[] payload = raftLogger.serialize(entry);
+        queue.add(new Proposal(entry, payload, future));
+        return future;
+    }
+
+    public void close() {
+        running = false;
+        executor.shutdown();
+        try {
+            executor.awaitTermination(IDLE_POLL_INTERVAL * 10, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            logger.warn("wait proposal thread terminate is interrupted");
+        }
+    }
+
+    private void run() {
+        List<Proposal> batch = new ArrayList<>(maxEntries);
+        while (running) {
+            try {
+                Proposal first = queue.poll(IDLE_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    drain(batch, first.payload.length);
+                    append(batch);
+                }
+            } catch (InterruptedException e) {
+                logger.warn("proposal thread is interrupted");
+            } catch (Throwable e) {
+                logger.error("append {} proposals caught exception", batch.size(), e);
+                fail(batch, 0, e);
+            } finally {
+                batch.clear();
+            }
+        }
+
+        List<Proposal> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        fail(remaining, 0, new NotLeaderException("proposal queue has closed"));
+    }
+
+    /**
+     * 继续取出提案直到达到条数或字节数上限，队列为空时最多等待到linger结束
+     */
+    private void drain(List<Proposal> batch, long bytes) throws InterruptedException {
+        long deadline = System.nanoTime() + lingerNanos;
+        while (batch.size() < maxEntries) {
+            Proposal next = queue.peek();
+            if (next == null) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return;
+                }
+
+                next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    return;
+                }
+            } else if (bytes + next.payload.length > maxBytes) {
+                return;
+            } else {
+                queue.poll();
+            }
+
+            // 等待得到的提案超出字节上限时也放入本批，最多超出一条
+            batch.add(next);
+            bytes += next.payload.length;
+        }
+    }
+
+    private void append(List<Proposal> batch) {
+        if (!leader.getAsBoolean()) {
+            fail(batch, 0, new NotLeaderException());
+            return;
+        }
+
+        int count = Math.min(batch.size(), proposals.available());
+        if (count > 0) {
+            List<LogEntry> entries = new ArrayList<>(count);
+            List<byte[]> payloads = new ArrayList<>(count);
+            List<CompletableFuture<Object>> futures = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Proposal proposal = batch.get(i);
+                entries.add(proposal.entry);
+                payloads.add(proposal.payload);
+                futures.add(proposal.future);
+            }
+
+            if (proposals.addAll(() -> raftLogger.appendAll(entries, payloads), futures) < 0) {
+                count = 0;
+            }
+        }
+        fail(batch, count, new TooManyProposalsException());
+    }
+
+    private void fail(List<Proposal> batch, int from, Throwable error) {
+        for (int i = from; i < batch.size(); i++) {
+            batch.get(i).future.completeExceptionally(error);
+        }
+    }
+
+    private static final class Proposal {
+        final LogEntry entry;
+        final byte[] payload;
+        final CompletableFuture<Object> future;
+
+        @SuppressWarnings("unchecked")
+        Proposal(LogEntry entry, byte[] payload, CompletableFuture<?> future) {
+            this.entry = entry;
+            this.payload = payload;
+            this.future = (CompletableFuture<Object>) future;
+        }
+    }
+}
@@ -55,9 +55,67 @@ public class RaftConfig {
     private static final String JOIN_RETRY_TIMES = "raft.server.join.retry.times";
     private static final int DEFAULT_JOIN_RETRY_TIMES = 6;
 
+    /**
+     * 每个AppendRequest中日志的字节数及条数上限，两者先达到的为准
+     */
     private static final String MAX_APPEND_SIZE = "raft.server.append.size.max";
     private static final int DEFAULT_MAX_APPEND_SIZE = 5 * 1024 * 1024;
 
+    private static final String MAX_APPEND_ENTRIES = "raft.server.append.entries.max";
+    private static final int DEFAULT_MAX_APPEND_ENTRIES = 4096;
+
+    /**
+     * 开启自适应后，每个follower的字节数上限从该值开始，随响应时间在该值与最大值之间调整
+     */
+    private static final String MIN_APPEND_SIZE = "raft.server.append.size.min";
+    private static final int DEFAULT_MIN_APPEND_SIZE = 64 * 1024;
+
+    private static final String APPEND_ADAPTIVE = "raft.server.append.adaptive";
+    private static final boolean DEFAULT_APPEND_ADAPTIVE = false;
+
+    /**
+     * 每个follower同时在途的AppendRequest数量及日志字节数上限，超出后等待响应再发送
+     */
+    private static final String REPLICATE_INFLIGHT_MAX = "raft.server.replicate.inflight.max";
+    private static final int DEFAULT_REPLICATE_INFLIGHT_MAX = 8;
+
+    private static final String REPLICATE_INFLIGHT_BYTES = "raft.server.replicate.inflight.bytes";
+    private static final long DEFAULT_REPLICATE_INFLIGHT_BYTES = 32 * 1024 * 1024;
+
+    /**
+     * leader上最多未完成的提案数，超出后拒绝新的提案
+     */
+    private static final String PROPOSAL_PENDING_MAX = "raft.server.proposal.pending.max";
+    private static final int DEFAULT_PROPOSAL_PENDING_MAX = 64 * 1024;
+
+    /**
+     * leader每批写入日志的提案数及字节数上限，不足一批时最多等待linger(微秒)
+     */
+    private static final String PROPOSAL_BATCH_ENTRIES = "raft.server.proposal.batch.entries";
+    private static final int DEFAULT_PROPOSAL_BATCH_ENTRIES = 1024;
+
+    private static final String PROPOSAL_BATCH_BYTES = "raft.server.proposal.batch.bytes";
+    private static final int DEFAULT_PROPOSAL_BATCH_BYTES = 1024 * 1024;
+
+    private static final String PROPOSAL_LINGER = "raft.server.proposal.linger";
+    private static final long DEFAULT_PROPOSAL_LINGER = 0;
+
+    /**
+     * 状态机实现{@link PartitionedLogStateMachine}时并行应用的通道数
+     */
+    private static final String APPLY_LANES = "raft.server.apply.lanes";
+    private static final int DEFAULT_APPLY_LANES = 4;
+
+    /**
+     * leader租约读，默认关闭：租约为最小选举超时减去时钟偏差(ms)；开启后follower在最小选举超时内收到过leader心跳时拒绝投票，
+     * 会改变选举和故障切换的行为
+     */
+    private static final String READ_LEASE = "raft.server.read.lease";
+    private static final boolean DEFAULT_READ_LEASE = false;
+
+    private static final String READ_LEASE_DRIFT = "raft.server.read.lease.drift";
+    private static final int DEFAULT_READ_LEASE_DRIFT = 200;
+
     private static final String LOG_NAME = "raft.server.log.name";
     private static final String DEFAULT_LOG_NAME = "raft";
 
@@ -75,6 +133,42 @@ public class RaftConfig {
     private static final String COMMAND_MAX_SIZE = "raft.server.command.size.max";
     private static final int DEFAULT_COMMAND_MAX_SIZE = 1024 * 1024;
 
+    /**
+     * 日志持久化策略:batch(每批fsync一次),interval(每隔flush.interval毫秒fsync一次),none(只写操作系统缓存)
+     */
+    private static final String LOG_DURABILITY = "raft.server.log.durability";
+    private static final String DEFAULT_LOG_DURABILITY = "batch";
+
+    private static final String LOG_FLUSH_INTERVAL = "raft.server.log.flush.interval";
+    private static final int DEFAULT_LOG_FLUSH_INTERVAL = 1000;
+
+    /**
+     * group commit每批最多写入的日志条数
+     */
+    private static final String LOG_COMMIT_BATCH_MAX = "raft.server.log.commit.batch.max";
+    private static final int DEFAULT_LOG_COMMIT_BATCH_MAX = 1024;
+
+    /**
+     * segment写入方式:channel(FileChannel写入),mmap(预分配文件并写入MappedByteBuffer)
+     */
+    private static final String LOG_SEGMENT_TYPE = "raft.server.log.segment.type";
+    private static final String DEFAULT_LOG_SEGMENT_TYPE = "channel";
+
+    /**
+     * 快照完成后删除快照index之前的日志时，为落后的follower额外保留的日志条数
+     */
+    private static final String LOG_COMPACT_RETENTION = "raft.server.log.compact.retention";
+    private static final int DEFAULT_LOG_COMPACT_RETENTION = 10 * 1000;
+
+    /**
+     * 内存中缓存的日志条数上限(向上取整为2的幂)及字节数上限，超出后按index从旧到新淘汰已写入文件的日志
+     */
+    private static final String LOG_CACHE_ENTRIES = "raft.server.log.cache.entries";
+    private static final int DEFAULT_LOG_CACHE_ENTRIES = 64 * 1024;
+
+    private static final String LOG_CACHE_BYTES = "raft.server.log.cache.bytes";
+    private static final long DEFAULT_LOG_CACHE_BYTES = 64 * 1024 * 1024;
+
 
     public RaftConfig(Configure configure) {
         this.configure = configure;
@@ -143,6 +237,60 @@ public class RaftConfig {
         return configure.getInt(MAX_APPEND_SIZE, DEFAULT_MAX_APPEND_SIZE);
     }
 
+    public int getMaxAppendEntries() {
+        return configure.getInt(MAX_APPEND_ENTRIES, DEFAULT_MAX_APPEND_ENTRIES);
+    }
+
+    public int getMinAppendSize() {
+        return configure.getInt(MIN_APPEND_SIZE, DEFAULT_MIN_APPEND_SIZE);
+    }
+
+    public boolean isAppendAdaptive() {
+        return configure.getBoolean(APPEND_ADAPTIVE, DEFAULT_APPEND_ADAPTIVE);
+    }
+
+    public int getReplicateInflightMax() {
+        return configure.getInt(REPLICATE_INFLIGHT_MAX, DEFAULT_REPLICATE_INFLIGHT_MAX);
+    }
+
+    public long getReplicateInflightBytes() {
+        return configure.getLong(REPLICATE_INFLIGHT_BYTES, DEFAULT_REPLICATE_INFLIGHT_BYTES);
+    }
+
+    public int getProposalPendingMax() {
+        return configure.getInt(PROPOSAL_PENDING_MAX, DEFAULT_PROPOSAL_PENDING_MAX);
+    }
+
+    public int getProposalBatchEntries() {
+        return configure.getInt(PROPOSAL_BATCH_ENTRIES, DEFAULT_PROPOSAL_BATCH_ENTRIES);
+    }
+
+    public int getProposalBatchBytes() {
+        return configure.getInt(PROPOSAL_BATCH_BYTES, DEFAULT_PROPOSAL_BATCH_BYTES);
+    }
+
+    public long getProposalLinger() {
+        return configure.getLong(PROPOSAL_LINGER, DEFAULT_PROPOSAL_LINGER);
+    }
+
+    public int getApplyLanes() {
+        return configure.getInt(APPLY_LANES, DEFAULT_APPLY_LANES);
+    }
+
+    public boolean isReadLease() {
+        return configure.getBoolean(READ_LEASE, DEFAULT_READ_LEASE);
+    }
+
+    /**
+     * leader租约时长(ms)，未开启租约读时为0
+     */
+    public int getReadLeaseTimeout() {
+        if (!isReadLease()) {
+            return 0;
+        }
+        return Math.max(0, getMinElectTimeout() - configure.getInt(READ_LEASE_DRIFT, DEFAULT_READ_LEASE_DRIFT));
+    }
+
     public int getHeartbeatInterval() {
         return configure.getInt(HEARTBEAT_INTERVAL, DEFAULT_HEARTBEAT_INTERVAL);
     }
@@ -173,4 +321,32 @@ public class RaftConfig {
     public int getCommandMaxSize() {
         return configure.getInt(COMMAND_MAX_SIZE, DEFAULT_COMMAND_MAX_SIZE);
     }
+
+    public String getLogDurability() {
+        return configure.getString(LOG_DURABILITY, DEFAULT_LOG_DURABILITY);
+    }
+
+    public int getLogFlushInterval() {
+        return configure.getInt(LOG_FLUSH_INTERVAL, DEFAULT_LOG_FLUSH_INTERVAL);
+    }
+
+    public int getLogCommitBatchMax() {
+        return configure.getInt(LOG_COMMIT_BATCH_MAX, DEFAULT_LOG_COMMIT_BATCH_MAX);
+    }
+
+    public int getLogCacheEntries() {
+        return configure.getInt(LOG_CACHE_ENTRIES, DEFAULT_LOG_CACHE_ENTRIES);
+    }
+
+    public long getLogCacheBytes() {
+        return configure.getLong(LOG_CACHE_BYTES, DEFAULT_LOG_CACHE_BYTES);
+    }
+
+    public String getLogSegmentType() {
+        return configure.getString(LOG_SEGMENT_TYPE, DEFAULT_LOG_SEGMENT_TYPE);
+    }
+
+    public int getLogCompactRetention() {
+        return configure.getInt(LOG_COMPACT_RETENTION, DEFAULT_LOG_COMPACT_RETENTION);
+    }
 }
@@ -9,9 +9,6 @@ import com.vein.common.base.LoggerSupport;
 import com.vein.transport.api.Connection;
 import com.vein.transport.api.TransportClient;
 
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Future;
 
 /**
@@ -48,8 +45,6 @@ public class RaftMemberState extends LoggerSupport {
      */
     private volatile long nextSnapshotOffset;
 
-    private final ConcurrentMap<Long, CompletableFuture> commitFutures = new ConcurrentHashMap<>();
-
     public RaftMemberState(TransportClient client, RaftMember member, Replicator replicator) {
         this.client = client;
         this.member = member;
@@ -86,15 +81,6 @@ public class RaftMemberState extends LoggerSupport {
         replicateTask.stop();
     }
 
-    public void addCommitFuture(long logIndex, CompletableFuture future) {
-        commitFutures.put(logIndex, future);
-    }
-
-
-    public CompletableFuture removeCommitFuture(long logIndex) {
-        return commitFutures.remove(logIndex);
-    }
-
     public Future<?> getAppendFuture() {
         return appendFuture;
     }
@@ -1,6 +1,11 @@
 package com.vein.raft.server;
 
+import com.vein.raft.client.protocal.BatchCommandRequest;
+import com.vein.raft.client.protocal.BatchCommandResponse;
 import com.vein.raft.client.protocal.CommandRequest;
+import com.vein.raft.client.protocal.ConnectRequest;
+import com.vein.raft.client.protocal.ConnectResponse;
+import com.vein.raft.client.protocal.QueryRequest;
 import com.vein.raft.client.protocal.RaftResponse;
 import com.vein.raft.server.events.AppendRequest;
 import com.vein.raft.server.events.AppendResponse;
@@ -46,4 +51,20 @@ public interface RaftServer extends Startable, Closable {
     CompletableFuture<InstallSnapshotResponse> handle(InstallSnapshotRequest request);
 
     <T> CompletableFuture<RaftResponse<T>> handle(CommandRequest request);
+
+    /**
+     * 客户端连接时返回当前的leader及所有成员的地址
+     */
+    CompletableFuture<RaftResponse<ConnectResponse>> handle(ConnectRequest request);
+
+    /**
+     * 批量command拆分为独立的日志，所有command完成后按顺序返回每条的结果
+     */
+    CompletableFuture<BatchCommandResponse> handle(BatchCommandRequest request);
+
+    /**
+     * 只读查询，不写入日志：线性一致读由leader按ReadIndex确认身份，租约读由leader在租约期内直接确认，
+     * 陈旧读由落后leader不超过指定时间的follower直接处理，都在状态机应用到readIndex后查询
+     */
+    <T> CompletableFuture<RaftResponse<T>> handle(QueryRequest request);
 }
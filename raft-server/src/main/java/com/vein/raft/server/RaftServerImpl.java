@@ -1,7 +1,14 @@
 package com.vein.raft.server;
 
 import com.vein.raft.client.CommandTypes;
+import com.vein.raft.client.ReadConsistency;
+import com.vein.raft.client.Command;
+import com.vein.raft.client.protocal.BatchCommandRequest;
+import com.vein.raft.client.protocal.BatchCommandResponse;
 import com.vein.raft.client.protocal.CommandRequest;
+import com.vein.raft.client.protocal.ConnectRequest;
+import com.vein.raft.client.protocal.ConnectResponse;
+import com.vein.raft.client.protocal.QueryRequest;
 import com.vein.raft.client.protocal.RaftError;
 import com.vein.raft.client.protocal.RaftResponse;
 import com.vein.raft.server.events.AppendRequest;
@@ -15,20 +22,30 @@ import com.vein.raft.server.events.LeaveRequest;
 import com.vein.raft.server.events.LeaveResponse;
 import com.vein.raft.server.events.VoteRequest;
 import com.vein.raft.server.events.VoteResponse;
+import com.vein.raft.server.exceptions.NotLeaderException;
+import com.vein.raft.server.exceptions.TooManyProposalsException;
 import com.vein.raft.server.handlers.AppendRequestHandler;
+import com.vein.raft.server.handlers.BatchCommandRequestHandler;
+import com.vein.raft.server.handlers.CommandRequestHandler;
+import com.vein.raft.server.handlers.ConnectRequestHandler;
 import com.vein.raft.server.handlers.InstallSnapshotRequestHandler;
 import com.vein.raft.server.handlers.JoinRequestHandler;
 import com.vein.raft.server.handlers.LeaveRequestHandler;
+import com.vein.raft.server.handlers.QueryRequestHandler;
 import com.vein.raft.server.handlers.VoteRequestHandler;
 import com.vein.raft.server.state.CandidateState;
 import com.vein.raft.server.state.FollowerState;
 import com.vein.raft.server.state.LeaderState;
 import com.vein.raft.server.state.PassiveState;
+import com.vein.raft.server.state.ServerState;
+import com.vein.raft.server.state.support.ReadIndex;
 import com.vein.raft.server.state.support.Replicator;
 import com.vein.raft.server.state.support.timer.ElectTimeoutTimer;
 import com.vein.raft.server.state.support.timer.HeartbeatTimeoutTimer;
+import com.vein.raft.server.storage.logs.DurabilityPolicy;
 import com.vein.raft.server.storage.logs.RaftLogger;
 import com.vein.raft.server.storage.logs.entry.LogEntry;
+import com.vein.raft.server.storage.logs.segment.SegmentType;
 import com.vein.raft.server.storage.snapshot.SnapshotManager;
 import com.vein.raft.server.storage.snapshot.file.FileSnapshotManager;
 import com.vein.raft.server.storage.state.FileMemberStateManager;
@@ -56,6 +73,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -83,6 +101,7 @@ public class RaftServerImpl extends AbstractService implements RaftServer, Maste
     private final MemberStateManager memberStateManager;
     private final ServerContext context;
     private final Replicator replicator;
+    private final ProposalQueue proposalQueue;
 
 
     public RaftServerImpl(RaftConfig raftConfig, LogStateMachine logStateMachine) {
@@ -101,10 +120,15 @@ public class RaftServerImpl extends AbstractService implements RaftServer, Maste
         this.memberStateManager = new FileMemberStateManager();
 
         ExecutorService executor = Executors.newSingleThreadExecutor(new NamedThreadFactory("LogApplyThread"));
-        this.serverStateMachine = new ServerStateMachine(raftLogger, self, logStateMachine, snapshotManager, executor);
+        ExecutorService snapshotExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("SnapshotWriteThread", true));
+        this.serverStateMachine = new ServerStateMachine(raftLogger, self, logStateMachine, snapshotManager, executor,
+            snapshotExecutor, raftConfig.getProposalPendingMax(), raftConfig.getApplyLanes());
 
         this.context = initContext(raftConfig);
-        this.replicator = new Replicator(context, raftConfig.getMaxAppendSize(), raftConfig.getHeartbeatInterval());
+        this.replicator = new Replicator(context, raftConfig);
+        raftLogger.setAppendListener(replicator::signal);
+        this.proposalQueue = new ProposalQueue(raftLogger, serverStateMachine.proposals(), () -> context.getState() == LEADER,
+            raftConfig.getProposalBatchEntries(), raftConfig.getProposalBatchBytes(), raftConfig.getProposalLinger());
 
         initStates();
         registerEventHandler();
@@ -124,8 +148,12 @@ public class RaftServerImpl extends AbstractService implements RaftServer, Maste
         int logFileMaxSize = raftConfig.getLogFileMaxSize();
         int logFileMaxEntries = raftConfig.getLogFileMaxEntries();
         int commandMaxSize = raftConfig.getCommandMaxSize();
+        DurabilityPolicy durabilityPolicy = DurabilityPolicy.parse(raftConfig.getLogDurability());
 
-        return new RaftLogger(name, directory, serializer, logFileMaxSize, commandMaxSize, logFileMaxEntries);
+        return new RaftLogger(name, directory, serializer, logFileMaxSize, commandMaxSize, logFileMaxEntries,
+            durabilityPolicy, raftConfig.getLogFlushInterval(), raftConfig.getLogCommitBatchMax(),
+            raftConfig.getLogCacheEntries(), raftConfig.getLogCacheBytes(), SegmentType.parse(raftConfig.getLogSegmentType()),
+            raftConfig.getLogCompactRetention());
     }
 
 
@@ -301,9 +329,18 @@ public class RaftServerImpl extends AbstractService implements RaftServer, Maste
         return context.getEventExecutor().submit(request);
     }
 
+    /**
+     * 追加成功时等待日志按照持久化策略持久化之后再响应，不阻塞事件线程
+     */
     @Override
     public CompletableFuture<AppendResponse> handle(AppendRequest request) {
-        return context.getEventExecutor().submit(request);
+        CompletableFuture<AppendResponse> future = context.getEventExecutor().submit(request);
+        return future.thenCompose(response -> {
+            if (!response.isSuccess()) {
+                return CompletableFuture.completedFuture(response);
+            }
+            return raftLogger.durable(response.getNextIndex() - 1).thenApply(index -> response);
+        });
     }
 
     @Override
@@ -321,19 +358,24 @@ public class RaftServerImpl extends AbstractService implements RaftServer, Maste
 
 
         if (!master.getNodeId().equals(self.getNodeId())) {
-            return forward(request, master);
+            return forward(request, master, RaftResponse.fail(RaftError.INTERNAL_ERROR));
         }
 
         LogEntry entry = new LogEntry(request.getCommand(), cluster.version());
-        long index = raftLogger.append(entry);
-        CompletableFuture<T> commitFuture = new CompletableFuture<>();
-        self.getState().addCommitFuture(index, commitFuture);
+        CompletableFuture<T> commitFuture = proposalQueue.propose(entry);
 
         CompletableFuture<RaftResponse<T>> future = new CompletableFuture<>();
         commitFuture.whenComplete((result, error) -> {
             if (error == null) {
                 RaftResponse<T> response = RaftResponse.success(result);
                 future.complete(response);
+            } else if (error instanceof NotLeaderException) {
+                RaftResponse<T> response = RaftResponse.fail(RaftError.NOT_LEADER_ERROR);
+                response.setRedirect(leaderAddress());
+                future.complete(response);
+            } else if (error instanceof TooManyProposalsException) {
+                RaftResponse<T> response = RaftResponse.fail(RaftError.TOO_MANY_PROPOSALS_ERROR);
+                future.complete(response);
             } else {
                 future.completeExceptionally(error);
             }
@@ -342,17 +384,146 @@ public class RaftServerImpl extends AbstractService implements RaftServer, Maste
     }
 
 
-    private <T> CompletableFuture<RaftResponse<T>> forward(CommandRequest request, RaftMember master) {
+    @Override
+    public CompletableFuture<BatchCommandResponse> handle(BatchCommandRequest request) {
+        RaftMember master = cluster.master();
+        if (master == null) {
+            BatchCommandResponse response = new BatchCommandResponse();
+            response.setStatus(RaftError.NO_LEADER_ERROR.code);
+            return CompletableFuture.completedFuture(response);
+        }
+
+        if (!master.getNodeId().equals(self.getNodeId())) {
+            BatchCommandResponse unavailable = new BatchCommandResponse();
+            unavailable.setStatus(RaftError.INTERNAL_ERROR.code);
+            return forward(request, master, unavailable);
+        }
+
+        List<Command> commands = request.getCommands();
+        List<CompletableFuture<RaftResponse<Object>>> futures = new ArrayList<>(commands.size());
+        for (Command command : commands) {
+            CommandRequest commandRequest = new CommandRequest();
+            commandRequest.setCommand(command);
+            futures.add(this.<Object>handle(commandRequest));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).handle((result, error) -> {
+            List<RaftResponse<Object>> responses = new ArrayList<>(futures.size());
+            boolean notLeader = false;
+            for (CompletableFuture<RaftResponse<Object>> future : futures) {
+                if (future.isCompletedExceptionally()) {
+                    responses.add(RaftResponse.fail(RaftError.INTERNAL_ERROR));
+                } else {
+                    RaftResponse<Object> commandResponse = future.join();
+                    notLeader |= commandResponse.getStatus() == RaftError.NOT_LEADER_ERROR.code;
+                    responses.add(commandResponse);
+                }
+            }
+
+            BatchCommandResponse response = new BatchCommandResponse();
+            response.setStatus(RaftResponse.SUCCESS);
+            if (notLeader) {
+                response.setRedirect(leaderAddress());
+            }
+            response.setResponses(responses);
+            return response;
+        });
+    }
+
+    @Override
+    public <T> CompletableFuture<RaftResponse<T>> handle(QueryRequest request) {
+        ReadConsistency consistency = ReadConsistency.valueOf(request.getConsistency());
+        if (consistency == ReadConsistency.STALE) {
+            ServerState state = context.getServerState();
+            if (state instanceof FollowerState) {
+                long readIndex = ((FollowerState) state).staleReadIndex(request.getMaxStaleness());
+                if (readIndex >= 0) {
+                    return query(request, CompletableFuture.completedFuture(readIndex));
+                }
+            }
+        }
+
+        RaftMember master = cluster.master();
+        if (master == null) {
+            RaftResponse<T> response = RaftResponse.fail(RaftError.NO_LEADER_ERROR);
+            return CompletableFuture.completedFuture(response);
+        }
+
+        if (!master.getNodeId().equals(self.getNodeId())) {
+            return forward(request, master, RaftResponse.fail(RaftError.INTERNAL_ERROR));
+        }
+
+        // leader上的陈旧读不会比租约读更旧
+        ReadIndex readIndex = replicator.readIndex();
+        if (consistency == ReadConsistency.LINEARIZABLE) {
+            return query(request, readIndex.read(self.getCommitIndex()));
+        }
+        return query(request, readIndex.leaseRead(self.getCommitIndex()));
+    }
+
+    /**
+     * 得到readIndex后等待状态机应用到该位置再查询
+     */
+    private <T> CompletableFuture<RaftResponse<T>> query(QueryRequest request, CompletableFuture<Long> readIndex) {
         CompletableFuture<RaftResponse<T>> future = new CompletableFuture<>();
+        readIndex.thenCompose(index -> serverStateMachine.<T>query(request.getCommand(), index))
+            .whenComplete((result, error) -> {
+                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                if (cause == null) {
+                    RaftResponse<T> response = RaftResponse.success(result);
+                    future.complete(response);
+                } else if (cause instanceof NotLeaderException) {
+                    RaftResponse<T> response = RaftResponse.fail(RaftError.NOT_LEADER_ERROR);
+                    response.setRedirect(leaderAddress());
+                    future.complete(response);
+                } else {
+                    future.completeExceptionally(cause);
+                }
+            });
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<RaftResponse<ConnectResponse>> handle(ConnectRequest request) {
+        ConnectResponse response = new ConnectResponse();
+        RaftMember master = cluster.master();
+        if (master != null) {
+            response.setLeader(master.getAddress());
+        }
+        response.setMembers(cluster.members().stream().map(RaftMember::getAddress).collect(Collectors.toList()));
+        return CompletableFuture.completedFuture(RaftResponse.success(response));
+    }
+
+    /**
+     * 其它节点是leader时返回leader的地址，否则返回null
+     */
+    private Address leaderAddress() {
+        RaftMember master = cluster.master();
+        if (master == null || master.getNodeId().equals(self.getNodeId())) {
+            return null;
+        }
+        return master.getAddress();
+    }
+
+    /**
+     * 转发给leader，只在客户端还不知道leader时使用，响应中带上leader的地址以便客户端直接连接leader
+     *
+     * @param request     请求
+     * @param master      leader
+     * @param unavailable 与leader没有连接时返回的响应
+     */
+    private <T> CompletableFuture<T> forward(Object request, RaftMember master, T unavailable) {
+        CompletableFuture<T> future = new CompletableFuture<>();
         Connection connection = master.getState().getConnection();
         if (connection == null) {
             logger.error("leader:{} connection is null", master.getNodeId());
-            RaftResponse<T> response = RaftResponse.fail(RaftError.INTERNAL_ERROR);
-            return CompletableFuture.completedFuture(response);
+            redirect(unavailable, master);
+            return CompletableFuture.completedFuture(unavailable);
         }
 
-        connection.<RaftResponse<T>>request(request).whenComplete((response, error) -> {
+        connection.<T>request(request).whenComplete((response, error) -> {
             if (error == null) {
+                redirect(response, master);
                 future.complete(response);
             } else {
                 logger.error("forward command request:{} to leader:{} caught exception", request, master.getNodeId(), error);
@@ -362,6 +533,12 @@ public class RaftServerImpl extends AbstractService implements RaftServer, Maste
         return future;
     }
 
+    private void redirect(Object response, RaftMember master) {
+        if (response instanceof RaftResponse) {
+            ((RaftResponse<?>) response).setRedirect(master.getAddress());
+        }
+    }
+
     @Override
     protected void doStart() throws Exception {
         int port = raftConfig.getPort();
@@ -373,6 +550,10 @@ public class RaftServerImpl extends AbstractService implements RaftServer, Maste
         manager.registerMessageHandler(new VoteRequestHandler(this));
         manager.registerMessageHandler(new AppendRequestHandler(this));
         manager.registerMessageHandler(new InstallSnapshotRequestHandler(this));
+        manager.registerMessageHandler(new CommandRequestHandler(this));
+        manager.registerMessageHandler(new BatchCommandRequestHandler(this));
+        manager.registerMessageHandler(new ConnectRequestHandler(this));
+        manager.registerMessageHandler(new QueryRequestHandler(this));
 
         context.getServerState().wakeup();
         join();
@@ -380,7 +561,9 @@ public class RaftServerImpl extends AbstractService implements RaftServer, Maste
 
     @Override
     protected void doClose() {
-
+        proposalQueue.close();
+        serverStateMachine.close();
+        raftLogger.close();
     }
 
     @Override
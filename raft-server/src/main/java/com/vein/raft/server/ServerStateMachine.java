@@ -1,5 +1,7 @@
 package com.vein.raft.server;
 
+import com.vein.raft.client.Command;
+import com.vein.raft.server.storage.logs.LogRangeIterator;
 import com.vein.raft.server.storage.logs.RaftLogger;
 import com.vein.raft.server.storage.logs.entry.LogEntry;
 import com.vein.raft.server.storage.snapshot.Snapshot;
@@ -8,14 +10,24 @@ import com.vein.raft.server.storage.snapshot.SnapshotReader;
 import com.vein.raft.server.storage.snapshot.SnapshotWriter;
 import com.vein.common.base.LoggerSupport;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
 
 /**
  * @author shifeng.luo
  * @version created on 2017/9/23 下午10:46
  */
 public class ServerStateMachine extends LoggerSupport {
+    private static final int APPLY_BATCH_ENTRIES = 1024;
+    private static final int APPLY_BATCH_BYTES = 4 * 1024 * 1024;
 
     private final RaftLogger log;
 
@@ -23,73 +35,286 @@ public class ServerStateMachine extends LoggerSupport {
     private final LogStateMachine stateMachine;
     private final SnapshotManager snapshotManager;
     private final ExecutorService executorService;
+    private final PendingProposals proposals;
 
-    private volatile Snapshot pendingSnapshot;
+    /**
+     * 状态机支持分区时并行应用的通道，否则为null
+     */
+    private final ApplyLanes lanes;
+
+    /**
+     * 两阶段快照写入文件的线程
+     */
+    private final ExecutorService snapshotExecutor;
+    private final SnapshotMetrics snapshotMetrics = new SnapshotMetrics();
+    private volatile boolean snapshotting;
+
+    /**
+     * 等待状态机应用到指定index的读请求
+     */
+    private final ConcurrentNavigableMap<Long, CompletableFuture<Void>> appliedWaiters = new ConcurrentSkipListMap<>();
+
+    /**
+     * 已经提交给执行线程的最后一条日志
+     */
+    private long dispatchedIndex;
+
+    /**
+     * 最后一批日志应用完成并更新lastApplied后完成，只在执行线程中访问
+     */
+    private CompletableFuture<Void> applied = CompletableFuture.completedFuture(null);
+
+    /**
+     * 快照已经安排、还没有捕获状态机的状态，只在执行线程中访问
+     */
+    private boolean preparing;
+
+    /**
+     * 快照捕获状态之前暂缓应用的批次，只在执行线程中访问
+     */
+    private final Deque<List<LogEntry>> deferred = new ArrayDeque<>();
 
     public ServerStateMachine(RaftLogger log, RaftMember self, LogStateMachine stateMachine,
-                              SnapshotManager snapshotManager, ExecutorService executorService) {
+                              SnapshotManager snapshotManager, ExecutorService executorService,
+                              ExecutorService snapshotExecutor, int maxPendingProposals, int applyLanes) {
         this.log = log;
         this.self = self;
         this.stateMachine = stateMachine;
         this.snapshotManager = snapshotManager;
         this.executorService = executorService;
+        this.snapshotExecutor = snapshotExecutor;
+        this.proposals = new PendingProposals(maxPendingProposals);
+        if (stateMachine instanceof PartitionedLogStateMachine && applyLanes > 1) {
+            this.lanes = new ApplyLanes((PartitionedLogStateMachine) stateMachine, applyLanes);
+        } else {
+            this.lanes = null;
+        }
     }
 
-    public void apply(long index) {
-        long lastApplied = self.getLastApplied();
-        if (index < lastApplied + 1) {
+    /**
+     * 应用到指定index为止已提交的日志，同一条日志只会提交给执行线程一次。
+     * 已提交的范围按批读取，每批index连续的日志作为一个任务交给执行线程批量应用
+     *
+     * @param index commitIndex
+     */
+    public synchronized void apply(long index) {
+        long nextIndex = Math.max(self.getLastApplied(), dispatchedIndex) + 1;
+        if (nextIndex > index) {
             return;
         }
 
-        for (long i = lastApplied + 1; i <= index; i++) {
-            LogEntry entry = log.get(i);
-            if (entry != null) {
-                executorService.execute(() -> apply(entry));
-            }
+        LogRangeIterator iterator = log.iterator(nextIndex, index, APPLY_BATCH_ENTRIES, APPLY_BATCH_BYTES);
+        while (iterator.hasNext()) {
+            List<LogEntry> entries = iterator.next();
+            executorService.execute(() -> apply(entries));
+            dispatchedIndex = entries.get(entries.size() - 1).getIndex();
         }
     }
 
-    private void apply(LogEntry entry) {
-        RaftMemberState context = self.getState();
-        stateMachine.apply(entry.getCommand()).whenComplete((result, error) -> {
-            CompletableFuture<Object> future = context.removeCommitFuture(entry.getIndex());
-            if (future != null) {
-                if (error == null) {
-                    future.complete(result);
-                } else {
-                    future.completeExceptionally(error);
-                }
-            }
-            setLastApplied(entry.getIndex());
+    /**
+     * 在执行线程中批量应用一批index连续的日志，状态机异步完成或者分发到并行通道时不等待，直接应用下一批；
+     * lastApplied按日志顺序推进，前面的批次(在所有通道中)全部完成后才更新
+     */
+    private void apply(List<LogEntry> entries) {
+        if (preparing) {
+            deferred.add(entries);
+            return;
+        }
+
+        long firstIndex = entries.get(0).getIndex();
+        long lastIndex = entries.get(entries.size() - 1).getIndex();
+        List<Command> commands = new ArrayList<>(entries.size());
+        for (LogEntry entry : entries) {
+            commands.add(entry.getCommand());
+        }
+
+        CompletableFuture<List<Object>> future;
+        try {
+            future = lanes != null ? lanes.apply(commands) : stateMachine.applyBatch(commands, firstIndex);
+        } catch (Throwable e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+
+        CompletableFuture<Void> completed = future.handle((results, error) -> {
+            complete(firstIndex, entries.size(), results, error);
+            return null;
         });
+        applied = applied.thenCombine(completed, (prev, current) -> current).thenRun(() -> setLastApplied(lastIndex));
+        takeSnapshot(lastIndex);
+    }
+
+    /**
+     * 以批量应用的结果完成本节点的提案
+     */
+    private void complete(long firstIndex, int count, List<Object> results, Throwable error) {
+        if (error == null && (results == null || results.size() != count)) {
+            error = new IllegalStateException("apply batch from index:" + firstIndex + " expect " + count + " results");
+        }
+        if (error != null) {
+            logger.error("apply batch from index:{} caught exception", firstIndex, error);
+        }
+
+        CompletableFuture<Object>[] futures = proposals.removeAll(firstIndex, count);
+        for (int i = 0; i < count; i++) {
+            CompletableFuture<Object> future = futures[i];
+            if (future == null) {
+                continue;
+            }
+
+            Object result = error == null ? results.get(i) : error;
+            if (result instanceof Throwable) {
+                future.completeExceptionally((Throwable) result);
+            } else {
+                future.complete(result);
+            }
+        }
     }
 
     private void setLastApplied(long lastApplied) {
         if (lastApplied > self.getLastApplied()) {
             self.setLastApplied(lastApplied);
+            notifyApplied(lastApplied);
+        }
+    }
 
-            takeSnapshot(lastApplied);
+    /**
+     * 状态机应用到readIndex后查询，查询在应用该日志的线程或调用线程中执行
+     *
+     * @param command   查询command
+     * @param readIndex 读请求的readIndex
+     * @return 查询结果
+     */
+    public <T> CompletableFuture<T> query(Command command, long readIndex) {
+        return awaitApplied(readIndex).thenCompose(ignore -> stateMachine.query(command));
+    }
+
+    private CompletableFuture<Void> awaitApplied(long index) {
+        if (self.getLastApplied() >= index) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        CompletableFuture<Void> waiter = appliedWaiters.computeIfAbsent(index, key -> new CompletableFuture<>());
+        // 注册之前已经应用到index
+        if (self.getLastApplied() >= index) {
+            notifyApplied(self.getLastApplied());
+        }
+        return waiter;
+    }
+
+    private void notifyApplied(long lastApplied) {
+        Map.Entry<Long, CompletableFuture<Void>> entry;
+        while ((entry = appliedWaiters.firstEntry()) != null && entry.getKey() <= lastApplied) {
+            if (appliedWaiters.remove(entry.getKey(), entry.getValue())) {
+                entry.getValue().complete(null);
+            }
         }
     }
 
-    private void takeSnapshot(long lastApplied) {
-        if (pendingSnapshot != null) {
+    /**
+     * 在之前分发的日志全部应用完成后生成快照，状态机停在index处一致的切面上。执行线程不等待，
+     * 之后的批次暂缓应用，捕获状态后再按顺序应用。状态机实现{@link TwoPhaseSnapshotable}时只在执行线程中捕获视图，
+     * 写入文件在快照线程中与日志的应用并发执行；否则在执行线程中写入，期间日志的应用暂停
+     *
+     * @param index 最后一条已分发的日志
+     */
+    private void takeSnapshot(long index) {
+        if (snapshotting) {
             return;
         }
 
         Compactor compactor = stateMachine.compactor();
-        if (compactor.nextCompactIndex() > lastApplied) {
+        if (compactor == null || compactor.nextCompactIndex() > index) {
             return;
         }
 
-        pendingSnapshot = snapshotManager.create(lastApplied);
-        logger.info("{} member taking snapshot:{}", self.getNodeId(), pendingSnapshot.index());
-        executorService.execute(() -> {
-            SnapshotWriter writer = pendingSnapshot.writer();
-            stateMachine.take(writer);
+        long start = System.nanoTime();
+        snapshotting = true;
+        preparing = true;
+        applied.whenCompleteAsync((ignore, error) -> {
+            try {
+                prepareSnapshot(index, compactor, start);
+            } finally {
+                resume();
+            }
+        }, executorService);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void prepareSnapshot(long index, Compactor compactor, long start) {
+        if (!(stateMachine instanceof TwoPhaseSnapshotable)) {
+            try {
+                writeSnapshot(index, compactor, stateMachine::take);
+            } finally {
+                snapshotting = false;
+            }
+            snapshotMetrics.recordPause(System.nanoTime() - start);
+            return;
+        }
+
+        TwoPhaseSnapshotable<Object> snapshotable = (TwoPhaseSnapshotable<Object>) stateMachine;
+        Object view;
+        try {
+            view = snapshotable.prepareSnapshot();
+        } catch (Throwable e) {
+            logger.error("{} member prepare snapshot:{} caught exception", self.getNodeId(), index, e);
+            snapshotting = false;
+            return;
+        }
+
+        long pause = System.nanoTime() - start;
+        snapshotMetrics.recordPause(pause);
+        logger.info("{} member prepared snapshot:{}, apply paused {}us", self.getNodeId(), index, pause / 1000);
+        snapshotExecutor.execute(() -> {
+            try {
+                writeSnapshot(index, compactor, writer -> snapshotable.writeSnapshot(view, writer));
+            } finally {
+                snapshotting = false;
+            }
         });
     }
 
+    /**
+     * 快照捕获状态后按顺序应用暂缓的批次，其中某批又安排了快照时停下，剩余的等下一次捕获完成
+     */
+    private void resume() {
+        preparing = false;
+        List<LogEntry> entries;
+        while (!preparing && (entries = deferred.poll()) != null) {
+            apply(entries);
+        }
+    }
+
+    /**
+     * 写入快照，完成后登记到{@link SnapshotManager}并删除快照之前的日志
+     */
+    private void writeSnapshot(long index, Compactor compactor, Consumer<SnapshotWriter> write) {
+        long start = System.nanoTime();
+        Snapshot snapshot = snapshotManager.create(index);
+        logger.info("{} member taking snapshot:{}", self.getNodeId(), snapshot.index());
+        try {
+            SnapshotWriter writer = snapshot.writer();
+            write.accept(writer);
+            snapshot.complete();
+            compactor.updateCompactIndex(snapshot.index());
+            log.compact(snapshot.index());
+            snapshotMetrics.recordWrite(System.nanoTime() - start);
+        } catch (Throwable e) {
+            logger.error("{} member take snapshot:{} caught exception", self.getNodeId(), snapshot.index(), e);
+            snapshot.delete();
+        }
+    }
+
+    public SnapshotMetrics snapshotMetrics() {
+        return snapshotMetrics;
+    }
+
+    /**
+     * leader上等待应用结果的提案
+     */
+    public PendingProposals proposals() {
+        return proposals;
+    }
 
     public void installSnapshot(Snapshot snapshot) {
         if (snapshot == null) {
@@ -102,12 +327,23 @@ public class ServerStateMachine extends LoggerSupport {
             return;
         }
 
+        synchronized (this) {
+            dispatchedIndex = Math.max(dispatchedIndex, snapshot.index());
+        }
         logger.info("{} install snapshot:{}", self.getNodeId(), snapshot.index());
         executorService.execute(() -> {
-            SnapshotReader reader = pendingSnapshot.reader();
+            SnapshotReader reader = snapshot.reader();
             stateMachine.install(reader);
         });
         stateMachine.compactor().updateCompactIndex(snapshot.index());
+        log.compact(snapshot.index());
+    }
+
+    public void close() {
+        if (lanes != null) {
+            lanes.close();
+        }
+        snapshotExecutor.shutdown();
     }
 
     static final class Result {
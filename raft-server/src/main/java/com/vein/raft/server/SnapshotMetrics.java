@@ -0,0 +1,44 @@
+package com.vein.raft.server;
+
+import com.vein.raft.server.state.support.Histogram;
+
+/**
+ * 生成快照的统计信息
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午11:40
+ */
+public class SnapshotMetrics {
+    private final Histogram pauseMicros = new Histogram();
+    private final Histogram writeMillis = new Histogram();
+
+    void recordPause(long nanos) {
+        pauseMicros.record(nanos / 1000);
+    }
+
+    void recordWrite(long nanos) {
+        writeMillis.record(nanos / 1000000);
+    }
+
+    /**
+     * 每次快照期间日志应用暂停的时间(微秒)，包括等待之前的日志应用完成及捕获视图
+     */
+    public Histogram getPauseMicros() {
+        return pauseMicros;
+    }
+
+    /**
+     * 每次快照写入文件的时间(ms)
+     */
+    public Histogram getWriteMillis() {
+        return writeMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "SnapshotMetrics{" +
+            "pauseMicros=" + pauseMicros +
+            ", writeMillis=" + writeMillis +
+            '}';
+    }
+}
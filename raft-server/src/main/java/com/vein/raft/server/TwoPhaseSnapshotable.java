@@ -0,0 +1,30 @@
+package com.vein.raft.server;
+
+import com.vein.raft.server.storage.snapshot.SnapshotWriter;
+
+/**
+ * 支持两阶段快照的状态机：在应用日志的线程中捕获状态的视图，在快照线程中把视图写入快照，
+ * 写入期间日志的应用不暂停。不实现该接口的状态机在应用日志的线程中调用{@link #take(SnapshotWriter)}
+ *
+ * @param <V> 状态视图的类型
+ * @author shifeng.luo
+ * @version created on 2026/10/19 上午11:00
+ */
+public interface TwoPhaseSnapshotable<V> extends Snapshotable {
+
+    /**
+     * 两阶段快照的第一阶段，在应用日志的线程中调用，此时之前的日志都已应用、之后的日志还没有应用。
+     * 应该很快地捕获状态的不可变视图(如写时复制结构的当前版本)，之后应用日志不能改变该视图
+     *
+     * @return 状态的视图
+     */
+    V prepareSnapshot();
+
+    /**
+     * 两阶段快照的第二阶段，在快照线程中把{@link #prepareSnapshot()}捕获的视图写入快照，与日志的应用并发执行
+     *
+     * @param view   {@link #prepareSnapshot()}返回的视图
+     * @param writer 快照writer
+     */
+    void writeSnapshot(V view, SnapshotWriter writer);
+}
@@ -18,6 +18,16 @@ public class AppendResponse extends RaftMessage {
      */
     private long nextIndex;
 
+    /**
+     * 当success=false且follower在prevLogIndex处的日志term与leader不同时，表示follower该日志的term，否则为0
+     */
+    private long conflictTerm;
+
+    /**
+     * 当conflictTerm大于0时，表示follower中conflictTerm的第一条日志的index
+     */
+    private long conflictIndex;
+
     public boolean isSuccess() {
         return success;
     }
@@ -34,6 +44,22 @@ public class AppendResponse extends RaftMessage {
         this.nextIndex = nextIndex;
     }
 
+    public long getConflictTerm() {
+        return conflictTerm;
+    }
+
+    public void setConflictTerm(long conflictTerm) {
+        this.conflictTerm = conflictTerm;
+    }
+
+    public long getConflictIndex() {
+        return conflictIndex;
+    }
+
+    public void setConflictIndex(long conflictIndex) {
+        this.conflictIndex = conflictIndex;
+    }
+
     @Override
     public String toString() {
         return "AppendResponse{" +
@@ -42,6 +68,8 @@ public class AppendResponse extends RaftMessage {
             ", success=" + success +
             ", destination='" + destination + '\'' +
             ", nextIndex=" + nextIndex +
+            ", conflictTerm=" + conflictTerm +
+            ", conflictIndex=" + conflictIndex +
             '}';
     }
 }
@@ -0,0 +1,16 @@
+package com.vein.raft.server.exceptions;
+
+/**
+ * 提案所在的leader已经失去leader身份，或提案的日志被新leader覆盖，客户端可以立即重试
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午9:00
+ */
+public class NotLeaderException extends RuntimeException {
+    public NotLeaderException() {
+    }
+
+    public NotLeaderException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,16 @@
+package com.vein.raft.server.exceptions;
+
+/**
+ * leader上未完成的提案数已达上限，提案被拒绝且没有写入日志
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午9:25
+ */
+public class TooManyProposalsException extends RuntimeException {
+    public TooManyProposalsException() {
+    }
+
+    public TooManyProposalsException(String message) {
+        super(message);
+    }
+}
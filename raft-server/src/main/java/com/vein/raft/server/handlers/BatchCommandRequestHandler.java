@@ -0,0 +1,27 @@
+package com.vein.raft.server.handlers;
+
+import com.vein.raft.client.protocal.BatchCommandRequest;
+import com.vein.raft.client.protocal.BatchCommandResponse;
+import com.vein.raft.server.RaftServer;
+import com.vein.transport.api.handler.AbstractRequestHandler;
+import com.vein.transport.api.support.RequestContext;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午10:05
+ */
+public class BatchCommandRequestHandler extends AbstractRequestHandler<BatchCommandRequest> {
+
+    private final RaftServer raftServer;
+
+    public BatchCommandRequestHandler(RaftServer raftServer) {
+        this.raftServer = raftServer;
+    }
+
+    @Override
+    public CompletableFuture<BatchCommandResponse> handle(BatchCommandRequest request, RequestContext context) throws Exception {
+        return raftServer.handle(request);
+    }
+}
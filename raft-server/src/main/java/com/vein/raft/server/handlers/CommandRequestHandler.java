@@ -0,0 +1,27 @@
+package com.vein.raft.server.handlers;
+
+import com.vein.raft.client.protocal.CommandRequest;
+import com.vein.raft.client.protocal.RaftResponse;
+import com.vein.raft.server.RaftServer;
+import com.vein.transport.api.handler.AbstractRequestHandler;
+import com.vein.transport.api.support.RequestContext;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午10:05
+ */
+public class CommandRequestHandler extends AbstractRequestHandler<CommandRequest> {
+
+    private final RaftServer raftServer;
+
+    public CommandRequestHandler(RaftServer raftServer) {
+        this.raftServer = raftServer;
+    }
+
+    @Override
+    public CompletableFuture<RaftResponse<Object>> handle(CommandRequest request, RequestContext context) throws Exception {
+        return raftServer.handle(request);
+    }
+}
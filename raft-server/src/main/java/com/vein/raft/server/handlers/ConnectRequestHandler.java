@@ -0,0 +1,28 @@
+package com.vein.raft.server.handlers;
+
+import com.vein.raft.client.protocal.ConnectRequest;
+import com.vein.raft.client.protocal.ConnectResponse;
+import com.vein.raft.client.protocal.RaftResponse;
+import com.vein.raft.server.RaftServer;
+import com.vein.transport.api.handler.AbstractRequestHandler;
+import com.vein.transport.api.support.RequestContext;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午10:05
+ */
+public class ConnectRequestHandler extends AbstractRequestHandler<ConnectRequest> {
+
+    private final RaftServer raftServer;
+
+    public ConnectRequestHandler(RaftServer raftServer) {
+        this.raftServer = raftServer;
+    }
+
+    @Override
+    public CompletableFuture<RaftResponse<ConnectResponse>> handle(ConnectRequest request, RequestContext context) throws Exception {
+        return raftServer.handle(request);
+    }
+}
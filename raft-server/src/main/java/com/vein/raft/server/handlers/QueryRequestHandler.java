@@ -0,0 +1,27 @@
+package com.vein.raft.server.handlers;
+
+import com.vein.raft.client.protocal.QueryRequest;
+import com.vein.raft.client.protocal.RaftResponse;
+import com.vein.raft.server.RaftServer;
+import com.vein.transport.api.handler.AbstractRequestHandler;
+import com.vein.transport.api.support.RequestContext;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午10:20
+ */
+public class QueryRequestHandler extends AbstractRequestHandler<QueryRequest> {
+
+    private final RaftServer raftServer;
+
+    public QueryRequestHandler(RaftServer raftServer) {
+        this.raftServer = raftServer;
+    }
+
+    @Override
+    public CompletableFuture<RaftResponse<Object>> handle(QueryRequest request, RequestContext context) throws Exception {
+        return raftServer.handle(request);
+    }
+}
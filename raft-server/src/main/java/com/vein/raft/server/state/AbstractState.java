@@ -15,6 +15,7 @@ import com.vein.raft.server.events.LeaveResponse;
 import com.vein.raft.server.events.MemberInfo;
 import com.vein.raft.server.events.VoteRequest;
 import com.vein.raft.server.events.VoteResponse;
+import com.vein.raft.server.exceptions.NotLeaderException;
 import com.vein.raft.server.storage.logs.RaftLogger;
 import com.vein.raft.server.storage.logs.entry.LogEntry;
 import com.vein.common.base.LoggerSupport;
@@ -138,8 +139,6 @@ public abstract class AbstractState extends LoggerSupport implements ServerState
             }
         }
 
-        context.getRaftLogger().truncate(0);
-        logger.info("delete all logs,because receive prev log 0 from master[{}]", request.getSource());
         return appendInitial(request);
     }
 
@@ -166,22 +165,51 @@ public abstract class AbstractState extends LoggerSupport implements ServerState
 
         long entryTerm = prevEntry.getTerm();
         if (entryTerm != request.getPrevLogTerm()) {
-            logger.info("append entry failure,because received pre index:{} log's term:{} don't eq master's[{}] term:{}", prevLogIndex, entryTerm, source, prevLogIndex);
-            //TODO 优化返回的nextIndex，此时只能一步一步回退
+            logger.info("append entry failure,because received pre index:{} log's term:{} don't eq master's[{}] term:{}", prevLogIndex, entryTerm, source, request.getPrevLogTerm());
+            // 已提交的日志不会冲突，冲突term的第一条日志一定在commitIndex之后
+            RaftLogger raftLogger = context.getRaftLogger();
+            long from = Math.max(self.getCommitIndex() + 1, raftLogger.firstIndex());
+            long conflictIndex = Math.min(searchTerm(from, prevLogIndex, entryTerm - 1), prevLogIndex);
+
             AppendResponse response = new AppendResponse();
             fill(response, source);
-            response.setNextIndex(lastLogEntry == null ? 1 : prevEntry.getIndex());
+            response.setNextIndex(conflictIndex);
+            response.setConflictTerm(entryTerm);
+            response.setConflictIndex(conflictIndex);
             response.setSuccess(false);
             return response;
         }
 
-        context.getRaftLogger().truncate(prevLogIndex);
-        logger.info("delete logs from index greater than {},because receive prev log from master[{}]", prevLogIndex, source);
         return appendInitial(request);
     }
 
     /**
-     * 追加日志
+     * 日志的term随index单调不减，二分查找[fromIndex, toIndex]中第一条term大于指定term的日志
+     *
+     * @param fromIndex 起始index
+     * @param toIndex   结束index
+     * @param term      term
+     * @return 第一条term大于指定term的日志的index，都不大于时返回toIndex + 1
+     */
+    protected long searchTerm(long fromIndex, long toIndex, long term) {
+        RaftLogger raftLogger = context.getRaftLogger();
+        long low = fromIndex;
+        long high = toIndex + 1;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            LogEntry entry = raftLogger.get(mid);
+            if (entry != null && entry.getTerm() <= term) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 追加日志：已存在且term相同的日志跳过，遇到term不同的日志时删除它及之后的所有日志，
+     * 剩余的日志通过{@link RaftLogger#appendAll(List)}一次写入，响应在日志持久化之后发送
      *
      * @param request append request
      * @return AppendResponse
@@ -190,17 +218,36 @@ public abstract class AbstractState extends LoggerSupport implements ServerState
         String source = request.getSource();
         List<LogEntry> entries = request.getEntries();
         RaftLogger raftLogger = context.getRaftLogger();
-        long lastIndex = 0;
+        long lastIndex = request.getPrevLogIndex();
         if (CollectionUtils.isNotEmpty(entries)) {
-            for (LogEntry entry : entries) {
-                long skipSize = entry.getIndex() - lastIndex - 1;
-                raftLogger.skip(skipSize);
-                raftLogger.append(entry);
-                lastIndex = entry.getIndex();
+            long logIndex = raftLogger.lastIndex();
+            int from = 0;
+            while (from < entries.size() && entries.get(from).getIndex() <= logIndex) {
+                LogEntry entry = entries.get(from);
+                // 已经被快照压缩的日志都是已提交的，不会冲突
+                LogEntry exist = raftLogger.get(entry.getIndex());
+                if (exist != null && exist.getTerm() != entry.getTerm()) {
+                    raftLogger.truncate(entry.getIndex() - 1);
+                    context.getStateMachine().proposals().fail(entry.getIndex() - 1, new NotLeaderException("log truncated by leader:" + source));
+                    logIndex = entry.getIndex() - 1;
+                    logger.info("delete logs from index greater than {},because conflict with master[{}]", logIndex, source);
+                    break;
+                }
+                from++;
+            }
+
+            if (from < entries.size()) {
+                long firstIndex = entries.get(from).getIndex();
+                if (firstIndex > logIndex + 1) {
+                    raftLogger.skip(firstIndex - logIndex - 1);
+                }
+                raftLogger.appendAll(entries.subList(from, entries.size()));
             }
+            lastIndex = entries.get(entries.size() - 1).getIndex();
         }
 
-        commit(request.getLeaderCommit());
+        // 只有本次请求校验过的日志才能提交，之后可能还残留着未校验的旧日志
+        commit(Math.min(request.getLeaderCommit(), lastIndex));
         context.getStateMachine().apply(self.getCommitIndex());
 
         AppendResponse response = new AppendResponse();
@@ -213,14 +260,14 @@ public abstract class AbstractState extends LoggerSupport implements ServerState
     /**
      * 提交日志
      *
-     * @param leaderCommit leader已经提交的日志
+     * @param leaderCommit 可以提交到的index，follower上不能超过本次请求校验过的最后一条日志
      */
     void commit(long leaderCommit) {
         long lastIndex = context.getRaftLogger().lastIndex();
         long commitIndex = Math.min(lastIndex, leaderCommit);
         long prevCommitIndex = self.getCommitIndex();
         if (commitIndex > prevCommitIndex) {
-            context.getRaftLogger().commit(commitIndex);
+            context.getRaftLogger().updateCommitIndex(commitIndex);
             self.setCommitIndex(commitIndex);
         }
     }
@@ -1,10 +1,13 @@
 package com.vein.raft.server.state;
 
+import com.vein.raft.server.RaftConfig;
 import com.vein.raft.server.RaftMember;
 import com.vein.raft.server.RaftState;
 import com.vein.raft.server.ServerContext;
 import com.vein.raft.server.events.AppendRequest;
 import com.vein.raft.server.events.AppendResponse;
+import com.vein.raft.server.events.VoteRequest;
+import com.vein.raft.server.events.VoteResponse;
 import com.vein.raft.server.state.support.timer.HeartbeatTimeoutTimer;
 
 /**
@@ -15,9 +18,21 @@ public class FollowerState extends AbstractState {
 
     private final HeartbeatTimeoutTimer timer;
 
+    /**
+     * 收到leader心跳后拒绝投票的时长(ms)，leader的租约依赖于此，未开启租约读时为0
+     */
+    private final int voteGuard;
+
+    /**
+     * 最后一次收到的心跳中leader的commitIndex
+     */
+    private volatile long leaderCommit;
+
     public FollowerState(ServerContext context, HeartbeatTimeoutTimer timer) {
         super(context);
         this.timer = timer;
+        RaftConfig raftConfig = context.getRaftConfig();
+        this.voteGuard = raftConfig.isReadLease() ? raftConfig.getMinElectTimeout() : 0;
     }
 
     @Override
@@ -28,11 +43,43 @@ public class FollowerState extends AbstractState {
     @Override
     protected AppendResponse doHandle(AppendRequest request) {
         timer.reset();
+        leaderCommit = request.getLeaderCommit();
         RaftMember member = context.getCluster().member(request.getSource());
         context.getCluster().setMaster(member);
         return super.doHandle(request);
     }
 
+    @Override
+    public VoteResponse handle(VoteRequest request) {
+        // leader仍在发送心跳时不因更高的term放弃它，保证leader的租约期内不会选出新的leader
+        if (voteGuard > 0 && request.getTerm() > self.getTerm() && timer.sinceLastHeartbeat() < voteGuard) {
+            logger.info("reject vote request from:{}, heartbeat received in {}ms", request.getSource(), timer.sinceLastHeartbeat());
+            VoteResponse response = new VoteResponse();
+            response.setSource(self.getNodeId());
+            response.setDestination(request.getSource());
+            response.setTerm(self.getTerm());
+            response.setVoteGranted(false);
+            return response;
+        }
+        return super.handle(request);
+    }
+
+    /**
+     * 有界陈旧读：距离最后一次收到leader心跳不超过maxStaleness，并且心跳中leader的commitIndex已经在本地提交时，
+     * 应用到该位置的状态落后leader不超过maxStaleness
+     *
+     * @param maxStaleness 允许落后leader的最长时间(ms)
+     * @return 需要应用到的index，不满足时返回-1
+     */
+    public long staleReadIndex(long maxStaleness) {
+        if (timer.sinceLastHeartbeat() > maxStaleness) {
+            return -1;
+        }
+
+        long index = leaderCommit;
+        return self.getCommitIndex() >= index ? index : -1;
+    }
+
     @Override
     public void suspect() {
         timer.stop();
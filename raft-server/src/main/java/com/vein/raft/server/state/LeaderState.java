@@ -16,13 +16,15 @@ import com.vein.raft.server.events.JoinResponse;
 import com.vein.raft.server.events.LeaveRequest;
 import com.vein.raft.server.events.LeaveResponse;
 import com.vein.raft.server.events.MemberInfo;
+import com.vein.raft.server.exceptions.NotLeaderException;
+import com.vein.raft.server.state.support.CommitTracker;
+import com.vein.raft.server.state.support.ReplicateWindow;
 import com.vein.raft.server.state.support.Replicator;
 import com.vein.raft.server.state.support.SnapshotInstallContext;
 import com.vein.raft.server.storage.logs.RaftLogger;
 import com.vein.raft.server.storage.logs.entry.LogEntry;
 import com.vein.transport.api.support.RequestContext;
 
-import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
@@ -36,10 +38,12 @@ import static com.vein.raft.server.events.JoinResponse.SUCCESS;
  */
 public class LeaderState extends AbstractState {
     private final Replicator replicator;
+    private final CommitTracker commitTracker;
 
     public LeaderState(ServerContext context, Replicator replicator) {
         super(context);
         this.replicator = replicator;
+        this.commitTracker = new CommitTracker(this::onCommit);
     }
 
     @Override
@@ -65,6 +69,9 @@ public class LeaderState extends AbstractState {
 
             member.getState().stopReplicate();
         }
+        context.getRaftLogger().updateReplicatedIndex(Long.MAX_VALUE);
+        context.getStateMachine().proposals().fail(self.getCommitIndex(), new NotLeaderException("leader step down"));
+        replicator.readIndex().fail(new NotLeaderException("leader step down"));
     }
 
     @Override
@@ -81,8 +88,36 @@ public class LeaderState extends AbstractState {
             }
 
             member.setNextLogIndex(nextLogIndex);
+            member.setMatchedIndex(0);
+            replicator.window(member).probe();
             member.getState().startReplicate();
         }
+        resetCommitTracker();
+        replicator.readIndex().start(nextLogIndex - 1);
+    }
+
+    /**
+     * 成员变化后按当前成员重新初始化commit跟踪及ReadIndex的确认
+     */
+    private void resetCommitTracker() {
+        RaftCluster cluster = context.getCluster();
+        List<RaftMember> members = cluster.members();
+        List<String> nodeIds = Lists.transform(members, RaftMember::getNodeId);
+        commitTracker.reset(nodeIds, cluster.getQuorum(), self.getCommitIndex());
+        replicator.readIndex().reset(nodeIds, self.getNodeId(), cluster.getQuorum());
+        for (RaftMember member : members) {
+            commitTracker.update(member.getNodeId(), member.getMatchedIndex());
+        }
+    }
+
+    /**
+     * 多数派已复制的位置推进，提交日志并直接通知状态机应用
+     *
+     * @param commitIndex 新的commitIndex
+     */
+    private void onCommit(long commitIndex) {
+        commit(commitIndex);
+        context.getStateMachine().apply(self.getCommitIndex());
     }
 
     @Override
@@ -93,24 +128,59 @@ public class LeaderState extends AbstractState {
         }
 
         RaftMember member = context.getCluster().member(response.getSource());
+        ReplicateWindow window = replicator.window(member);
         if (response.isSuccess()) {
-            member.setNextLogIndex(response.getNextIndex());
-            member.setMatchedIndex(response.getNextIndex() - 1);
-
-            List<RaftMember> members = context.getCluster().members();
-            members.sort(Comparator.comparingLong(RaftMember::getMatchedIndex));
-            int quorum = context.getCluster().getQuorum();
-            if (members.size() < quorum) {
-                return;
+            // pipeline模式下nextLogIndex已经在发送时推进，响应只会让它前进
+            if (window.isProbing()) {
+                member.setNextLogIndex(response.getNextIndex());
+                window.pipeline();
+            } else if (response.getNextIndex() > member.getNextLogIndex()) {
+                member.setNextLogIndex(response.getNextIndex());
+            }
+            member.setMatchedIndex(Math.max(member.getMatchedIndex(), response.getNextIndex() - 1));
+            self.setMatchedIndex(context.getRaftLogger().durableIndex());
+
+            if (!commitTracker.contains(member.getNodeId())) {
+                resetCommitTracker();
+            }
+            long minIndex = commitTracker.minIndex();
+            commitTracker.update(self.getNodeId(), self.getMatchedIndex());
+            commitTracker.update(member.getNodeId(), member.getMatchedIndex());
+            if (commitTracker.minIndex() != minIndex) {
+                context.getRaftLogger().updateReplicatedIndex(commitTracker.minIndex() + 1);
             }
-            RaftMember m = members.get(quorum - 1);
-            long commitIndex = m.getMatchedIndex();
-            commit(commitIndex);
         } else {
-            member.setNextLogIndex(response.getNextIndex());
+            member.setNextLogIndex(nextIndex(response));
+            window.probe();
         }
     }
 
+    /**
+     * 根据follower返回的冲突信息计算下一次发送的index：leader有conflictTerm的日志时从它的最后一条之后开始，
+     * 否则跳过follower中整个conflictTerm，每个分叉的term只需要一次往返
+     *
+     * @param response 失败的AppendResponse
+     * @return 下一次发送的index
+     */
+    long nextIndex(AppendResponse response) {
+        long conflictTerm = response.getConflictTerm();
+        long conflictIndex = response.getConflictIndex();
+        if (conflictTerm <= 0 || conflictIndex <= 0) {
+            return response.getNextIndex();
+        }
+
+        RaftLogger raftLogger = context.getRaftLogger();
+        long from = Math.max(conflictIndex, raftLogger.firstIndex());
+        long index = searchTerm(from, raftLogger.lastIndex(), conflictTerm) - 1;
+        if (index >= from) {
+            LogEntry entry = raftLogger.get(index);
+            if (entry != null && entry.getTerm() == conflictTerm) {
+                return index + 1;
+            }
+        }
+        return conflictIndex;
+    }
+
     @Override
     public JoinResponse handle(JoinRequest request, RequestContext requestContext) {
         logger.info("handle join request:{}", request);
@@ -168,7 +238,12 @@ public class LeaderState extends AbstractState {
         LogEntry entry = new LogEntry(configure, self.getTerm());
         RaftLogger raftLogger = context.getRaftLogger();
         RaftCluster cluster = context.getCluster();
-        long index = raftLogger.append(entry);
+        CompletableFuture<Object> commitFuture = new CompletableFuture<>();
+        long index = context.getStateMachine().proposals().add(() -> raftLogger.append(entry), commitFuture);
+        if (index < 0) {
+            future.completeExceptionally(new IllegalStateException("too many pending proposals"));
+            return future;
+        }
         self.getState().setConfiguring(index);
 
         for (RaftMember member : members) {
@@ -180,7 +255,8 @@ public class LeaderState extends AbstractState {
             }
         }
 
-        CompletableFuture<Object> commitFuture = new CompletableFuture<>();
+        resetCommitTracker();
+
         commitFuture.whenComplete((result, error) -> {
             if (error == null) {
                 future.complete(index);
@@ -188,7 +264,6 @@ public class LeaderState extends AbstractState {
                 future.completeExceptionally(error);
             }
         });
-        self.getState().addCommitFuture(index, commitFuture);
         return future;
     }
 
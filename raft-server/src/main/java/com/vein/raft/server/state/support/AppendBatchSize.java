@@ -0,0 +1,66 @@
+package com.vein.raft.server.state.support;
+
+/**
+ * 每个AppendRequest的日志字节数上限。
+ * 固定模式下始终为最大值；自适应模式下从最小值开始，响应时间接近历史最低值时加倍，
+ * 响应时间明显变长(follower或网络开始排队)时减半
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午8:15
+ */
+public class AppendBatchSize {
+    /**
+     * 响应时间不超过最低值的该倍数时认为平稳
+     */
+    private static final double FLAT_RATIO = 2.0;
+
+    /**
+     * 响应时间超过最低值的该倍数时认为变长
+     */
+    private static final double SLOW_RATIO = 4.0;
+
+    private final int minBytes;
+    private final int maxBytes;
+    private final boolean adaptive;
+
+    private int limit;
+
+    /**
+     * 观察到的最低响应时间，缓慢向当前响应时间回升以适应网络变化
+     */
+    private long minRtt = Long.MAX_VALUE;
+
+    public AppendBatchSize(int minBytes, int maxBytes, boolean adaptive) {
+        this.minBytes = Math.min(minBytes, maxBytes);
+        this.maxBytes = maxBytes;
+        this.adaptive = adaptive;
+        this.limit = adaptive ? this.minBytes : maxBytes;
+    }
+
+    public synchronized int limit() {
+        return limit;
+    }
+
+    /**
+     * 根据一次满批请求的响应时间调整上限
+     *
+     * @param rttNanos 响应时间(纳秒)
+     */
+    public synchronized void onResponse(long rttNanos) {
+        if (!adaptive) {
+            return;
+        }
+
+        if (rttNanos < minRtt) {
+            minRtt = rttNanos;
+        } else {
+            minRtt += (rttNanos - minRtt) >> 6;
+        }
+
+        if (rttNanos <= minRtt * FLAT_RATIO) {
+            limit = (int) Math.min(maxBytes, (long) limit * 2);
+        } else if (rttNanos > minRtt * SLOW_RATIO) {
+            limit = Math.max(minBytes, limit / 2);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.vein.raft.server.state.support;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+/**
+ * leader跟踪各成员已复制的日志位置并计算commitIndex。
+ * 每个成员的matchedIndex保存在数组中，更新为O(1)；只有越过当前commitIndex的成员数达到多数派时才重新选出多数派的位置，
+ * commitIndex推进后通知监听者。非线程安全，只在事件线程中使用
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午8:40
+ */
+public class CommitTracker {
+    private final LongConsumer commitListener;
+
+    private final Map<String, Integer> slots = new HashMap<>();
+    private long[] matchedIndexes = new long[0];
+    private long[] selection = new long[0];
+
+    /**
+     * 提交日志需要的成员数
+     */
+    private int majority;
+    private long commitIndex;
+
+    /**
+     * matchedIndex大于commitIndex的成员数
+     */
+    private int ahead;
+    private long minIndex;
+
+    public CommitTracker(LongConsumer commitListener) {
+        this.commitListener = commitListener;
+    }
+
+    /**
+     * 成员变化后重新初始化，所有成员的matchedIndex置为0
+     *
+     * @param nodeIds     所有成员，包括leader自己
+     * @param quorum      集群的quorum
+     * @param commitIndex 当前的commitIndex
+     */
+    public void reset(Collection<String> nodeIds, int quorum, long commitIndex) {
+        slots.clear();
+        for (String nodeId : nodeIds) {
+            slots.put(nodeId, slots.size());
+        }
+
+        int size = slots.size();
+        this.matchedIndexes = new long[size];
+        this.selection = new long[size];
+        this.majority = Math.max(1, size - quorum + 1);
+        this.commitIndex = commitIndex;
+        this.ahead = 0;
+        this.minIndex = 0;
+    }
+
+    public boolean contains(String nodeId) {
+        return slots.containsKey(nodeId);
+    }
+
+    /**
+     * 更新成员的matchedIndex，只会前进
+     *
+     * @param nodeId       成员id
+     * @param matchedIndex 成员已复制的日志位置
+     */
+    public void update(String nodeId, long matchedIndex) {
+        Integer slot = slots.get(nodeId);
+        if (slot == null) {
+            return;
+        }
+
+        long prev = matchedIndexes[slot];
+        if (matchedIndex <= prev) {
+            return;
+        }
+
+        matchedIndexes[slot] = matchedIndex;
+        if (prev == minIndex) {
+            minIndex = min();
+        }
+        if (prev <= commitIndex && matchedIndex > commitIndex) {
+            ahead++;
+            if (ahead >= majority) {
+                advance();
+            }
+        }
+    }
+
+    /**
+     * 选出第majority大的matchedIndex作为新的commitIndex
+     */
+    private void advance() {
+        System.arraycopy(matchedIndexes, 0, selection, 0, matchedIndexes.length);
+        for (int i = 0; i < majority; i++) {
+            int max = i;
+            for (int j = i + 1; j < selection.length; j++) {
+                if (selection[j] > selection[max]) {
+                    max = j;
+                }
+            }
+            long value = selection[max];
+            selection[max] = selection[i];
+            selection[i] = value;
+        }
+
+        commitIndex = selection[majority - 1];
+        ahead = 0;
+        for (long index : matchedIndexes) {
+            if (index > commitIndex) {
+                ahead++;
+            }
+        }
+        commitListener.accept(commitIndex);
+    }
+
+    private long min() {
+        long min = Long.MAX_VALUE;
+        for (long index : matchedIndexes) {
+            min = Math.min(min, index);
+        }
+        return min;
+    }
+
+    public long commitIndex() {
+        return commitIndex;
+    }
+
+    /**
+     * 所有成员中最小的matchedIndex，之前的日志已经复制到所有成员
+     */
+    public long minIndex() {
+        return minIndex;
+    }
+}
@@ -0,0 +1,78 @@
+package com.vein.raft.server.state.support;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 按2的幂分桶的直方图，第i个桶统计[2^(i-1), 2^i)之间的值，记录为O(1)且无锁，分位数为所在桶的上界
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午8:05
+ */
+public class Histogram {
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        long v = Math.max(0, value);
+        buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(v));
+        count.incrementAndGet();
+        sum.addAndGet(v);
+
+        long current = max.get();
+        while (v > current && !max.compareAndSet(current, v)) {
+            current = max.get();
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    /**
+     * 近似分位数
+     *
+     * @param percentile 分位，取值(0, 1]
+     * @return 分位数所在桶的上界，不超过最大值
+     */
+    public long getPercentile(double percentile) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+
+        long target = (long) Math.ceil(n * percentile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= target) {
+                long upper = i == 0 ? 0 : (i >= 63 ? Long.MAX_VALUE : (1L << i) - 1);
+                return Math.min(upper, max.get());
+            }
+        }
+        return max.get();
+    }
+
+    @Override
+    public String toString() {
+        return "{count=" + getCount() +
+            ", mean=" + getMean() +
+            ", p50=" + getPercentile(0.5) +
+            ", p99=" + getPercentile(0.99) +
+            ", max=" + getMax() +
+            '}';
+    }
+}
@@ -0,0 +1,247 @@
+package com.vein.raft.server.state.support;
+
+import com.vein.raft.server.exceptions.NotLeaderException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * leader上的ReadIndex读：读请求到达时记录readIndex，等多数派对读请求到达之后发出的AppendRequest作出响应，
+ * 确认自己仍是leader后返回readIndex，调用方等状态机应用到readIndex后再查询。
+ * 同一时间只有一轮心跳在途，这一轮确认所有在它之前到达的读请求，之后到达的读请求等下一轮。
+ * 开启租约时，多数派确认的时间在租约内的读请求不需要等待心跳，直接返回readIndex
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午10:20
+ */
+public class ReadIndex {
+    private final Runnable heartbeat;
+    private final long leaseNanos;
+
+    private final Queue<PendingRead> pending = new ArrayDeque<>();
+    private final Map<String, Integer> slots = new HashMap<>();
+
+    /**
+     * 每个成员最后一个被响应的AppendRequest的发送时间(System.nanoTime)，leader自己为Long.MAX_VALUE
+     */
+    private long[] ackTimes = new long[0];
+    private long[] selection = new long[0];
+    private int majority = 1;
+
+    /**
+     * 成为leader时的最后一条日志，之前任期的日志提交之前readIndex不能小于它
+     */
+    private long startIndex;
+    private boolean active;
+    private boolean heartbeating;
+
+    /**
+     * @param heartbeat   要求立即向所有follower发送一次AppendRequest
+     * @param leaseMillis leader租约时长(ms)，0表示不使用租约
+     */
+    public ReadIndex(Runnable heartbeat, long leaseMillis) {
+        this.heartbeat = heartbeat;
+        this.leaseNanos = TimeUnit.MILLISECONDS.toNanos(leaseMillis);
+    }
+
+    /**
+     * 成为leader时调用，之前的确认全部作废
+     *
+     * @param startIndex 成为leader时的最后一条日志
+     */
+    public synchronized void start(long startIndex) {
+        this.startIndex = startIndex;
+        this.active = true;
+        this.heartbeating = false;
+        for (int i = 0; i < ackTimes.length; i++) {
+            if (ackTimes[i] != Long.MAX_VALUE) {
+                ackTimes[i] = Long.MIN_VALUE;
+            }
+        }
+    }
+
+    /**
+     * 成员变化后重新初始化，所有follower的确认置空
+     *
+     * @param nodeIds 所有成员，包括leader自己
+     * @param selfId  leader自己
+     * @param quorum  集群的quorum
+     */
+    public void reset(Collection<String> nodeIds, String selfId, int quorum) {
+        synchronized (this) {
+            slots.clear();
+            for (String nodeId : nodeIds) {
+                slots.put(nodeId, slots.size());
+            }
+
+            int size = slots.size();
+            this.ackTimes = new long[size];
+            this.selection = new long[size];
+            this.majority = Math.max(1, size - quorum + 1);
+            for (Map.Entry<String, Integer> entry : slots.entrySet()) {
+                ackTimes[entry.getValue()] = entry.getKey().equals(selfId) ? Long.MAX_VALUE : Long.MIN_VALUE;
+            }
+        }
+        confirm();
+    }
+
+    /**
+     * 发起一次读
+     *
+     * @param commitIndex 当前的commitIndex
+     * @return 确认leader身份后完成，结果为readIndex；不再是leader时以{@link NotLeaderException}完成
+     */
+    public CompletableFuture<Long> read(long commitIndex) {
+        PendingRead read;
+        synchronized (this) {
+            if (!active) {
+                CompletableFuture<Long> future = new CompletableFuture<>();
+                future.completeExceptionally(new NotLeaderException("not leader"));
+                return future;
+            }
+
+            read = new PendingRead(System.nanoTime(), Math.max(commitIndex, startIndex));
+            pending.add(read);
+        }
+
+        confirm();
+        heartbeatIfNeeded();
+        return read.future;
+    }
+
+    /**
+     * 租约读：多数派确认过的请求在租约时长内发出时，其它成员在此期间不会选出新的leader，直接返回readIndex；
+     * 否则按{@link #read(long)}确认
+     *
+     * @param commitIndex 当前的commitIndex
+     * @return 结果为readIndex
+     */
+    public CompletableFuture<Long> leaseRead(long commitIndex) {
+        synchronized (this) {
+            if (active && leaseNanos > 0 && confirmedTime() > System.nanoTime() - leaseNanos) {
+                return CompletableFuture.completedFuture(Math.max(commitIndex, startIndex));
+            }
+        }
+        return read(commitIndex);
+    }
+
+    /**
+     * follower以相同任期响应了AppendRequest，说明请求发出时自己仍是leader
+     *
+     * @param nodeId   follower
+     * @param sendTime 请求的发送时间(System.nanoTime)
+     */
+    public void ack(String nodeId, long sendTime) {
+        synchronized (this) {
+            Integer slot = slots.get(nodeId);
+            if (slot == null || sendTime <= ackTimes[slot]) {
+                return;
+            }
+            ackTimes[slot] = sendTime;
+            if (pending.isEmpty()) {
+                return;
+            }
+        }
+
+        confirm();
+        heartbeatIfNeeded();
+    }
+
+    /**
+     * 不再是leader，所有等待中的读失败
+     *
+     * @param error 失败原因
+     */
+    public void fail(Throwable error) {
+        List<PendingRead> reads;
+        synchronized (this) {
+            active = false;
+            heartbeating = false;
+            reads = new ArrayList<>(pending);
+            pending.clear();
+        }
+
+        for (PendingRead read : reads) {
+            read.future.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * 完成所有在多数派确认时间之前到达的读
+     */
+    private void confirm() {
+        List<PendingRead> reads = new ArrayList<>();
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+
+            long confirmedTime = confirmedTime();
+            while (!pending.isEmpty() && pending.peek().time <= confirmedTime) {
+                reads.add(pending.poll());
+            }
+            if (!reads.isEmpty()) {
+                heartbeating = false;
+            }
+        }
+
+        for (PendingRead read : reads) {
+            read.future.complete(read.readIndex);
+        }
+    }
+
+    /**
+     * 第majority大的确认时间，在它之前到达的读请求已经被多数派确认
+     */
+    private long confirmedTime() {
+        if (ackTimes.length == 0) {
+            return Long.MIN_VALUE;
+        }
+
+        System.arraycopy(ackTimes, 0, selection, 0, ackTimes.length);
+        for (int i = 0; i < majority; i++) {
+            int max = i;
+            for (int j = i + 1; j < selection.length; j++) {
+                if (selection[j] > selection[max]) {
+                    max = j;
+                }
+            }
+            long value = selection[max];
+            selection[max] = selection[i];
+            selection[i] = value;
+        }
+        return selection[majority - 1];
+    }
+
+    private void heartbeatIfNeeded() {
+        synchronized (this) {
+            if (heartbeating || pending.isEmpty()) {
+                return;
+            }
+            heartbeating = true;
+        }
+        heartbeat.run();
+    }
+
+    public synchronized int pendingReads() {
+        return pending.size();
+    }
+
+    private static final class PendingRead {
+        private final long time;
+        private final long readIndex;
+        private final CompletableFuture<Long> future = new CompletableFuture<>();
+
+        private PendingRead(long time, long readIndex) {
+            this.time = time;
+            this.readIndex = readIndex;
+        }
+    }
+}
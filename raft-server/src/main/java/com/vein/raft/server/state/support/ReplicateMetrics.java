@@ -0,0 +1,52 @@
+package com.vein.raft.server.state.support;
+
+/**
+ * 向一个follower复制日志的统计信息
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午8:10
+ */
+public class ReplicateMetrics {
+    private final Histogram batchEntries = new Histogram();
+    private final Histogram batchBytes = new Histogram();
+    private final Histogram responseMicros = new Histogram();
+
+    void recordRequest(int entries, long bytes) {
+        batchEntries.record(entries);
+        batchBytes.record(bytes);
+    }
+
+    void recordResponse(long nanos) {
+        responseMicros.record(nanos / 1000);
+    }
+
+    /**
+     * 每个AppendRequest中的日志条数
+     */
+    public Histogram getBatchEntries() {
+        return batchEntries;
+    }
+
+    /**
+     * 每个AppendRequest中的日志字节数
+     */
+    public Histogram getBatchBytes() {
+        return batchBytes;
+    }
+
+    /**
+     * 从发送AppendRequest到收到响应的时间(微秒)
+     */
+    public Histogram getResponseMicros() {
+        return responseMicros;
+    }
+
+    @Override
+    public String toString() {
+        return "ReplicateMetrics{" +
+            "batchEntries=" + batchEntries +
+            ", batchBytes=" + batchBytes +
+            ", responseMicros=" + responseMicros +
+            '}';
+    }
+}
@@ -0,0 +1,121 @@
+package com.vein.raft.server.state.support;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 向一个follower复制日志的窗口。
+ * probe模式下同时只有一个AppendRequest在途，等待响应确认日志匹配的位置；
+ * 确认后进入pipeline模式，发送时乐观地推进nextLogIndex，最多允许maxRequests个请求、maxBytes字节同时在途。
+ * 请求被拒绝或超时后回到probe模式
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午6:20
+ */
+public class ReplicateWindow {
+    private final int maxRequests;
+    private final long maxBytes;
+
+    private boolean probing = true;
+    private int requests;
+    private long bytes;
+    private CompletableFuture<Void> released;
+    private volatile long lastSendTime;
+    private volatile long lastSendNanos = System.nanoTime();
+
+    public ReplicateWindow(int maxRequests, long maxBytes) {
+        this.maxRequests = maxRequests;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 窗口是否还能发送新的请求，probe模式下需要等待所有在途请求完成
+     */
+    public synchronized boolean hasRoom() {
+        if (probing) {
+            return requests == 0;
+        }
+        return requests < maxRequests && bytes < maxBytes;
+    }
+
+    /**
+     * 在途请求完成时完成的future，没有在途请求时立即完成
+     */
+    public synchronized CompletableFuture<Void> awaitRelease() {
+        if (requests == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (released == null) {
+            released = new CompletableFuture<>();
+        }
+        return released;
+    }
+
+    /**
+     * 记录一个发出的请求
+     *
+     * @param size 请求中日志的字节数
+     * @return 是否为pipeline模式，是则调用方乐观推进nextLogIndex且不等待响应
+     */
+    public synchronized boolean acquire(long size) {
+        lastSendTime = System.currentTimeMillis();
+        lastSendNanos = System.nanoTime();
+        requests++;
+        bytes += size;
+        return !probing;
+    }
+
+    /**
+     * 请求收到响应、超时或发送失败后释放占用的窗口
+     *
+     * @param size 请求中日志的字节数
+     */
+    public void release(long size) {
+        CompletableFuture<Void> future;
+        synchronized (this) {
+            requests--;
+            bytes -= size;
+            future = released;
+            released = null;
+        }
+
+        if (future != null) {
+            future.complete(null);
+        }
+    }
+
+    /**
+     * 请求被拒绝或超时，回到probe模式
+     */
+    public synchronized void probe() {
+        probing = true;
+    }
+
+    /**
+     * follower确认日志匹配，进入pipeline模式
+     */
+    public synchronized void pipeline() {
+        probing = false;
+    }
+
+    public synchronized boolean isProbing() {
+        return probing;
+    }
+
+    public synchronized int inflightRequests() {
+        return requests;
+    }
+
+    /**
+     * 最后一次发送请求的时间，用于判断follower是否空闲到需要发送心跳
+     */
+    public long lastSendTime() {
+        return lastSendTime;
+    }
+
+    /**
+     * 最后一次发送请求的System.nanoTime，用于判断是否已经发出过读请求要求的心跳
+     */
+    public long lastSendNanos() {
+        return lastSendNanos;
+    }
+}
@@ -1,5 +1,6 @@
 package com.vein.raft.server.state.support;
 
+import com.vein.raft.server.RaftConfig;
 import com.vein.raft.server.RaftMember;
 import com.vein.raft.server.RaftMemberState;
 import com.vein.raft.server.ServerContext;
@@ -7,20 +8,22 @@ import com.vein.raft.server.events.AppendRequest;
 import com.vein.raft.server.events.AppendResponse;
 import com.vein.raft.server.events.InstallSnapshotRequest;
 import com.vein.raft.server.events.InstallSnapshotResponse;
+import com.vein.raft.server.state.support.timer.TimerWheel;
 import com.vein.raft.server.storage.logs.RaftLogger;
 import com.vein.raft.server.storage.logs.entry.LogEntry;
 import com.vein.raft.server.storage.snapshot.Snapshot;
 import com.vein.raft.server.storage.snapshot.SnapshotReader;
 import com.vein.common.base.LoggerSupport;
-import com.vein.common.utils.ThreadUtil;
 import com.vein.transport.api.Connection;
 import com.vein.transport.api.handler.AbstractResponseHandler;
 import com.vein.transport.api.support.ResponseContext;
 
 import org.apache.commons.collections.CollectionUtils;
 
-import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * @author shifeng.luo
@@ -28,20 +31,150 @@ import java.util.concurrent.CompletableFuture;
  */
 public class Replicator extends LoggerSupport {
     private static final int MAX_BATCH_SIZE = 1024 * 32;
+    private static final int HEARTBEAT_WHEEL_SIZE = 64;
 
     private final ServerContext context;
-    private final int maxAppendSize;
+    private final int maxAppendEntries;
+    private final int minAppendBytes;
+    private final int maxAppendBytes;
+    private final boolean adaptiveAppend;
     private final int appendInterval;
+    private final int appendTimeout;
+    private final int maxInflightRequests;
+    private final long maxInflightBytes;
+    private final ConcurrentMap<String, ReplicateWindow> windows = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AppendBatchSize> batchSizes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ReplicateMetrics> metrics = new ConcurrentHashMap<>();
 
-    public Replicator(ServerContext context, int maxAppendSize, int appendInterval) {
+    /**
+     * 没有日志可复制的follower等待新日志或心跳超时的future
+     */
+    private final ConcurrentMap<String, CompletableFuture<Void>> idleWaiters = new ConcurrentHashMap<>();
+    private final TimerWheel heartbeatWheel;
+    private final ReadIndex readIndex;
+
+    /**
+     * 最近一次要求立即发送心跳的时间(System.nanoTime)，在这之后没有发送过请求的follower需要立即发送
+     */
+    private volatile long heartbeatTime = Long.MIN_VALUE;
+
+    /**
+     * 最后一条进入日志的index
+     */
+    private volatile long appendedIndex;
+
+    public Replicator(ServerContext context, RaftConfig raftConfig) {
         this.context = context;
-        this.maxAppendSize = maxAppendSize;
-        this.appendInterval = appendInterval;
+        this.maxAppendEntries = raftConfig.getMaxAppendEntries();
+        this.minAppendBytes = raftConfig.getMinAppendSize();
+        this.maxAppendBytes = raftConfig.getMaxAppendSize();
+        this.adaptiveAppend = raftConfig.isAppendAdaptive();
+        this.appendInterval = raftConfig.getHeartbeatInterval();
+        this.appendTimeout = raftConfig.getReplicateTimeout();
+        this.maxInflightRequests = raftConfig.getReplicateInflightMax();
+        this.maxInflightBytes = raftConfig.getReplicateInflightBytes();
+        this.heartbeatWheel = new TimerWheel("HeartbeatWheelThread", Math.max(1, appendInterval / HEARTBEAT_WHEEL_SIZE),
+            HEARTBEAT_WHEEL_SIZE);
+        this.readIndex = new ReadIndex(this::heartbeat, raftConfig.getReadLeaseTimeout());
+    }
+
+    /**
+     * leader添加日志后调用，唤醒所有等待新日志的复制任务
+     *
+     * @param index 最后一条日志的index
+     */
+    public void signal(long index) {
+        appendedIndex = index;
+        wakeupIdle();
+    }
+
+    /**
+     * 要求所有follower立即发送一次AppendRequest，没有新日志时发送空的心跳，用于ReadIndex确认leader身份
+     */
+    public void heartbeat() {
+        heartbeatTime = System.nanoTime();
+        wakeupIdle();
+    }
+
+    private void wakeupIdle() {
+        if (idleWaiters.isEmpty()) {
+            return;
+        }
+
+        for (String nodeId : idleWaiters.keySet()) {
+            CompletableFuture<Void> waiter = idleWaiters.remove(nodeId);
+            if (waiter != null) {
+                waiter.complete(null);
+            }
+        }
+    }
+
+    /**
+     * 等待新日志进入或者空闲到需要发送心跳，不占用线程
+     *
+     * @param member follower
+     * @param window follower的复制窗口
+     * @param delay  距离需要发送心跳的时间(ms)
+     * @return 唤醒时完成的future
+     */
+    private CompletableFuture<Void> awaitAppend(RaftMember member, ReplicateWindow window, long delay) {
+        String nodeId = member.getNodeId();
+        CompletableFuture<Void> waiter = new CompletableFuture<>();
+        idleWaiters.put(nodeId, waiter);
+
+        TimerWheel.Timeout timeout = heartbeatWheel.schedule(() -> {
+            if (idleWaiters.remove(nodeId, waiter)) {
+                waiter.complete(null);
+            }
+        }, delay);
+        waiter.whenComplete((result, error) -> timeout.cancel());
+
+        // 注册之前已经有新日志进入或者要求发送心跳
+        if ((appendedIndex >= member.getNextLogIndex() || heartbeatRequired(window)) && idleWaiters.remove(nodeId, waiter)) {
+            waiter.complete(null);
+        }
+        return waiter;
+    }
+
+    private boolean heartbeatRequired(ReplicateWindow window) {
+        return window.lastSendNanos() < heartbeatTime;
+    }
+
+    /**
+     * leader上的ReadIndex读及租约读
+     */
+    public ReadIndex readIndex() {
+        return readIndex;
+    }
+
+    /**
+     * follower的复制窗口
+     *
+     * @param member follower
+     * @return {@link ReplicateWindow}
+     */
+    public ReplicateWindow window(RaftMember member) {
+        return windows.computeIfAbsent(member.getNodeId(), id -> new ReplicateWindow(maxInflightRequests, maxInflightBytes));
+    }
+
+    /**
+     * follower的复制统计
+     *
+     * @param member follower
+     * @return {@link ReplicateMetrics}
+     */
+    public ReplicateMetrics metrics(RaftMember member) {
+        return metrics.computeIfAbsent(member.getNodeId(), id -> new ReplicateMetrics());
+    }
+
+    private AppendBatchSize batchSize(RaftMember member) {
+        return batchSizes.computeIfAbsent(member.getNodeId(),
+            id -> new AppendBatchSize(minAppendBytes, maxAppendBytes, adaptiveAppend));
     }
 
 
     CompletableFuture<Void> replicateTo(RaftMember member) {
-        logger.info("leader append entry to member:[{}]", member.getNodeId());
+        logger.debug("leader append entry to member:[{}]", member.getNodeId());
         Connection connection = member.getState().getConnection();
         if (connection == null) {
             logger.error("member:{} don't have connection", member.getNodeId());
@@ -65,21 +198,63 @@ public class Replicator extends LoggerSupport {
             return sendSnapshot(member);
         }
 
-        CompletableFuture<Void> future = new CompletableFuture<>();
-        AppendRequest request = buildAppendRequest(member);
+        ReplicateWindow window = window(member);
+        if (!window.hasRoom()) {
+            return window.awaitRelease();
+        }
+
+        AppendBatchSize batchSize = batchSize(member);
+        int limit = batchSize.limit();
+        AppendRequest request = buildAppendRequest(member, limit);
         if (CollectionUtils.isEmpty(request.getEntries())) {
-            logger.info("append entry is empty,sleep {}ms", appendInterval);
-            ThreadUtil.sleepUnInterrupted(appendInterval);
-            request = buildAppendRequest(member);
+            if (window.inflightRequests() > 0) {
+                return window.awaitRelease();
+            }
+
+            long idle = System.currentTimeMillis() - window.lastSendTime();
+            if (idle < appendInterval && !heartbeatRequired(window)) {
+                return awaitAppend(member, window, appendInterval - idle);
+            }
+        }
+
+        List<LogEntry> entries = request.getEntries();
+        long bytes = bytes(entries);
+        boolean pipelined = window.acquire(bytes);
+        if (pipelined && !entries.isEmpty()) {
+            member.setNextLogIndex(entries.get(entries.size() - 1).getIndex() + 1);
         }
 
-        connection.send(request, new AbstractResponseHandler<AppendResponse>() {
+        ReplicateMetrics metrics = metrics(member);
+        if (!entries.isEmpty()) {
+            metrics.recordRequest(entries.size(), bytes);
+        }
+        // 只有凑满上限(再放一条平均大小的日志就会超出)的请求才能反映批量大小对响应时间的影响
+        boolean full = !entries.isEmpty()
+            && (entries.size() >= maxAppendEntries || bytes + bytes / entries.size() > limit);
+        long term = request.getTerm();
+        long sendTime = System.nanoTime();
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        connection.send(request, appendTimeout, new AbstractResponseHandler<AppendResponse>() {
             @Override
             public void handle(AppendResponse response, Connection connection) {
+                long rtt = System.nanoTime() - sendTime;
+                if (!entries.isEmpty()) {
+                    metrics.recordResponse(rtt);
+                }
+                if (full) {
+                    batchSize.onResponse(rtt);
+                }
+                // 以相同任期响应说明follower仍然认可自己是leader，不论日志是否匹配
+                if (response.getTerm() == term) {
+                    readIndex.ack(member.getNodeId(), sendTime);
+                }
+
                 context.getEventExecutor().execute(response).whenComplete((result, error) -> {
                     if (error != null) {
                         logger.error("handle append response:{} caught exception", response, error);
                     }
+                    window.release(bytes);
                     future.complete(null);
                 });
             }
@@ -87,13 +262,24 @@ public class Replicator extends LoggerSupport {
             @Override
             public void onException(Throwable e, ResponseContext context) {
                 logger.error("send append request to member:{} caught exception", member.getNodeId(), e);
+                window.probe();
+                member.setNextLogIndex(member.getMatchedIndex() + 1);
+                window.release(bytes);
                 future.complete(null);
             }
         });
-        return future;
+        return pipelined ? CompletableFuture.completedFuture(null) : future;
+    }
+
+    private long bytes(List<LogEntry> entries) {
+        long bytes = 0;
+        for (LogEntry entry : entries) {
+            bytes += entry.getSize();
+        }
+        return bytes;
     }
 
-    private AppendRequest buildAppendRequest(RaftMember member) {
+    private AppendRequest buildAppendRequest(RaftMember member, int maxBytes) {
         long prevLogIndex = 0;
         long prevLogTerm = 0;
 
@@ -115,19 +301,7 @@ public class Replicator extends LoggerSupport {
         request.setPrevLogTerm(prevLogTerm);
         request.setLeaderCommit(self.getCommitIndex());
 
-        ArrayList<LogEntry> entries = new ArrayList<>();
-        long lastIndex = raftLogger.lastIndex();
-        while (nextLogIndex <= lastIndex) {
-            LogEntry logEntry = raftLogger.get(nextLogIndex);
-            if (logEntry != null) {
-                entries.add(logEntry);
-            }
-
-            if (entries.size() >= maxAppendSize) {
-                break;
-            }
-            nextLogIndex++;
-        }
+        List<LogEntry> entries = raftLogger.read(nextLogIndex, maxAppendEntries, maxBytes);
         request.setEntries(entries);
 
         return request;
@@ -3,6 +3,7 @@ package com.vein.raft.server.state.support.timer;
 import com.vein.raft.server.ServerContext;
 
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author shifeng.luo
@@ -16,12 +17,37 @@ public class HeartbeatTimeoutTimer extends AbstractRaftTimer {
     private final int interval;
     private final ServerContext context;
 
+    /**
+     * 最后一次收到leader心跳的时间(System.nanoTime)，没有收到过时为null
+     */
+    private volatile Long lastHeartbeatTime;
+
     public HeartbeatTimeoutTimer(int interval, ScheduledExecutorService executor, ServerContext context) {
         super(executor);
         this.interval = interval;
         this.context = context;
     }
 
+    /**
+     * 收到leader心跳时调用，重新开始计时
+     */
+    @Override
+    public void reset() {
+        lastHeartbeatTime = System.nanoTime();
+        super.reset();
+    }
+
+    /**
+     * 距离最后一次收到leader心跳的时间(ms)，没有收到过时返回Long.MAX_VALUE
+     */
+    public long sinceLastHeartbeat() {
+        Long lastHeartbeatTime = this.lastHeartbeatTime;
+        if (lastHeartbeatTime == null) {
+            return Long.MAX_VALUE;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastHeartbeatTime);
+    }
+
     @Override
     public void run() {
         logger.info("heartbeat timeout,interval:{}", interval);
@@ -0,0 +1,146 @@
+package com.vein.raft.server.state.support.timer;
+
+import com.vein.common.NamedThreadFactory;
+import com.vein.common.base.LoggerSupport;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 时间轮定时器：所有定时任务由一个线程按tick推进执行，添加和取消都是O(1)，
+ * 适合数量多、大部分会在到期前取消的超时任务(如每个follower的空闲心跳)
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午7:10
+ */
+public class TimerWheel extends LoggerSupport {
+    private final long tickNanos;
+    private final List<Timeout>[] buckets;
+    private final int mask;
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final ExecutorService executor;
+    private final long startTime = System.nanoTime();
+    private volatile boolean running = true;
+
+    /**
+     * 已经处理到的tick，只在时间轮线程访问
+     */
+    private long tick;
+
+    /**
+     * @param name       线程名称
+     * @param tickMillis 每个tick的时长(ms)
+     * @param wheelSize  时间轮的槽数，向上取整为2的幂
+     */
+    @SuppressWarnings("unchecked")
+    public TimerWheel(String name, long tickMillis, int wheelSize) {
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.buckets = new List[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new ArrayList<>();
+        }
+        this.mask = size - 1;
+        this.executor = Executors.newSingleThreadExecutor(new NamedThreadFactory(name, true));
+        executor.execute(this::run);
+    }
+
+    /**
+     * 添加定时任务，任务在时间轮线程中执行，不应阻塞
+     *
+     * @param task        任务
+     * @param delayMillis 延迟时间(ms)
+     * @return {@link Timeout}，可用于取消任务
+     */
+    public Timeout schedule(Runnable task, long delayMillis) {
+        long deadline = System.nanoTime() - startTime + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        Timeout timeout = new Timeout(task, deadline);
+        pending.add(timeout);
+        return timeout;
+    }
+
+    public void stop() {
+        running = false;
+        executor.shutdown();
+    }
+
+    private void run() {
+        while (running) {
+            long deadline = tickNanos * (tick + 1);
+            long sleep = deadline - (System.nanoTime() - startTime);
+            if (sleep > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (InterruptedException e) {
+                    logger.warn("timer wheel thread is interrupted");
+                    return;
+                }
+            }
+
+            transferPending();
+            expire(buckets[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+
+            long ticks = Math.max(tick, timeout.deadline / tickNanos);
+            timeout.rounds = (ticks - tick) / buckets.length;
+            buckets[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    private void expire(List<Timeout> bucket) {
+        Iterator<Timeout> iterator = bucket.iterator();
+        while (iterator.hasNext()) {
+            Timeout timeout = iterator.next();
+            if (timeout.cancelled) {
+                iterator.remove();
+            } else if (timeout.rounds > 0) {
+                timeout.rounds--;
+            } else {
+                iterator.remove();
+                try {
+                    timeout.task.run();
+                } catch (Throwable e) {
+                    logger.error("run timer task caught exception", e);
+                }
+            }
+        }
+    }
+
+    public static final class Timeout {
+        private final Runnable task;
+        private final long deadline;
+        private long rounds;
+        private volatile boolean cancelled;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * 取消任务，已经取消的任务在所在的槽被推进到时移除
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.vein.raft.server.storage.logs;
+
+/**
+ * 日志持久化策略
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/18 上午10:12
+ */
+public enum DurabilityPolicy {
+    /**
+     * 每批写入后fsync一次
+     */
+    BATCH("batch"),
+    /**
+     * 每隔固定时间fsync一次
+     */
+    INTERVAL("interval"),
+    /**
+     * 只写入操作系统缓存，由操作系统决定刷盘时机
+     */
+    NONE("none");
+
+    public final String name;
+
+    DurabilityPolicy(String name) {
+        this.name = name;
+    }
+
+    public static DurabilityPolicy parse(String name) {
+        DurabilityPolicy[] policies = DurabilityPolicy.values();
+        for (DurabilityPolicy policy : policies) {
+            if (policy.name.equalsIgnoreCase(name)) {
+                return policy;
+            }
+        }
+
+        throw new IllegalArgumentException("unknown durability policy:" + name);
+    }
+}
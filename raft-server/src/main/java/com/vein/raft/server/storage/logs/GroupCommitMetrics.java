@@ -0,0 +1,97 @@
+package com.vein.raft.server.storage.logs;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * group commit的统计信息
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/18 上午10:20
+ */
+public class GroupCommitMetrics {
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong entries = new AtomicLong();
+    private final AtomicLong maxBatchSize = new AtomicLong();
+    private final AtomicLong syncs = new AtomicLong();
+    private final AtomicLong latencySamples = new AtomicLong();
+    private final AtomicLong totalLatency = new AtomicLong();
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    void recordBatch(int size) {
+        batches.incrementAndGet();
+        entries.addAndGet(size);
+        updateMax(maxBatchSize, size);
+    }
+
+    void recordSync() {
+        syncs.incrementAndGet();
+    }
+
+    /**
+     * 记录一次提交延迟
+     *
+     * @param latency 从日志进入队列到持久化完成的纳秒数
+     */
+    void recordLatency(long latency) {
+        latencySamples.incrementAndGet();
+        totalLatency.addAndGet(latency);
+        updateMax(maxLatency, latency);
+    }
+
+    private void updateMax(AtomicLong max, long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+
+    public long getEntries() {
+        return entries.get();
+    }
+
+    public long getSyncs() {
+        return syncs.get();
+    }
+
+    public long getMaxBatchSize() {
+        return maxBatchSize.get();
+    }
+
+    public double getAvgBatchSize() {
+        long count = batches.get();
+        return count == 0 ? 0 : (double) entries.get() / count;
+    }
+
+    /**
+     * 平均提交延迟(微秒)，按持久化完成的次数平均，与写入的批次数无关
+     */
+    public long getAvgLatencyMicros() {
+        long count = latencySamples.get();
+        return count == 0 ? 0 : totalLatency.get() / count / 1000;
+    }
+
+    /**
+     * 最大提交延迟(微秒)
+     */
+    public long getMaxLatencyMicros() {
+        return maxLatency.get() / 1000;
+    }
+
+    @Override
+    public String toString() {
+        return "GroupCommitMetrics{" +
+            "batches=" + getBatches() +
+            ", entries=" + getEntries() +
+            ", syncs=" + getSyncs() +
+            ", avgBatchSize=" + getAvgBatchSize() +
+            ", maxBatchSize=" + getMaxBatchSize() +
+            ", avgLatencyMicros=" + getAvgLatencyMicros() +
+            ", maxLatencyMicros=" + getMaxLatencyMicros() +
+            '}';
+    }
+}
@@ -0,0 +1,410 @@
+package com.vein.raft.server.storage.logs;
+
+import com.vein.common.NamedThreadFactory;
+import com.vein.common.base.LoggerSupport;
+import com.vein.raft.server.storage.logs.entry.LogEntry;
+import com.vein.raft.server.storage.logs.segment.SegmentManager;
+import com.vein.storage.api.exceptions.StorageException;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+
+/**
+ * 日志的group commit：收集多个proposal的日志，一次gathering write写入segment，
+ * 按照{@link DurabilityPolicy}刷盘后统一完成等待中的future
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/18 上午10:48
+ */
+public class GroupCommitter extends LoggerSupport {
+    private static final long IDLE_POLL_INTERVAL = 100;
+
+    private final SegmentManager segments;
+    private final DurabilityPolicy policy;
+    private final long flushInterval;
+    private final int maxBatchEntries;
+    private final LongConsumer writeListener;
+    private final BlockingQueue<PendingEntry> queue = new LinkedBlockingQueue<>();
+    private final ConcurrentNavigableMap<Long, CompletableFuture<Long>> waiters = new ConcurrentSkipListMap<>();
+    private final GroupCommitMetrics metrics = new GroupCommitMetrics();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new NamedThreadFactory("LogCommitThread", true));
+
+    /**
+     * 已经写入文件(未必已刷盘)的最大index
+     */
+    private volatile long writtenIndex;
+
+    /**
+     * 已经按照持久化策略持久化的最大index
+     */
+    private volatile long durableIndex;
+
+    private volatile boolean running = true;
+
+    /**
+     * 写入或刷盘失败的原因。失败后不再写入任何日志，避免在没有写入的日志之后继续写入留下空洞，
+     * 等待中和之后的所有请求都以异常完成。关闭之后同样拒绝新的请求
+     */
+    private volatile Throwable failure;
+
+    /**
+     * 最早一条未持久化日志进入队列的时间，只在提交线程访问
+     */
+    private long pendingSince;
+    private long lastSyncTime = System.nanoTime();
+
+    public GroupCommitter(SegmentManager segments, DurabilityPolicy policy, int flushInterval, int maxBatchEntries, long lastIndex) {
+        this(segments, policy, flushInterval, maxBatchEntries, lastIndex, index -> {
+        });
+    }
+
+    /**
+     * @param writeListener 每批日志写入文件后以该批最大的index回调，在提交线程执行
+     */
+    public GroupCommitter(SegmentManager segments, DurabilityPolicy policy, int flushInterval, int maxBatchEntries, long lastIndex,
+                          LongConsumer writeListener) {
+        this.segments = segments;
+        this.policy = policy;
+        this.flushInterval = flushInterval;
+        this.maxBatchEntries = maxBatchEntries;
+        this.writeListener = writeListener;
+        this.writtenIndex = lastIndex;
+        this.durableIndex = lastIndex;
+        executor.execute(this::run);
+    }
+
+    /**
+     * 提交一条已经分配好index并编码的日志，调用方需保证按index递增的顺序提交
+     *
+     * @param entry 日志记录
+     * @param frame 日志记录帧
+     */
+    void submit(LogEntry entry, ByteBuffer frame) {
+        checkFailure();
+        queue.add(new PendingEntry(entry, frame, System.nanoTime()));
+    }
+
+    /**
+     * 批量提交已经分配好index并编码的日志
+     *
+     * @param entries 按index递增的日志记录
+     * @param frames  与entries一一对应的记录帧
+     */
+    void submitAll(List<LogEntry> entries, List<ByteBuffer> frames) {
+        checkFailure();
+        long now = System.nanoTime();
+        List<PendingEntry> pending = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            pending.add(new PendingEntry(entries.get(i), frames.get(i), now));
+        }
+        queue.addAll(pending);
+    }
+
+    /**
+     * 返回index及之前的日志持久化完成后完成的future
+     *
+     * @param index log index
+     * @return future，完成时的值为index
+     */
+    CompletableFuture<Long> durable(long index) {
+        if (index <= durableIndex) {
+            return CompletableFuture.completedFuture(index);
+        }
+
+        CompletableFuture<Long> future = waiters.computeIfAbsent(index, key -> new CompletableFuture<>());
+        if (index <= durableIndex) {
+            waiters.remove(index);
+            future.complete(index);
+        } else if (failure != null) {
+            // 注册之前提交线程已经失败
+            waiters.remove(index);
+            future.completeExceptionally(failure);
+        }
+        return future;
+    }
+
+    /**
+     * 在提交线程中删除所有大于index的日志并等待完成，队列中之前提交的日志先写入再截断，
+     * 等待被删除日志持久化的future以异常完成
+     *
+     * @param index 保留的最后一条日志的index
+     */
+    void truncate(long index) {
+        if (!running) {
+            throw new IllegalStateException("log committer has closed");
+        }
+        checkFailure();
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        queue.add(new PendingEntry(index, future));
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageException(e);
+        } catch (ExecutionException e) {
+            throw new StorageException(e.getCause());
+        }
+    }
+
+    long writtenIndex() {
+        return writtenIndex;
+    }
+
+    /**
+     * 等待index及之前的日志写入文件，提交线程失败时抛出{@link StorageException}
+     *
+     * @param index log index
+     */
+    void awaitWritten(long index) {
+        while (writtenIndex < index && running) {
+            checkFailure();
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+    }
+
+    private void checkFailure() {
+        Throwable error = failure;
+        if (error != null) {
+            throw new StorageException(error);
+        }
+    }
+
+    long durableIndex() {
+        return durableIndex;
+    }
+
+    GroupCommitMetrics metrics() {
+        return metrics;
+    }
+
+    private void run() {
+        List<PendingEntry> batch = new ArrayList<>(maxBatchEntries);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingEntry first = queue.poll(pollInterval(), TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, maxBatchEntries - 1);
+                    if (failure != null) {
+                        // 失败检查之后才进入队列的请求
+                        fail(batch, failure);
+                        continue;
+                    }
+                    process(batch);
+                }
+                if (failure == null) {
+                    syncIfNecessary();
+                }
+            } catch (InterruptedException e) {
+                logger.warn("log commit thread is interrupted");
+            } catch (Throwable e) {
+                logger.error("commit {} log entries caught exception, log committer stop writing", batch.size(), e);
+                failure = e;
+                fail(batch, e);
+            } finally {
+                batch.clear();
+            }
+        }
+
+        if (failure == null && writtenIndex > durableIndex) {
+            sync();
+        }
+    }
+
+    private long pollInterval() {
+        if (policy == DurabilityPolicy.INTERVAL && writtenIndex > durableIndex) {
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastSyncTime);
+            return Math.max(0, flushInterval - elapsed);
+        }
+        return IDLE_POLL_INTERVAL;
+    }
+
+    /**
+     * 按顺序处理一批请求，截断请求把批次分开，之前的日志先写入
+     */
+    private void process(List<PendingEntry> batch) {
+        int from = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            PendingEntry pending = batch.get(i);
+            if (pending.truncated == null) {
+                continue;
+            }
+
+            if (i > from) {
+                write(batch.subList(from, i));
+            }
+            truncate(pending);
+            from = i + 1;
+        }
+
+        if (from < batch.size()) {
+            write(batch.subList(from, batch.size()));
+        }
+    }
+
+    private void truncate(PendingEntry pending) {
+        long index = pending.truncateIndex;
+        try {
+            segments.truncate(index);
+            writtenIndex = Math.min(writtenIndex, index);
+            durableIndex = Math.min(durableIndex, index);
+
+            Iterator<CompletableFuture<Long>> iterator = waiters.tailMap(index, false).values().iterator();
+            while (iterator.hasNext()) {
+                CompletableFuture<Long> future = iterator.next();
+                iterator.remove();
+                future.completeExceptionally(new StorageException("log entry after index:" + index + " has been truncated"));
+            }
+            pending.truncated.complete(null);
+        } catch (Throwable e) {
+            logger.error("truncate log to index:{} caught exception", index, e);
+            pending.truncated.completeExceptionally(e);
+        }
+    }
+
+    private void write(List<PendingEntry> batch) {
+        List<LogEntry> entries = new ArrayList<>(batch.size());
+        List<ByteBuffer> frames = new ArrayList<>(batch.size());
+        for (PendingEntry pending : batch) {
+            entries.add(pending.entry);
+            frames.add(pending.frame);
+        }
+
+        segments.append(entries, frames);
+        if (pendingSince == 0) {
+            pendingSince = batch.get(0).enqueueTime;
+        }
+        writtenIndex = entries.get(entries.size() - 1).getIndex();
+        metrics.recordBatch(batch.size());
+        writeListener.accept(writtenIndex);
+    }
+
+    private void syncIfNecessary() {
+        if (writtenIndex <= durableIndex) {
+            return;
+        }
+
+        switch (policy) {
+            case BATCH:
+                sync();
+                break;
+            case INTERVAL:
+                if (System.nanoTime() - lastSyncTime >= TimeUnit.MILLISECONDS.toNanos(flushInterval)) {
+                    sync();
+                }
+                break;
+            default:
+                markDurable(writtenIndex);
+        }
+    }
+
+    private void sync() {
+        long index = writtenIndex;
+        segments.flush();
+        lastSyncTime = System.nanoTime();
+        metrics.recordSync();
+        markDurable(index);
+    }
+
+    private void markDurable(long index) {
+        durableIndex = index;
+        if (pendingSince != 0) {
+            metrics.recordLatency(System.nanoTime() - pendingSince);
+            pendingSince = 0;
+        }
+
+        Iterator<Map.Entry<Long, CompletableFuture<Long>>> iterator = waiters.headMap(index, true).entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, CompletableFuture<Long>> entry = iterator.next();
+            iterator.remove();
+            entry.getValue().complete(entry.getKey());
+        }
+    }
+
+    /**
+     * 提交线程失败：批次和队列中的截断请求以及所有等待持久化的future都以异常完成。
+     * 已经写入的日志之后可能有没写入的日志，不能再标记为持久化
+     */
+    private void fail(List<PendingEntry> batch, Throwable error) {
+        List<PendingEntry> pendings = new ArrayList<>(batch);
+        queue.drainTo(pendings);
+        for (PendingEntry pending : pendings) {
+            if (pending.truncated != null && !pending.truncated.isDone()) {
+                pending.truncated.completeExceptionally(error);
+            }
+        }
+
+        Iterator<CompletableFuture<Long>> iterator = waiters.values().iterator();
+        while (iterator.hasNext()) {
+            CompletableFuture<Long> future = iterator.next();
+            iterator.remove();
+            future.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * 写完队列中剩余的日志并刷盘后停止提交线程，提交线程退出后才返回，之后可以安全地关闭segment。
+     * 等待被中断时提交线程不再写入新的批次，没有持久化的请求都以异常完成
+     */
+    void close() {
+        running = false;
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(IDLE_POLL_INTERVAL, TimeUnit.MILLISECONDS)) {
+                logger.debug("wait log commit thread write {} remaining entries", queue.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("wait log commit thread terminate is interrupted, fail remaining log entries");
+        }
+
+        if (failure == null) {
+            failure = new StorageException("log committer has closed");
+        }
+        fail(Collections.emptyList(), failure);
+    }
+
+    private static final class PendingEntry {
+        final LogEntry entry;
+        final ByteBuffer frame;
+        final long enqueueTime;
+
+        /**
+         * 截断请求保留的最后一条日志的index和完成通知，普通日志为null
+         */
+        final long truncateIndex;
+        final CompletableFuture<Void> truncated;
+
+        PendingEntry(LogEntry entry, ByteBuffer frame, long enqueueTime) {
+            this.entry = entry;
+            this.frame = frame;
+            this.enqueueTime = enqueueTime;
+            this.truncateIndex = 0;
+            this.truncated = null;
+        }
+
+        PendingEntry(long truncateIndex, CompletableFuture<Void> truncated) {
+            this.entry = null;
+            this.frame = null;
+            this.enqueueTime = System.nanoTime();
+            this.truncateIndex = truncateIndex;
+            this.truncated = truncated;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.vein.raft.server.storage.logs;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 日志缓存的统计信息
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午2:05
+ */
+public class LogCacheMetrics {
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder hotEvictions = new LongAdder();
+
+    void recordHit() {
+        hits.increment();
+    }
+
+    void recordMiss() {
+        misses.increment();
+    }
+
+    /**
+     * 记录一次淘汰
+     *
+     * @param hot 被淘汰的日志是否仍被落后的follower或状态机需要
+     */
+    void recordEviction(boolean hot) {
+        evictions.increment();
+        if (hot) {
+            hotEvictions.increment();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getHotEvictions() {
+        return hotEvictions.sum();
+    }
+
+    public double getHitRate() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    @Override
+    public String toString() {
+        return "LogCacheMetrics{" +
+            "hits=" + getHits() +
+            ", misses=" + getMisses() +
+            ", evictions=" + getEvictions() +
+            ", hotEvictions=" + getHotEvictions() +
+            ", hitRate=" + getHitRate() +
+            '}';
+    }
+}
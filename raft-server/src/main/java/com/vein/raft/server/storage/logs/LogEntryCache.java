@@ -0,0 +1,180 @@
+package com.vein.raft.server.storage.logs;
+
+import com.vein.raft.server.storage.logs.entry.LogEntry;
+import com.vein.raft.server.storage.logs.entry.LogEntryCodec;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 按字节数限制大小的日志缓存，以index % capacity作为槽位的环形数组，按index从旧到新淘汰。
+ * 已经被所有follower复制并提交的日志总是最旧的，因此最先被淘汰；缓存不为落后的follower保留日志，
+ * 超过字节上限时仍被需要的日志同样会被淘汰，只在统计中单独计数。
+ * 写操作(put/truncate/evict)由调用方保证串行，读操作无锁
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午2:10
+ */
+public class LogEntryCache {
+    private final AtomicReferenceArray<LogEntry> ring;
+    private final int mask;
+    private final long maxBytes;
+    private final LogCacheMetrics metrics = new LogCacheMetrics();
+
+    /**
+     * 缓存中最旧的index，head > tail时缓存为空
+     */
+    private volatile long head = 1;
+    private volatile long tail = 0;
+    private volatile long bytes;
+
+    /**
+     * 大于等于hotIndex的日志仍被落后的follower或状态机需要，只用于统计淘汰，不影响淘汰顺序
+     */
+    private volatile long hotIndex;
+
+    public LogEntryCache(int capacity, long maxBytes) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.ring = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.maxBytes = maxBytes;
+    }
+
+    public LogEntry get(long index) {
+        if (index >= head && index <= tail) {
+            LogEntry entry = ring.get(slot(index));
+            if (entry != null && entry.getIndex() == index) {
+                metrics.recordHit();
+                return entry;
+            }
+        }
+
+        metrics.recordMiss();
+        return null;
+    }
+
+    /**
+     * 放入entry需要淘汰的最大index，index相差capacity及以上的日志会占用同一个槽位
+     *
+     * @param entry 日志记录
+     * @return 需要淘汰的最大index，不需要淘汰则返回0，调用方需保证该日志已写入文件
+     */
+    long occupant(LogEntry entry) {
+        long limit = Math.min(tail, entry.getIndex() - ring.length());
+        return limit >= head ? limit : 0;
+    }
+
+    /**
+     * 缓存一条日志，index必须大于缓存中的所有日志
+     *
+     * @param entry          日志记录
+     * @param evictableIndex 可以被淘汰的最大index(已写入文件)
+     */
+    void put(LogEntry entry, long evictableIndex) {
+        long index = entry.getIndex();
+        long limit = occupant(entry);
+        while (limit > 0 && head <= limit) {
+            remove(head);
+            head++;
+        }
+
+        ring.set(slot(index), entry);
+        bytes += sizeOf(entry);
+        if (tail < head) {
+            head = index;
+        }
+        tail = index;
+
+        evict(evictableIndex);
+    }
+
+    /**
+     * 缓存中第一条index大于等于指定index的日志
+     *
+     * @param index log index
+     * @return 日志记录，没有则返回null
+     */
+    LogEntry ceiling(long index) {
+        for (long i = Math.max(index, head); i <= tail; i++) {
+            LogEntry entry = ring.get(slot(i));
+            if (entry != null && entry.getIndex() == i) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 淘汰最旧的日志直到缓存大小不超过限制
+     *
+     * @param evictableIndex 可以被淘汰的最大index(已写入文件)
+     */
+    void evict(long evictableIndex) {
+        long limit = Math.min(evictableIndex, tail);
+        while (bytes > maxBytes && head <= limit) {
+            remove(head);
+            head++;
+        }
+    }
+
+    private void remove(long index) {
+        int slot = slot(index);
+        LogEntry entry = ring.get(slot);
+        if (entry != null && entry.getIndex() == index) {
+            ring.set(slot, null);
+            bytes -= sizeOf(entry);
+            metrics.recordEviction(index >= hotIndex);
+        }
+    }
+
+    /**
+     * 删除所有大于index的日志
+     *
+     * @param index log index
+     */
+    void truncate(long index) {
+        for (long i = tail; i > index && i >= head; i--) {
+            int slot = slot(i);
+            LogEntry entry = ring.get(slot);
+            if (entry != null && entry.getIndex() == i) {
+                ring.set(slot, null);
+                bytes -= sizeOf(entry);
+            }
+        }
+
+        if (index < head) {
+            head = index + 1;
+        }
+        tail = Math.max(Math.min(tail, index), head - 1);
+    }
+
+    void setHotIndex(long hotIndex) {
+        this.hotIndex = hotIndex;
+    }
+
+    boolean overBudget() {
+        return bytes > maxBytes;
+    }
+
+    /**
+     * 缓存中最新日志的index，缓存为空时返回0
+     */
+    long lastIndex() {
+        return tail >= head ? tail : 0;
+    }
+
+    public long bytes() {
+        return bytes;
+    }
+
+    public LogCacheMetrics metrics() {
+        return metrics;
+    }
+
+    private int slot(long index) {
+        return (int) (index & mask);
+    }
+
+    private static long sizeOf(LogEntry entry) {
+        return LogEntryCodec.frameLength(entry.getSize());
+    }
+}
@@ -0,0 +1,87 @@
+package com.vein.raft.server.storage.logs;
+
+import com.vein.raft.server.storage.logs.entry.LogEntry;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * 按批遍历[fromIndex, toIndex]的日志，每次{@link RaftLogger#read(long, int, int)}读取一批，
+ * 批内遇到{@link RaftLogger#skip(long)}留下的空洞时拆分，保证返回的每批日志index连续
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午10:50
+ */
+public class LogRangeIterator implements Iterator<List<LogEntry>> {
+    private final RaftLogger raftLogger;
+    private final long toIndex;
+    private final int maxEntries;
+    private final int maxBytes;
+
+    private long nextIndex;
+    private List<LogEntry> buffer = Collections.emptyList();
+    private int offset;
+    private List<LogEntry> next;
+
+    LogRangeIterator(RaftLogger raftLogger, long fromIndex, long toIndex, int maxEntries, int maxBytes) {
+        this.raftLogger = raftLogger;
+        this.nextIndex = fromIndex;
+        this.toIndex = toIndex;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            next = fetch();
+        }
+        return next != null;
+    }
+
+    @Override
+    public List<LogEntry> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        List<LogEntry> entries = next;
+        next = null;
+        return entries;
+    }
+
+    private List<LogEntry> fetch() {
+        if (offset >= buffer.size()) {
+            if (nextIndex > toIndex) {
+                return null;
+            }
+
+            int entries = (int) Math.min(maxEntries, toIndex - nextIndex + 1);
+            buffer = raftLogger.read(nextIndex, entries, maxBytes);
+            offset = 0;
+            if (buffer.isEmpty()) {
+                return null;
+            }
+        }
+
+        // 有空洞时读到的日志可能超出toIndex
+        if (buffer.get(offset).getIndex() > toIndex) {
+            offset = buffer.size();
+            nextIndex = toIndex + 1;
+            return null;
+        }
+
+        int end = offset + 1;
+        while (end < buffer.size() && buffer.get(end).getIndex() == buffer.get(end - 1).getIndex() + 1
+            && buffer.get(end).getIndex() <= toIndex) {
+            end++;
+        }
+
+        List<LogEntry> entries = buffer.subList(offset, end);
+        offset = end;
+        nextIndex = entries.get(entries.size() - 1).getIndex() + 1;
+        return entries;
+    }
+}
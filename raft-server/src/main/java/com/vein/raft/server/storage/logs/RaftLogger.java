@@ -2,21 +2,22 @@ package com.vein.raft.server.storage.logs;
 
 
 import com.vein.raft.server.storage.logs.entry.LogEntry;
+import com.vein.raft.server.storage.logs.entry.LogEntryCodec;
 import com.vein.raft.server.storage.logs.index.LogIndex;
 import com.vein.raft.server.storage.logs.segment.Segment;
 import com.vein.raft.server.storage.logs.segment.SegmentManager;
-import com.vein.common.NamedThreadFactory;
+import com.vein.raft.server.storage.logs.segment.SegmentType;
 import com.vein.common.base.LoggerSupport;
 import com.vein.serializer.api.Serializer;
 
 import java.io.File;
-import java.util.Map;
-import java.util.NavigableSet;
-import java.util.concurrent.ConcurrentNavigableMap;
-import java.util.concurrent.ConcurrentSkipListMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongConsumer;
 
 /**
  * @author shifeng.luo
@@ -29,27 +30,159 @@ public class RaftLogger extends LoggerSupport {
     private final int maxMessageSize;
     private final int maxSegmentEntries;
     private final SegmentManager segments;
-    private final ConcurrentNavigableMap<Long, LogEntry> entryBuffer = new ConcurrentSkipListMap<>();
-    private ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("LogCleanPool"));
+    private final GroupCommitter committer;
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final LogEntryCache cache;
+    private final long compactRetention;
+
+    /**
+     * 日志进入提交队列后以最后一条日志的index回调，用于唤醒等待新日志的复制任务
+     */
+    private volatile LongConsumer appendListener = index -> {
+    };
+
+    /**
+     * 已提交的最大index及所有follower都已复制的下一条index。两者中较小者只用于统计被淘汰的日志是否仍被需要
+     * (hotEvictions)，不改变缓存的淘汰顺序
+     */
+    private volatile long commitIndex;
+    private volatile long replicatedIndex = Long.MAX_VALUE;
 
     public RaftLogger(String fileName, File directory, Serializer serializer, int maxSegmentSize, int maxMessageSize, int maxSegmentEntries) {
+        this(fileName, directory, serializer, maxSegmentSize, maxMessageSize, maxSegmentEntries, DurabilityPolicy.BATCH, 1000, 1024,
+            64 * 1024, 64 * 1024 * 1024, SegmentType.CHANNEL, 10 * 1000);
+    }
+
+    public RaftLogger(String fileName, File directory, Serializer serializer, int maxSegmentSize, int maxMessageSize, int maxSegmentEntries,
+                      DurabilityPolicy durabilityPolicy, int flushInterval, int maxBatchEntries, int cacheEntries, long cacheBytes,
+                      SegmentType segmentType, long compactRetention) {
         this.directory = directory;
         this.maxSegmentSize = maxSegmentSize;
         this.maxMessageSize = maxMessageSize;
         this.maxSegmentEntries = maxSegmentEntries;
-        this.segments = new SegmentManager(fileName, directory, serializer, maxSegmentSize, maxSegmentEntries, maxMessageSize);
+        this.segments = new SegmentManager(fileName, directory, serializer, maxSegmentSize, maxSegmentEntries, maxMessageSize, segmentType);
+
+        long lastLogIndex = segments.currentIndex();
+        this.cache = new LogEntryCache(cacheEntries, cacheBytes);
+        this.compactRetention = compactRetention;
+        this.committer = new GroupCommitter(segments, durabilityPolicy, flushInterval, maxBatchEntries, lastLogIndex, this::evict);
     }
 
     /**
-     * 添加日志
+     * 添加日志，日志进入group commit队列后立即返回，持久化进度通过{@link #durable(long)}获取
      *
      * @param entry 日志记录
      * @return 返回该日志记录的index
      */
     public long append(LogEntry entry) {
-        long index = segments.addEntry(entry);
-        entryBuffer.put(index, entry);
-        return index;
+        LogEntryCodec codec = segments.codec();
+        byte[] payload = codec.serialize(entry);
+
+        appendLock.lock();
+        try {
+            long index = segments.nextIndex();
+            entry.setIndex(index);
+            ByteBuffer frame = codec.encode(entry, payload);
+
+            long occupant = cache.occupant(entry);
+            if (occupant > 0) {
+                committer.awaitWritten(occupant);
+            }
+            committer.submit(entry, frame);
+            cache.put(entry, committer.writtenIndex());
+        } finally {
+            appendLock.unlock();
+        }
+
+        appendListener.accept(entry.getIndex());
+        return entry.getIndex();
+    }
+
+    /**
+     * 批量添加日志，所有日志一次编码到同一个buffer中并作为一批进入group commit队列
+     *
+     * @param entries 日志记录
+     * @return 最后一条日志记录的index
+     */
+    public long appendAll(List<LogEntry> entries) {
+        List<byte[]> payloads = new ArrayList<>(entries.size());
+        for (LogEntry entry : entries) {
+            payloads.add(serialize(entry));
+        }
+        return appendAll(entries, payloads);
+    }
+
+    /**
+     * 批量添加已经序列化的日志，序列化可以在调用方线程提前完成
+     *
+     * @param entries  日志记录
+     * @param payloads 与entries一一对应的{@link #serialize(LogEntry)}结果
+     * @return 最后一条日志记录的index
+     */
+    public long appendAll(List<LogEntry> entries, List<byte[]> payloads) {
+        if (entries.isEmpty()) {
+            throw new IllegalArgumentException("append entries is empty");
+        }
+
+        LogEntryCodec codec = segments.codec();
+        appendLock.lock();
+        try {
+            for (LogEntry entry : entries) {
+                entry.setIndex(segments.nextIndex());
+            }
+            List<ByteBuffer> frames = codec.encode(entries, payloads);
+
+            // 批次中的日志可能占用同一批次中之前日志的缓存位置，需要先提交之前的日志才能等待其写入
+            int from = 0;
+            for (int i = 0; i < entries.size(); i++) {
+                LogEntry entry = entries.get(i);
+                long occupant = cache.occupant(entry);
+                if (occupant >= entries.get(from).getIndex() && i > from) {
+                    committer.submitAll(entries.subList(from, i), frames.subList(from, i));
+                    from = i;
+                }
+                if (occupant > 0) {
+                    committer.awaitWritten(occupant);
+                }
+                cache.put(entry, committer.writtenIndex());
+            }
+            committer.submitAll(entries.subList(from, entries.size()), frames.subList(from, entries.size()));
+        } finally {
+            appendLock.unlock();
+        }
+
+        long lastIndex = entries.get(entries.size() - 1).getIndex();
+        appendListener.accept(lastIndex);
+        return lastIndex;
+    }
+
+    /**
+     * 序列化日志的command
+     *
+     * @param entry 日志记录
+     * @return payload
+     */
+    public byte[] serialize(LogEntry entry) {
+        return segments.codec().serialize(entry);
+    }
+
+    public void setAppendListener(LongConsumer appendListener) {
+        this.appendListener = appendListener;
+    }
+
+    /**
+     * 日志写入文件后淘汰缓存，提交线程不等待append锁
+     *
+     * @param writtenIndex 已写入文件的最大index
+     */
+    private void evict(long writtenIndex) {
+        if (cache.overBudget() && appendLock.tryLock()) {
+            try {
+                cache.evict(writtenIndex);
+            } finally {
+                appendLock.unlock();
+            }
+        }
     }
 
     /**
@@ -58,7 +191,49 @@ public class RaftLogger extends LoggerSupport {
      * @param entries 需要跳过的数量
      */
     public void skip(long entries) {
-        segments.skip(entries);
+        appendLock.lock();
+        try {
+            segments.skip(entries);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * 返回index及之前的日志按照持久化策略持久化完成后完成的future
+     *
+     * @param index log index
+     * @return future，完成时的值为index
+     */
+    public CompletableFuture<Long> durable(long index) {
+        return committer.durable(index);
+    }
+
+    /**
+     * 已经按照持久化策略持久化的最大index
+     *
+     * @return log index
+     */
+    public long durableIndex() {
+        return committer.durableIndex();
+    }
+
+    /**
+     * group commit的统计信息
+     *
+     * @return {@link GroupCommitMetrics}
+     */
+    public GroupCommitMetrics commitMetrics() {
+        return committer.metrics();
+    }
+
+    /**
+     * 日志缓存的统计信息
+     *
+     * @return {@link LogCacheMetrics}
+     */
+    public LogCacheMetrics cacheMetrics() {
+        return cache.metrics();
     }
 
     /**
@@ -67,21 +242,23 @@ public class RaftLogger extends LoggerSupport {
      * @return 如果有日志记录，则返回第一条日志记录的index，否则返回0
      */
     public long firstIndex() {
-        Segment segment = segments.firstSegment();
-        if (segment == null) {
-            return 0;
-        }
-
-        if (!segment.isOpened()) {
-            segment.open();
-        }
+        while (true) {
+            Segment segment = segments.firstSegment();
+            if (segment == null) {
+                return 0;
+            }
+            // 已经被compact删除，重新获取第一个segment
+            if (!acquire(segment)) {
+                continue;
+            }
 
-        LogIndex logIndex = segment.firstIndex();
-        if (logIndex != null) {
-            return logIndex.getIndex();
+            try {
+                LogIndex logIndex = segment.firstIndex();
+                return logIndex != null ? logIndex.getIndex() : 0;
+            } finally {
+                segment.release();
+            }
         }
-
-        return 0;
     }
 
     /**
@@ -104,20 +281,134 @@ public class RaftLogger extends LoggerSupport {
      * @return {@link LogEntry}
      */
     public LogEntry get(long index) {
-        LogEntry entry = entryBuffer.get(index);
+        LogEntry entry = cache.get(index);
         if (entry != null) {
             return entry;
         }
 
         Segment segment = segments.segment(index);
-        if (segment == null) {
+        if (segment == null || !acquire(segment)) {
             return null;
         }
+
+        try {
+            return segment.get(index);
+        } finally {
+            segment.release();
+        }
+    }
+
+    /**
+     * 批量读取从fromIndex开始的日志，先读缓存，缓存未命中时每个segment内连续的日志只做一次读取
+     *
+     * @param fromIndex  起始index
+     * @param maxEntries 最多读取的条数
+     * @param maxBytes   最多读取的字节数(按记录帧计算)，至少返回一条
+     * @return 按index递增的日志记录，index之间可能因{@link #skip(long)}存在空洞
+     */
+    public List<LogEntry> read(long fromIndex, int maxEntries, int maxBytes) {
+        long lastIndex = lastIndex();
+        if (fromIndex > lastIndex || maxEntries <= 0) {
+            return Collections.emptyList();
+        }
+
+        Segment first = segments.firstSegment();
+        if (first != null && fromIndex < first.baseIndex()) {
+            // 已经被compact删除的日志不能跳过，调用方需要改为发送快照
+            return Collections.emptyList();
+        }
+
+        List<LogEntry> entries = new ArrayList<>((int) Math.min(maxEntries, lastIndex - fromIndex + 1));
+        long index = fromIndex;
+        long bytes = 0;
+        while (index <= lastIndex && entries.size() < maxEntries) {
+            List<LogEntry> batch;
+            LogEntry cached = cache.get(index);
+            if (cached != null) {
+                batch = Collections.singletonList(cached);
+            } else {
+                batch = readSegments(index, maxEntries - entries.size(), (int) Math.max(0, maxBytes - bytes));
+                if (batch.isEmpty()) {
+                    cached = cache.ceiling(index);
+                    if (cached == null) {
+                        break;
+                    }
+                    batch = Collections.singletonList(cached);
+                }
+            }
+
+            for (LogEntry entry : batch) {
+                int length = LogEntryCodec.frameLength(entry.getSize());
+                if (entries.size() >= maxEntries || (!entries.isEmpty() && bytes + length > maxBytes)) {
+                    return entries;
+                }
+                entries.add(entry);
+                bytes += length;
+                index = entry.getIndex() + 1;
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * 从包含index的segment开始读取第一段连续的日志
+     */
+    private List<LogEntry> readSegments(long index, int maxEntries, int maxBytes) {
+        Segment segment = segments.segment(index);
+        if (segment == null) {
+            segment = segments.firstSegment();
+        }
+
+        while (segment != null) {
+            if (acquire(segment)) {
+                try {
+                    ByteBuffer frames = segment.readFrames(index, maxEntries, maxBytes);
+                    if (frames != null) {
+                        LogEntryCodec codec = segments.codec();
+                        List<LogEntry> entries = new ArrayList<>();
+                        while (frames.hasRemaining()) {
+                            entries.add(codec.decode(frames));
+                        }
+                        return entries;
+                    }
+                } finally {
+                    segment.release();
+                }
+            }
+            segment = segments.higherSegment(segment);
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * 持有segment的引用并打开，segment被compact或truncate删除后返回false，
+     * 返回true时调用方使用完后需要调用{@link Segment#release()}
+     */
+    private boolean acquire(Segment segment) {
+        if (!segment.retain()) {
+            return false;
+        }
         if (!segment.isOpened()) {
             segment.open();
         }
+        if (!segment.isOpened()) {
+            segment.release();
+            return false;
+        }
+        return true;
+    }
 
-        return segment.get(index);
+    /**
+     * 按批遍历[fromIndex, toIndex]的日志，每批的index连续
+     *
+     * @param fromIndex  起始index
+     * @param toIndex    结束index(包含)
+     * @param maxEntries 每批最多的条数
+     * @param maxBytes   每批最多的字节数
+     * @return {@link LogRangeIterator}
+     */
+    public LogRangeIterator iterator(long fromIndex, long toIndex, int maxEntries, int maxBytes) {
+        return new LogRangeIterator(this, fromIndex, toIndex, maxEntries, maxBytes);
     }
 
     /**
@@ -126,9 +417,12 @@ public class RaftLogger extends LoggerSupport {
      * @return {@link LogEntry}
      */
     public LogEntry lastEntry() {
-        Map.Entry<Long, LogEntry> lastEntry = entryBuffer.lastEntry();
-        if (lastEntry != null) {
-            return lastEntry.getValue();
+        long lastIndex = cache.lastIndex();
+        if (lastIndex > 0) {
+            LogEntry entry = get(lastIndex);
+            if (entry != null) {
+                return entry;
+            }
         }
 
         Segment segment = segments.currentSegment();
@@ -136,46 +430,69 @@ public class RaftLogger extends LoggerSupport {
             return null;
         }
 
-        if (!segment.isOpened()) {
-            segment.open();
-        }
-
-        LogIndex logIndex = segment.lastIndex();
-        if (logIndex != null && logIndex.getIndex() > 0) {
-            return segment.get(logIndex.getIndex());
+        if (acquire(segment)) {
+            try {
+                LogIndex logIndex = segment.lastIndex();
+                if (logIndex != null && logIndex.getIndex() > 0) {
+                    return segment.get(logIndex.getIndex());
+                }
+            } finally {
+                segment.release();
+            }
         }
 
-        return null;
+        // 刚滚动的segment还没有数据，最后一条记录在上一个segment中
+        long writtenIndex = committer.writtenIndex();
+        return writtenIndex > 0 ? get(writtenIndex) : null;
     }
 
     /**
-     * truncate所有大于index的日志
+     * 删除所有大于index的日志，文件、索引和index生成器都回退到index，之后append的日志从index + 1开始
      *
-     * @param index 指定日志的索引
+     * @param index 保留的最后一条日志的index
      */
     public void truncate(long index) {
-        NavigableSet<Long> set = entryBuffer.keySet();
-        for (Long idx : set) {
-            if (idx >= index) {
-                entryBuffer.remove(idx);
-            }
+        appendLock.lock();
+        try {
+            committer.truncate(index);
+            cache.truncate(index);
+        } finally {
+            appendLock.unlock();
         }
     }
 
     /**
-     * 提交所有小于等于index的日志
+     * 更新commitIndex，只用于统计缓存淘汰的日志是否仍被需要
      *
      * @param index log index
      */
-    public void commit(long index) {
-        segments.flush();
-        executorService.schedule(() -> {
-            Long startIndex = entryBuffer.firstKey();
-            while (startIndex <= index) {
-                entryBuffer.remove(startIndex);
-                startIndex++;
-            }
-        }, 10 * 1000, TimeUnit.MILLISECONDS);
+    public void updateCommitIndex(long index) {
+        commitIndex = index;
+        cache.setHotIndex(Math.min(index + 1, replicatedIndex));
+    }
+
+    /**
+     * 更新所有follower都已复制的下一条index，只用于统计缓存淘汰的日志是否仍被需要，
+     * 缓存不为落后的follower保留日志；不再是leader时设置为{@link Long#MAX_VALUE}
+     *
+     * @param index 最慢的follower的matchedIndex + 1
+     */
+    public void updateReplicatedIndex(long index) {
+        replicatedIndex = index;
+        cache.setHotIndex(Math.min(commitIndex + 1, index));
+    }
+
+    /**
+     * 快照完成后在后台删除快照之前的日志，为落后的follower额外保留compactRetention条日志，
+     * 只删除整个segment，当前segment不会被删除
+     *
+     * @param snapshotIndex 快照的index
+     */
+    public void compact(long snapshotIndex) {
+        long index = snapshotIndex - compactRetention;
+        if (index > 1) {
+            segments.compact(index);
+        }
     }
 
     /**
@@ -213,4 +530,12 @@ public class RaftLogger extends LoggerSupport {
     public int maxMessageSize() {
         return maxMessageSize;
     }
+
+    /**
+     * 刷盘所有已提交到队列的日志后关闭
+     */
+    public void close() {
+        committer.close();
+        segments.close();
+    }
 }
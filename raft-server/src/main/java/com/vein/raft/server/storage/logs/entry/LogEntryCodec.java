@@ -0,0 +1,191 @@
+package com.vein.raft.server.storage.logs.entry;
+
+import com.vein.common.base.LoggerSupport;
+import com.vein.common.exceptions.MessageOverLimitException;
+import com.vein.raft.client.Command;
+import com.vein.serializer.api.Serializer;
+import com.vein.storage.api.exceptions.BadDataException;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+/**
+ * 日志记录帧的编解码
+ * 帧格式: size(4)+index(8)+term(8)+payload+checksum(8)，size=index+term+payload的长度，checksum覆盖size之后的size个字节
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/18 上午10:35
+ */
+public class LogEntryCodec extends LoggerSupport {
+
+    private final Serializer serializer;
+    private final int maxMessageSize;
+
+    public LogEntryCodec(Serializer serializer, int maxMessageSize) {
+        this.serializer = serializer;
+        this.maxMessageSize = maxMessageSize;
+    }
+
+    /**
+     * 序列化日志的command
+     *
+     * @param entry 日志记录
+     * @return payload
+     */
+    public byte[] serialize(LogEntry entry) {
+        byte[] bytes = serializer.serialize(entry.getCommand());
+        if (bytes.length > maxMessageSize) {
+            logger.error("entry payload size:{} has over limit:{}", bytes.length, maxMessageSize);
+            throw new MessageOverLimitException("entry payload size:" + bytes.length + " has over limit:" + maxMessageSize);
+        }
+        return bytes;
+    }
+
+    public Command deserialize(byte[] payload) {
+        return serializer.deserialize(payload);
+    }
+
+    public ByteBuffer encode(LogEntry entry) {
+        return encode(entry, serialize(entry));
+    }
+
+    /**
+     * 生成日志记录帧
+     *
+     * @param entry   日志记录，index和term需已确定
+     * @param payload {@link #serialize(LogEntry)}的结果
+     * @return 可直接写入文件的buffer
+     */
+    public ByteBuffer encode(LogEntry entry, byte[] payload) {
+        int totalLength = LogEntry.INDEX_TERM_LENGTH + payload.length;
+        entry.setSize(totalLength);
+
+        ByteBuffer buffer = ByteBuffer.allocate(LogEntry.ENTRY_OTHER_SIZE + payload.length);
+        buffer.putInt(totalLength);
+        buffer.putLong(entry.getIndex());
+        buffer.putLong(entry.getTerm());
+        buffer.put(payload);
+
+        Checksum crc32 = new CRC32();
+        crc32.update(buffer.array(), 4, totalLength);
+        buffer.putLong(crc32.getValue());
+
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * 批量生成日志记录帧，所有记录帧编码到同一个buffer中，返回的是每一帧对应的切片
+     *
+     * @param entries  日志记录，index和term需已确定
+     * @param payloads 与entries一一对应的{@link #serialize(LogEntry)}结果
+     * @return 与entries一一对应的记录帧
+     */
+    public List<ByteBuffer> encode(List<LogEntry> entries, List<byte[]> payloads) {
+        int total = 0;
+        for (byte[] payload : payloads) {
+            total += LogEntry.ENTRY_OTHER_SIZE + payload.length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(total);
+        List<ByteBuffer> frames = new ArrayList<>(entries.size());
+        CRC32 crc32 = new CRC32();
+        for (int i = 0; i < entries.size(); i++) {
+            LogEntry entry = entries.get(i);
+            byte[] payload = payloads.get(i);
+            int totalLength = LogEntry.INDEX_TERM_LENGTH + payload.length;
+            entry.setSize(totalLength);
+
+            int start = buffer.position();
+            buffer.putInt(totalLength);
+            buffer.putLong(entry.getIndex());
+            buffer.putLong(entry.getTerm());
+            buffer.put(payload);
+
+            crc32.reset();
+            crc32.update(buffer.array(), start + 4, totalLength);
+            buffer.putLong(crc32.getValue());
+
+            ByteBuffer frame = buffer.duplicate();
+            frame.position(start);
+            frame.limit(buffer.position());
+            frames.add(frame.slice());
+        }
+        return frames;
+    }
+
+    /**
+     * 从buffer的当前位置解码一条日志记录帧，解码后position移动到下一帧的开始
+     *
+     * @param buffer 包含记录帧的buffer
+     * @return 日志记录
+     * @throws BadDataException 记录帧不完整或校验失败
+     */
+    public LogEntry decode(ByteBuffer buffer) {
+        int size = checkFrame(buffer);
+        long index = buffer.getLong();
+        long term = buffer.getLong();
+        byte[] payload = new byte[size - LogEntry.INDEX_TERM_LENGTH];
+        buffer.get(payload);
+        buffer.getLong();
+
+        return new LogEntry(index, term, size, deserialize(payload));
+    }
+
+    /**
+     * 校验buffer当前位置的日志记录帧但不反序列化command，校验后position移动到下一帧的开始
+     *
+     * @param buffer 包含记录帧的buffer
+     * @return 日志的index
+     * @throws BadDataException 记录帧不完整或校验失败
+     */
+    public long verify(ByteBuffer buffer) {
+        int size = checkFrame(buffer);
+        long index = buffer.getLong(buffer.position());
+        buffer.position(buffer.position() + size + 8);
+        return index;
+    }
+
+    /**
+     * 校验记录帧的长度和checksum
+     *
+     * @return 记录帧中的size，返回时position在size之后
+     */
+    private int checkFrame(ByteBuffer buffer) {
+        int start = buffer.position();
+        if (buffer.remaining() < 4) {
+            throw new BadDataException("incomplete entry frame at position:" + start);
+        }
+
+        int size = buffer.getInt();
+        if (size < LogEntry.INDEX_TERM_LENGTH || buffer.remaining() < size + 8) {
+            throw new BadDataException("incomplete entry frame at position:" + start + ",size:" + size);
+        }
+
+        ByteBuffer checked = buffer.duplicate();
+        checked.limit(start + 4 + size);
+        CRC32 crc32 = new CRC32();
+        crc32.update(checked);
+        if (crc32.getValue() != buffer.getLong(start + 4 + size)) {
+            throw new BadDataException("entry frame at position:" + start + " checksum mismatch");
+        }
+        return size;
+    }
+
+    /**
+     * 记录帧的长度
+     *
+     * @param size {@link LogEntry#getSize()}
+     * @return 字节数
+     */
+    public static int frameLength(int size) {
+        return size + LogEntry.ENTRY_OTHER_SIZE - LogEntry.INDEX_TERM_LENGTH;
+    }
+
+    public int maxMessageSize() {
+        return maxMessageSize;
+    }
+}
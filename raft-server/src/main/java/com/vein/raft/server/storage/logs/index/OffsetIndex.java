@@ -25,9 +25,9 @@ public class OffsetIndex extends LoggerSupport {
     private static final int CHECKSUM_SIZE = 8;
     private static final int ENTRY_SIZE = OFFSET_SIZE + POSITION_SIZE + CHECKSUM_SIZE;
 
-    private final File file;
-    private final long baseIndex;
-    private final int maxFileSize;
+    private File file;
+    private long baseIndex;
+    private int maxFileSize;
     private volatile MappedByteBuffer mapBuffer;
 
     private volatile boolean closed = false;
@@ -136,17 +136,57 @@ public class OffsetIndex extends LoggerSupport {
     public LogIndex lookup(long index) {
         ByteBuffer duplicate = mapBuffer.duplicate();
 
-        long interval = index - baseIndex;
-        if (entries == 0) {
+        int count = entries;
+        if (count == 0) {
+            return null;
+        }
+
+        int slot = ceilingSlot(duplicate, index, count);
+        if (slot < count && getIndex(duplicate, slot) == index) {
+            return getOffsetIndex(duplicate, slot);
+        }
+
+        if (slot == 0) {
             return null;
         }
+        return getOffsetIndex(duplicate, slot - 1);
+    }
+
+    /**
+     * 第一条index大于等于指定index的记录的序号
+     *
+     * @param index log index
+     * @return 索引文件中的记录序号，没有则返回{@link #size()}
+     */
+    public int ceilingSlot(long index) {
+        return ceilingSlot(mapBuffer.duplicate(), index, entries);
+    }
 
-        int slot = (int) interval;
-        LogIndex offsetIndex = getOffsetIndex(duplicate, slot);
-        while (offsetIndex.getIndex() > index) {
-            offsetIndex = getOffsetIndex(duplicate, slot--);
+    /**
+     * 每条记录的index至少比前一条大1，所以第slot条记录的index不小于baseIndex + slot，二分查找的上界为index - baseIndex
+     */
+    private int ceilingSlot(ByteBuffer buffer, long index, int count) {
+        int low = 0;
+        int high = (int) Math.max(0, Math.min(count, index - baseIndex + 1));
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getIndex(buffer, mid) < index) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
         }
-        return offsetIndex;
+        return low;
+    }
+
+    /**
+     * 第slot条记录对应日志在segment中的偏移
+     *
+     * @param slot 记录序号
+     * @return 偏移
+     */
+    public long offset(int slot) {
+        return getOffset(mapBuffer, slot);
     }
 
     private LogIndex getOffsetIndex(ByteBuffer buffer, int slot) {
@@ -160,6 +200,94 @@ public class OffsetIndex extends LoggerSupport {
         return file;
     }
 
+    /**
+     * 预分配的空索引在segment滚动时重命名并确定起始index
+     *
+     * @param target    新的索引文件
+     * @param baseIndex 起始index
+     */
+    public void assign(File target, long baseIndex) {
+        if (entries != 0) {
+            throw new IllegalStateException("index file:" + file.getName() + " is not empty");
+        }
+        if (!file.renameTo(target)) {
+            throw new StorageException("rename index file:" + file + " to:" + target + " failed");
+        }
+
+        this.file = target;
+        this.baseIndex = baseIndex;
+        this.lastIndex = baseIndex - 1;
+    }
+
+    /**
+     * 以读写方式重新映射索引文件并扩展到maxEntries条记录，用于已经滚动的segment被截断后重新写入。
+     * 旧的映射不主动释放，由GC回收，避免并发的读线程访问已经释放的内存
+     *
+     * @param maxEntries 最大记录数
+     */
+    public void extend(int maxEntries) {
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "rw");
+            raf.setLength((long) maxEntries * ENTRY_SIZE);
+
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+            buffer.position(entries * ENTRY_SIZE);
+            this.maxFileSize = maxEntries * ENTRY_SIZE;
+            this.mapBuffer = buffer;
+        } catch (IOException e) {
+            logger.error("extend OffsetIndex:{} caught exception", file, e);
+            throw new StorageException(e);
+        } finally {
+            IoUtil.close(raf);
+        }
+    }
+
+    /**
+     * 只保留前slot条记录，之后的记录不清除，由后续写入覆盖
+     *
+     * @param slot 保留的记录数
+     */
+    public void truncate(int slot) {
+        if (slot >= entries) {
+            return;
+        }
+
+        mapBuffer.position(slot * ENTRY_SIZE);
+        lastIndex = slot == 0 ? baseIndex - 1 : getIndex(mapBuffer, slot - 1);
+        entries = slot;
+    }
+
+    /**
+     * 批量添加索引记录，所有记录先写入一个buffer再一次写入映射
+     *
+     * @param indexes 按递增顺序的log index
+     * @param offsets 与indexes一一对应的偏移
+     * @param count   记录数量
+     */
+    public void indexEntries(long[] indexes, long[] offsets, int count) {
+        if (count == 0) {
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(count * ENTRY_SIZE);
+        CRC32 crc32 = new CRC32();
+        for (int i = 0; i < count; i++) {
+            int start = buffer.position();
+            buffer.putLong(indexes[i]);
+            buffer.putInt((int) offsets[i]);
+
+            crc32.reset();
+            crc32.update(buffer.array(), start, LogIndex.LENGTH);
+            buffer.putLong(crc32.getValue());
+        }
+
+        buffer.flip();
+        mapBuffer.put(buffer);
+        entries += count;
+        lastIndex = indexes[count - 1];
+    }
+
     public void indexEntry(long index, long offset) {
         ByteBuffer buffer = ByteBuffer.allocate(LogIndex.LENGTH);
         buffer.putLong(index);
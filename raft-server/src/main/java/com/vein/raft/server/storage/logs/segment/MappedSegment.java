@@ -0,0 +1,125 @@
+package com.vein.raft.server.storage.logs.segment;
+
+import com.vein.common.utils.FileUtil;
+import com.vein.raft.server.storage.logs.entry.LogEntryCodec;
+import com.vein.storage.api.exceptions.StorageException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 预分配文件并映射到内存的segment，日志记录帧直接写入MappedByteBuffer，
+ * 读取仍然使用positional read。文件中未写入的部分为0，恢复时长度为0的位置即为日志结尾
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午4:00
+ */
+public class MappedSegment extends Segment {
+    private final int mappedSize;
+    private volatile MappedByteBuffer mapBuffer;
+
+    /**
+     * @param mappedSize 预分配的文件大小，需要容纳maxSegmentSize加上一条最大的记录帧
+     */
+    MappedSegment(File file, long baseIndex, LogEntryCodec codec, int maxSegmentEntries, int mappedSize) {
+        super(file, baseIndex, codec, maxSegmentEntries);
+        this.mappedSize = mappedSize;
+    }
+
+    @Override
+    void buildIndex() {
+        super.buildIndex();
+        map();
+    }
+
+    @Override
+    void check(ExecutorService executor) {
+        super.check(executor);
+        map();
+    }
+
+    private void map() {
+        try {
+            mapBuffer = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, mappedSize);
+        } catch (IOException e) {
+            logger.error("map segment:{} size:{} caught exception", file, mappedSize, e);
+            throw new StorageException(e);
+        }
+    }
+
+    @Override
+    protected void write(ByteBuffer[] buffers, long position, long total) {
+        if (position + total > mappedSize) {
+            throw new StorageException("segment:" + file + " has no space for " + total + " bytes at position:" + position);
+        }
+
+        ByteBuffer target = mapBuffer.duplicate();
+        target.position((int) position);
+        for (ByteBuffer buffer : buffers) {
+            target.put(buffer.duplicate());
+        }
+    }
+
+    @Override
+    synchronized void flush() {
+        MappedByteBuffer buffer = mapBuffer;
+        if (buffer != null) {
+            buffer.force();
+        }
+        super.flush();
+    }
+
+    /**
+     * 滚动后取消映射并把文件截断到有效数据的结尾，释放预分配的空间，再由父类写入footer
+     */
+    @Override
+    synchronized void seal() {
+        MappedByteBuffer buffer = mapBuffer;
+        if (buffer != null) {
+            buffer.force();
+        }
+        unmap();
+        try {
+            fileChannel.truncate(writePosition());
+        } catch (IOException e) {
+            logger.error("truncate segment:{} to position:{} caught exception", file, writePosition(), e);
+            throw new StorageException(e);
+        }
+        super.seal();
+    }
+
+    /**
+     * 截断后重新映射，文件重新扩展到预分配的大小，截断位置之后的内容为0
+     */
+    @Override
+    protected void truncateFile(long position) {
+        unmap();
+        super.truncateFile(position);
+        map();
+    }
+
+    @Override
+    protected synchronized void closeFiles() {
+        unmap();
+        super.closeFiles();
+    }
+
+    private void unmap() {
+        MappedByteBuffer buffer = mapBuffer;
+        if (buffer == null) {
+            return;
+        }
+
+        mapBuffer = null;
+        try {
+            FileUtil.close(buffer);
+        } catch (ReflectiveOperationException e) {
+            logger.error("close segment:{} mapped buffer caught exception", file, e);
+            throw new StorageException(e);
+        }
+    }
+}
@@ -1,12 +1,11 @@
 package com.vein.raft.server.storage.logs.segment;
 
-import com.vein.raft.client.Command;
 import com.vein.raft.server.storage.logs.entry.LogEntry;
+import com.vein.raft.server.storage.logs.entry.LogEntryCodec;
 import com.vein.raft.server.storage.logs.index.LogIndex;
 import com.vein.raft.server.storage.logs.index.OffsetIndex;
 import com.vein.common.base.LoggerSupport;
-import com.vein.common.exceptions.MessageOverLimitException;
-import com.vein.serializer.api.Serializer;
+import com.vein.common.utils.IoUtil;
 import com.vein.storage.api.exceptions.BadDataException;
 import com.vein.storage.api.exceptions.StorageException;
 
@@ -15,96 +14,212 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
-import java.util.zip.CRC32;
-import java.util.zip.Checksum;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author shifeng.luo
  * @version created on 2017/11/5 上午11:50
  */
 public class Segment extends LoggerSupport {
-    private final File file;
-    private final long baseIndex;
-    private final Serializer serializer;
+    /**
+     * 恢复时顺序扫描记录帧边界每次读取的字节数
+     */
+    private static final int SCAN_BLOCK_SIZE = 1024 * 1024;
+
+    /**
+     * 恢复时并行校验的每段数据的字节数
+     */
+    private static final int VERIFY_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    protected File file;
+    private long baseIndex;
+    private final LogEntryCodec codec;
     private final int maxSegmentEntries;
-    private final int maxMessageSize;
     private OffsetIndex offsetIndex;
-    private ByteBuffer buffer;
-    private FileChannel fileChannel;
+    protected volatile FileChannel fileChannel;
 
     private volatile long writePosition;
+    private volatile SegmentFooter footer;
     private volatile boolean opened = false;
 
-    Segment(File file, long baseIndex, Serializer serializer, int maxSegmentEntries, int maxMessageSize) {
+    /**
+     * 文件和索引是否以读写方式打开，只读打开或已经滚动的segment需要重新打开才能写入
+     */
+    private volatile boolean writable = false;
+
+    /**
+     * 读线程持有的引用数加上segment自身的一个引用，删除时释放自身的引用，
+     * 文件和索引映射在引用数降为0时才关闭，读线程不会访问已经关闭的channel或unmap的索引
+     */
+    private final AtomicInteger refs = new AtomicInteger(1);
+    private volatile boolean deleted = false;
+
+    /**
+     * 重新打开之前的channel，持有引用的读线程可能仍在使用，没有读线程持有引用时才关闭
+     */
+    private final Queue<FileChannel> retiredChannels = new ConcurrentLinkedQueue<>();
+
+    Segment(File file, long baseIndex, LogEntryCodec codec, int maxSegmentEntries) {
         this.file = file;
         this.baseIndex = baseIndex;
-        this.serializer = serializer;
+        this.codec = codec;
         this.maxSegmentEntries = maxSegmentEntries;
-        this.maxMessageSize = maxMessageSize;
     }
 
-    public void open() {
+    public synchronized void open() {
+        if (opened || deleted) {
+            return;
+        }
+
         File indexFile = buildChannelAndIndexFile("r");
         this.offsetIndex = new OffsetIndex(indexFile, baseIndex);
+        this.writable = false;
+        if (footer == null) {
+            this.writePosition = endOfLastEntry();
+        } else if (footer.matches(offsetIndex)) {
+            this.writePosition = footer.dataLength();
+        } else {
+            logger.warn("segment:{} index doesn't match footer, rebuild index", file);
+            offsetIndex.close();
+            IoUtil.close(fileChannel);
+            check(null);
+            seal();
+            return;
+        }
         opened = true;
     }
 
+    /**
+     * 读取文件末尾的footer，没有footer说明segment没有正常滚动，需要通过{@link #check(ExecutorService)}恢复
+     */
+    void loadFooter() {
+        this.footer = SegmentFooter.read(file);
+    }
+
+    public SegmentFooter footer() {
+        return footer;
+    }
+
+    /**
+     * 根据索引中最后一条记录计算有效数据的结尾，忽略文件尾部的无效数据
+     */
+    private long endOfLastEntry() {
+        LogIndex last = offsetIndex.lastIndex();
+        if (last == null) {
+            return 0;
+        }
+
+        ByteBuffer length = SegmentReadBuffers.acquire(4);
+        read(length, last.getOffset(), 4);
+        if (length.position() < 4) {
+            throw new StorageException("segment:" + file + " end of file at position:" + last.getOffset());
+        }
+        return last.getOffset() + LogEntryCodec.frameLength(length.getInt(0));
+    }
+
     private File buildChannelAndIndexFile(String mode) {
         try {
             RandomAccessFile accessFile = new RandomAccessFile(file, mode);
             this.fileChannel = accessFile.getChannel();
-            this.buffer = ByteBuffer.allocate(LogEntry.ENTRY_OTHER_SIZE + maxMessageSize);
         } catch (Exception e) {
             logger.error("get file:{} channel caught exception", file);
             throw new IllegalStateException(e);
         }
 
+        return indexFile(file);
+    }
+
+    private static File indexFile(File file) {
         String fileName = file.getName();
         fileName = fileName.substring(0, fileName.lastIndexOf(SegmentManager.EXTENSION));
         fileName += "index";
         return new File(file.getParent(), fileName);
     }
 
+    /**
+     * 预分配的segment在滚动时重命名为正式的文件名并确定起始index，只能在写入日志之前调用
+     *
+     * @param target    新的segment文件
+     * @param baseIndex 起始index
+     */
+    void assign(File target, long baseIndex) {
+        if (!file.renameTo(target)) {
+            throw new StorageException("rename segment:" + file + " to:" + target + " failed");
+        }
+
+        offsetIndex.assign(indexFile(target), baseIndex);
+        this.file = target;
+        this.baseIndex = baseIndex;
+    }
+
     void buildIndex() {
         File indexFile = buildChannelAndIndexFile("rw");
         this.offsetIndex = new OffsetIndex(indexFile, baseIndex, maxSegmentEntries);
+        writable = true;
+        opened = true;
     }
 
     public void append(LogEntry entry) {
-        byte[] bytes = serializer.serialize(entry.getCommand());
-        if (bytes.length > maxMessageSize) {
-            logger.error("entry payload size:{} has over limit:{}", bytes.length, maxMessageSize);
-            throw new MessageOverLimitException("entry payload size:" + bytes.length + " has over limit:" + maxMessageSize);
-        }
-
-        buffer.clear();
-        int totalLength = LogEntry.INDEX_TERM_LENGTH + bytes.length;
-        entry.setSize(totalLength);
-
-        buffer.putInt(totalLength);
-        buffer.putLong(entry.getIndex());
-        buffer.putLong(entry.getTerm());
-        buffer.put(bytes);
+        ByteBuffer frame = codec.encode(entry);
+        append(Collections.singletonList(entry), Collections.singletonList(frame));
+    }
 
-        byte[] array = buffer.array();
-        Checksum crc32 = new CRC32();
-        crc32.update(array, 4, totalLength);
-        long checksum = crc32.getValue();
-        buffer.putLong(checksum);
+    /**
+     * 批量追加日志，所有记录帧通过一次gathering write写入文件
+     *
+     * @param entries 日志记录
+     * @param frames  与entries一一对应的记录帧
+     */
+    public void append(List<LogEntry> entries, List<ByteBuffer> frames) {
+        ByteBuffer[] buffers = frames.toArray(new ByteBuffer[frames.size()]);
+        int[] sizes = new int[buffers.length];
+        long total = 0;
+        for (int i = 0; i < buffers.length; i++) {
+            sizes[i] = buffers[i].remaining();
+            total += sizes[i];
+        }
 
-        buffer.flip();
         long position = writePosition;
+        write(buffers, position, total);
+
+        writePosition = position + total;
+        long[] indexes = new long[buffers.length];
+        long[] offsets = new long[buffers.length];
+        for (int i = 0; i < buffers.length; i++) {
+            indexes[i] = entries.get(i).getIndex();
+            offsets[i] = position;
+            position += sizes[i];
+        }
+        offsetIndex.indexEntries(indexes, offsets, buffers.length);
+    }
+
+    /**
+     * 将记录帧写入文件的position处
+     *
+     * @param buffers  记录帧
+     * @param position 写入位置
+     * @param total    记录帧的总字节数
+     */
+    protected void write(ByteBuffer[] buffers, long position, long total) {
         try {
-            fileChannel.position(writePosition);
-            while (buffer.hasRemaining()) {
-                fileChannel.write(buffer);
+            fileChannel.position(position);
+            long written = 0;
+            while (written < total) {
+                written += fileChannel.write(buffers);
             }
-            writePosition = fileChannel.position();
         } catch (IOException e) {
+            logger.error("write segment:{} position:{} caught exception", file, position, e);
             throw new StorageException(e);
         }
-
-        offsetIndex.indexEntry(entry.getIndex(), position);
     }
 
     public LogEntry get(long index) {
@@ -120,74 +235,274 @@ public class Segment extends LoggerSupport {
         return readEntry(logIndex.getOffset());
     }
 
-    private LogEntry readEntry(long position) {
-        ByteBuffer length;
-        ByteBuffer body;
+    /**
+     * 一次positional read读取从第一条index大于等于fromIndex的日志开始的连续记录帧
+     *
+     * @param fromIndex  起始index
+     * @param maxEntries 最多读取的条数
+     * @param maxBytes   最多读取的字节数，至少读取一条
+     * @return position为0、包含整数条记录帧的buffer，没有日志则返回null；buffer为线程本地复用的buffer，同一线程下次读取前有效
+     */
+    public ByteBuffer readFrames(long fromIndex, int maxEntries, int maxBytes) {
+        int count = offsetIndex.size();
+        long end = writePosition;
+        int from = offsetIndex.ceilingSlot(fromIndex);
+        if (from >= count || maxEntries <= 0) {
+            return null;
+        }
 
-        int size;
-        try {
-            fileChannel.position(position);
-            length = ByteBuffer.allocate(4);
-            while (length.hasRemaining()) {
-                fileChannel.read(length);
+        int to = (int) Math.min(count, (long) from + maxEntries);
+        long start = offsetIndex.offset(from);
+        if (to < count) {
+            end = offsetIndex.offset(to);
+        }
+
+        if (end - start > maxBytes && to - from > 1) {
+            int low = from + 1;
+            int high = to - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (offsetIndex.offset(mid) - start <= maxBytes) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
             }
+            end = offsetIndex.offset(low);
+        }
+
+        int length = (int) (end - start);
+        ByteBuffer buffer = SegmentReadBuffers.acquire(length);
+        read(buffer, start, length);
+        if (buffer.position() < length) {
+            throw new StorageException("segment:" + file + " end of file at position:" + (start + buffer.position()));
+        }
 
-            length.flip();
-            size = length.getInt();
-            body = ByteBuffer.allocate(size + 8);
-            while (body.hasRemaining()) {
-                fileChannel.read(body);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * 从position开始读取，直到buffer中至少有minBytes个字节或者到达文件结尾
+     * 只使用positional read，不改变channel的position，多个读线程和写线程之间不需要加锁
+     */
+    private void read(ByteBuffer buffer, long position, int minBytes) {
+        FileChannel channel = fileChannel;
+        try {
+            while (buffer.position() < minBytes) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    return;
+                }
             }
         } catch (IOException e) {
-            logger.error("locate segment:{} position:{} caught exception", file, position, e);
+            logger.error("read segment:{} from position:{} caught exception", file, position, e);
             throw new StorageException(e);
         }
+    }
 
-        body.flip();
-        long index = body.getLong();
-        long term = body.getLong();
-        byte[] bytes = new byte[size - LogEntry.INDEX_TERM_LENGTH];
-        body.get(bytes);
-        long checksum = body.getLong();
+    /**
+     * 读取position处的一条日志
+     *
+     * @param position 日志在文件中的偏移
+     * @return 日志记录，position处的长度为0(预分配文件中未写入的部分)时返回null
+     * @throws BadDataException 日志不完整或者校验失败
+     */
+    private LogEntry readEntry(long position) {
+        ByteBuffer buffer = SegmentReadBuffers.acquire(SegmentReadBuffers.DEFAULT_SIZE);
+        read(buffer, position, 4);
+        buffer.flip();
+        if (buffer.remaining() < 4) {
+            throw new BadDataException("segment:" + file + " incomplete entry at position:" + position);
+        }
 
+        int size = buffer.getInt(0);
+        if (size == 0 || size == SegmentFooter.MAGIC) {
+            return null;
+        }
+        if (size < LogEntry.INDEX_TERM_LENGTH || size > codec.maxMessageSize() + LogEntry.INDEX_TERM_LENGTH) {
+            throw new BadDataException("segment:" + file + " invalid entry size:" + size + " at position:" + position);
+        }
 
-        Checksum crc32 = new CRC32();
-        crc32.update(body.array(), 0, size);
-        if (crc32.getValue() != checksum) {
-            throw new BadDataException();
+        int frameLength = LogEntryCodec.frameLength(size);
+        if (buffer.remaining() < frameLength) {
+            buffer = SegmentReadBuffers.acquire(frameLength);
+            read(buffer, position, frameLength);
+            buffer.flip();
+            if (buffer.remaining() < frameLength) {
+                throw new BadDataException("segment:" + file + " incomplete entry at position:" + position);
+            }
         }
 
-        Command command = serializer.deserialize(bytes);
-        return new LogEntry(index, term, size, command);
+        buffer.limit(frameLength);
+        return codec.decode(buffer);
     }
 
-    void check() {
+    /**
+     * 重建segment的索引：先顺序读取每条记录的长度确定记录帧的边界，再把记录帧分段并行校验，
+     * 校验失败的记录帧及之后的数据都视为无效
+     *
+     * @param executor 并行校验使用的线程池，为null时在当前线程校验
+     */
+    void check(ExecutorService executor) {
         File indexFile = buildChannelAndIndexFile("rw");
-
         offsetIndex = new OffsetIndex(indexFile, baseIndex, maxSegmentEntries);
+        footer = null;
+
+        long[] positions = scanFrames();
+        long[] indexes = new long[positions.length - 1];
+        int valid = verifyFrames(positions, indexes, executor);
+
+        long lastIndex = baseIndex - 1;
+        int count = 0;
+        while (count < valid && count < maxSegmentEntries) {
+            if (indexes[count] <= lastIndex) {
+                logger.error("segment:{} entry:{} at position:{} is out of order", file, indexes[count], positions[count]);
+                break;
+            }
+
+            offsetIndex.indexEntry(indexes[count], positions[count]);
+            lastIndex = indexes[count];
+            count++;
+        }
+        writePosition = positions[count];
+        writable = true;
+        opened = true;
+    }
+
+    /**
+     * 按块顺序读取文件，只读取每条记录的长度来确定记录帧的边界
+     *
+     * @return 每条记录帧的起始位置，最后一个元素为最后一条记录帧的结尾
+     */
+    private long[] scanFrames() {
         long size;
         try {
             size = fileChannel.size();
         } catch (IOException e) {
-            logger.error("truncate segment:{} position:{} caught exception", this.file, 0, e);
+            logger.error("get segment:{} size caught exception", file, e);
             throw new StorageException(e);
         }
 
+        int maxSize = codec.maxMessageSize() + LogEntry.INDEX_TERM_LENGTH;
+        ByteBuffer block = SegmentReadBuffers.acquire(SCAN_BLOCK_SIZE);
+        long blockStart = 0;
+        long blockEnd = 0;
+
+        long[] positions = new long[1024];
+        int count = 0;
         long position = 0;
-        while (position < size) {
-            try {
-                LogEntry entry = readEntry(position);
-                offsetIndex.indexEntry(entry.getIndex(), position);
-                position = fileChannel.position();
-            } catch (BadDataException e) {
-                logger.error("segment:{} from position:{} data has bad!", this.file, position, e);
+        while (position + 4 <= size) {
+            if (position + 4 > blockEnd) {
+                int length = (int) Math.min(SCAN_BLOCK_SIZE, size - position);
+                block = SegmentReadBuffers.acquire(length);
+                read(block, position, length);
+                blockStart = position;
+                blockEnd = position + block.position();
+                if (position + 4 > blockEnd) {
+                    break;
+                }
+            }
+
+            int length = block.getInt((int) (position - blockStart));
+            if (length < LogEntry.INDEX_TERM_LENGTH || length > maxSize) {
                 break;
-            } catch (IOException e) {
-                logger.error("read entry from segment:{} position:{} caught exception", this.file, position, e);
+            }
+
+            long end = position + LogEntryCodec.frameLength(length);
+            if (end > size) {
+                break;
+            }
+
+            if (count + 1 >= positions.length) {
+                positions = Arrays.copyOf(positions, positions.length * 2);
+            }
+            positions[count++] = position;
+            position = end;
+        }
+
+        positions[count] = position;
+        return Arrays.copyOf(positions, count + 1);
+    }
+
+    /**
+     * 把记录帧按字节数分段并行校验checksum
+     *
+     * @return 从头开始连续校验通过的记录帧数量
+     */
+    private int verifyFrames(long[] positions, long[] indexes, ExecutorService executor) {
+        int frames = indexes.length;
+        List<Integer> bounds = new ArrayList<>();
+        int from = 0;
+        for (int i = 1; i <= frames; i++) {
+            if (i == frames || positions[i] - positions[from] >= VERIFY_CHUNK_SIZE) {
+                bounds.add(i);
+                from = i;
+            }
+        }
+
+        if (executor == null || bounds.size() <= 1) {
+            from = 0;
+            for (int to : bounds) {
+                int end = verifyChunk(positions, indexes, from, to);
+                if (end < to) {
+                    return end;
+                }
+                from = to;
+            }
+            return frames;
+        }
+
+        List<Future<Integer>> futures = new ArrayList<>(bounds.size());
+        from = 0;
+        for (int to : bounds) {
+            int start = from;
+            futures.add(executor.submit(() -> verifyChunk(positions, indexes, start, to)));
+            from = to;
+        }
+
+        for (int i = 0; i < futures.size(); i++) {
+            int end;
+            try {
+                end = futures.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
                 throw new StorageException(e);
+            } catch (ExecutionException e) {
+                logger.error("verify segment:{} caught exception", file, e.getCause());
+                throw new StorageException(e.getCause());
+            }
+
+            if (end < bounds.get(i)) {
+                return end;
+            }
+        }
+        return frames;
+    }
+
+    /**
+     * 一次读取[from, to)的记录帧并逐条校验
+     *
+     * @return 第一条校验失败的记录帧序号，全部通过时返回to
+     */
+    private int verifyChunk(long[] positions, long[] indexes, int from, int to) {
+        int length = (int) (positions[to] - positions[from]);
+        ByteBuffer buffer = SegmentReadBuffers.acquire(length);
+        read(buffer, positions[from], length);
+        buffer.flip();
+
+        for (int i = from; i < to; i++) {
+            try {
+                indexes[i] = codec.verify(buffer);
+            } catch (BadDataException e) {
+                logger.error("segment:{} from position:{} data has bad!", file, positions[i], e);
+                return i;
             }
         }
-        writePosition = position;
+        return to;
+    }
+
+    public long baseIndex() {
+        return baseIndex;
     }
 
     public LogIndex lastIndex() {
@@ -207,11 +522,108 @@ public class Segment extends LoggerSupport {
         }
     }
 
+    long writePosition() {
+        return writePosition;
+    }
+
     int entries() {
         return offsetIndex.size();
     }
 
-    void flush() {
+    /**
+     * segment写满滚动后调用，刷盘并裁剪索引文件，文件和索引映射保持打开供读线程继续读取
+     */
+    synchronized void seal() {
+        flush();
+
+        SegmentFooter footer = buildFooter();
+        ByteBuffer buffer = footer.encode();
+        try {
+            long position = writePosition;
+            while (buffer.hasRemaining()) {
+                position += fileChannel.write(buffer, position);
+            }
+            fileChannel.force(false);
+            offsetIndex.trimToValidSize();
+        } catch (IOException e) {
+            logger.error("seal segment:{} caught exception", file, e);
+            throw new StorageException(e);
+        }
+        this.footer = footer;
+        this.writable = false;
+    }
+
+    /**
+     * 删除所有大于index的日志：索引回退到index之后的第一条记录，文件截断到该记录帧的起始位置，
+     * 耗时与删除的日志数量无关。已经滚动的segment会以读写方式重新打开，footer随文件截断一起删除
+     *
+     * @param index 保留的最后一条日志的index
+     */
+    synchronized void truncate(long index) {
+        if (!opened) {
+            open();
+        }
+        if (!writable) {
+            reopen();
+        }
+
+        int slot = offsetIndex.ceilingSlot(index + 1);
+        if (slot < offsetIndex.size()) {
+            writePosition = offsetIndex.offset(slot);
+            offsetIndex.truncate(slot);
+        }
+        footer = null;
+        truncateFile(writePosition);
+    }
+
+    private void reopen() {
+        FileChannel channel = fileChannel;
+        buildChannelAndIndexFile("rw");
+        retiredChannels.add(channel);
+        if (refs.get() == 1) {
+            closeRetiredChannels();
+        }
+        offsetIndex.extend(maxSegmentEntries);
+        writable = true;
+    }
+
+    private void closeRetiredChannels() {
+        FileChannel channel;
+        while ((channel = retiredChannels.poll()) != null) {
+            IoUtil.close(channel);
+        }
+    }
+
+    /**
+     * 截断文件并刷新元数据，保证重启恢复时不会读到截断之前的记录帧
+     *
+     * @param position 截断的位置
+     */
+    protected void truncateFile(long position) {
+        try {
+            fileChannel.truncate(position);
+            fileChannel.force(true);
+        } catch (IOException e) {
+            logger.error("truncate segment:{} to position:{} caught exception", file, position, e);
+            throw new StorageException(e);
+        }
+    }
+
+    private SegmentFooter buildFooter() {
+        int entries = offsetIndex.size();
+        LogIndex first = offsetIndex.firstIndex();
+        LogIndex last = offsetIndex.lastIndex();
+        long lastTerm = 0;
+        if (last != null) {
+            LogEntry entry = readEntry(last.getOffset());
+            lastTerm = entry == null ? 0 : entry.getTerm();
+        }
+
+        return new SegmentFooter(entries, first == null ? 0 : first.getIndex(), last == null ? 0 : last.getIndex(),
+            lastTerm, writePosition);
+    }
+
+    synchronized void flush() {
         try {
             fileChannel.force(false);
             offsetIndex.flush();
@@ -221,18 +633,88 @@ public class Segment extends LoggerSupport {
         }
     }
 
-    public void close() {
+    public synchronized void close() {
         try {
             offsetIndex.trimToValidSize();
+        } catch (IOException e) {
+            logger.error("flush segment:{}  caught exception", file, e);
+            throw new StorageException(e);
+        }
+        closeFiles();
+    }
+
+    /**
+     * 关闭文件和索引映射
+     */
+    protected synchronized void closeFiles() {
+        closeRetiredChannels();
+        try {
             offsetIndex.close();
             fileChannel.close();
-            this.buffer = null;
+            opened = false;
         } catch (IOException e) {
-            logger.error("flush segment:{}  caught exception", file, e);
+            logger.error("close segment:{}  caught exception", file, e);
             throw new StorageException(e);
         }
     }
 
+    /**
+     * 读线程访问segment之前持有一个引用，使用完后调用{@link #release()}
+     *
+     * @return segment已经被删除时返回false
+     */
+    public boolean retain() {
+        while (true) {
+            int count = refs.get();
+            if (count <= 0 || deleted) {
+                return false;
+            }
+            if (refs.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 释放引用，没有读线程持有时关闭重新打开之前的channel；segment已经被删除且没有读线程持有时关闭文件和索引映射
+     */
+    public void release() {
+        int count = refs.decrementAndGet();
+        // 之后获取引用的读线程只会使用新的channel
+        if (count == 1 && !retiredChannels.isEmpty()) {
+            closeRetiredChannels();
+        }
+        if (count > 0) {
+            return;
+        }
+
+        synchronized (this) {
+            if (opened) {
+                closeFiles();
+            }
+        }
+    }
+
+    /**
+     * 删除segment文件及索引文件：文件名立即删除，之后同名的segment不受影响；
+     * 已经打开的文件和索引映射在所有读线程释放引用之后才关闭
+     */
+    void delete() {
+        synchronized (this) {
+            if (deleted) {
+                return;
+            }
+            deleted = true;
+
+            File index = offsetIndex != null ? offsetIndex.getFile() : indexFile(file);
+            index.delete();
+            if (!file.delete()) {
+                logger.warn("delete segment:{} failed", file);
+            }
+        }
+        release();
+    }
+
     public boolean isOpened() {
         return opened;
     }
@@ -0,0 +1,128 @@
+package com.vein.raft.server.storage.logs.segment;
+
+import com.vein.common.utils.IoUtil;
+import com.vein.raft.server.storage.logs.index.LogIndex;
+import com.vein.raft.server.storage.logs.index.OffsetIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * segment滚动后写在有效数据之后的footer，重启时有footer的segment不需要扫描校验
+ * 格式: magic(4)+entries(4)+firstIndex(8)+lastIndex(8)+lastTerm(8)+dataLength(8)+footerChecksum(8)
+ * magic为负数，不会被当成日志记录的长度。footer只校验自身，数据由每条记录帧的checksum校验：
+ * footer与索引不一致时重新扫描校验所有记录帧
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午5:10
+ */
+public class SegmentFooter {
+    static final int MAGIC = 0xF007E55E;
+    static final int LENGTH = 4 + 4 + 8 + 8 + 8 + 8 + 8;
+
+    private final int entries;
+    private final long firstIndex;
+    private final long lastIndex;
+    private final long lastTerm;
+    private final long dataLength;
+
+    SegmentFooter(int entries, long firstIndex, long lastIndex, long lastTerm, long dataLength) {
+        this.entries = entries;
+        this.firstIndex = firstIndex;
+        this.lastIndex = lastIndex;
+        this.lastTerm = lastTerm;
+        this.dataLength = dataLength;
+    }
+
+    ByteBuffer encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(LENGTH);
+        buffer.putInt(MAGIC);
+        buffer.putInt(entries);
+        buffer.putLong(firstIndex);
+        buffer.putLong(lastIndex);
+        buffer.putLong(lastTerm);
+        buffer.putLong(dataLength);
+
+        CRC32 crc32 = new CRC32();
+        crc32.update(buffer.array(), 0, LENGTH - 8);
+        buffer.putLong(crc32.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * 读取segment文件末尾的footer
+     *
+     * @param file segment文件
+     * @return footer，文件没有footer或footer校验失败时返回null
+     */
+    static SegmentFooter read(File file) {
+        RandomAccessFile accessFile = null;
+        try {
+            accessFile = new RandomAccessFile(file, "r");
+            long length = accessFile.length();
+            if (length < LENGTH) {
+                return null;
+            }
+
+            byte[] bytes = new byte[LENGTH];
+            accessFile.seek(length - LENGTH);
+            accessFile.readFully(bytes);
+            return decode(ByteBuffer.wrap(bytes), length - LENGTH);
+        } catch (IOException e) {
+            return null;
+        } finally {
+            IoUtil.close(accessFile);
+        }
+    }
+
+    private static SegmentFooter decode(ByteBuffer buffer, long position) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(buffer.array(), 0, LENGTH - 8);
+        if (buffer.getInt() != MAGIC || buffer.getLong(LENGTH - 8) != crc32.getValue()) {
+            return null;
+        }
+
+        SegmentFooter footer = new SegmentFooter(buffer.getInt(), buffer.getLong(), buffer.getLong(), buffer.getLong(),
+            buffer.getLong());
+        return footer.dataLength == position ? footer : null;
+    }
+
+    /**
+     * footer与索引文件是否一致
+     *
+     * @param offsetIndex 索引
+     * @return 一致返回true
+     */
+    boolean matches(OffsetIndex offsetIndex) {
+        if (offsetIndex.size() != entries) {
+            return false;
+        }
+
+        LogIndex last = offsetIndex.lastIndex();
+        return entries == 0 || (last != null && last.getIndex() == lastIndex);
+    }
+
+    public int entries() {
+        return entries;
+    }
+
+    public long firstIndex() {
+        return firstIndex;
+    }
+
+    public long lastIndex() {
+        return lastIndex;
+    }
+
+    public long lastTerm() {
+        return lastTerm;
+    }
+
+    public long dataLength() {
+        return dataLength;
+    }
+}
@@ -2,17 +2,26 @@ package com.vein.raft.server.storage.logs.segment;
 
 import com.vein.raft.server.storage.FileNameRule;
 import com.vein.raft.server.storage.logs.entry.LogEntry;
+import com.vein.raft.server.storage.logs.entry.LogEntryCodec;
 import com.vein.raft.server.storage.logs.index.LogIndex;
 import com.vein.common.LongIdGenerator;
+import com.vein.common.NamedThreadFactory;
 import com.vein.common.base.LoggerSupport;
 import com.vein.common.utils.FileUtil;
 import com.vein.serializer.api.Serializer;
 
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * @author shifeng.luo
@@ -22,27 +31,45 @@ public class SegmentManager extends LoggerSupport implements FileNameRule<Long>
     static final String EXTENSION = "segment";
     private static final char EXTENSION_SEPARATOR = '.';
     private static final char SEPARATOR = '_';
+    private static final String PREALLOCATE_SUFFIX = "prealloc";
 
     private final String fileName;
     private final File directory;
-    private final Serializer serializer;
+    private final LogEntryCodec codec;
     private final int maxSegmentSize;
     private final int maxSegmentEntries;
-    private final int maxMessageSize;
+    private final SegmentType segmentType;
     private final LongIdGenerator indexGenerator = new LongIdGenerator(0);
 
     private final ConcurrentNavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
     private volatile Segment currentSegment;
 
+    /**
+     * 已经滚动但还未在后台完成刷盘的segment，刷盘时需要一起刷盘
+     */
+    private final Queue<Segment> unsealed = new ConcurrentLinkedQueue<>();
+    private final SegmentPreallocator preallocator;
+
+    /**
+     * 预分配文件名的序号，上一个预分配的segment重命名之前可能已经开始预分配下一个，文件名不能相同
+     */
+    private long preallocated;
+
     public SegmentManager(String fileName, File directory, Serializer serializer, int maxSegmentSize, int maxSegmentEntries, int maxMessageSize) {
+        this(fileName, directory, serializer, maxSegmentSize, maxSegmentEntries, maxMessageSize, SegmentType.CHANNEL);
+    }
+
+    public SegmentManager(String fileName, File directory, Serializer serializer, int maxSegmentSize, int maxSegmentEntries, int maxMessageSize,
+                          SegmentType segmentType) {
         this.fileName = fileName;
         this.directory = directory;
-        this.serializer = serializer;
+        this.codec = new LogEntryCodec(serializer, maxMessageSize);
         this.maxSegmentSize = maxSegmentSize;
         this.maxSegmentEntries = maxSegmentEntries;
-        this.maxMessageSize = maxMessageSize;
+        this.segmentType = segmentType;
         loadSegments();
         check();
+        this.preallocator = new SegmentPreallocator(this::preallocate);
     }
 
     private void loadSegments() {
@@ -55,12 +82,19 @@ public class SegmentManager extends LoggerSupport implements FileNameRule<Long>
         }
 
         for (File file : files) {
+            if (file.getName().startsWith(fileName + SEPARATOR + PREALLOCATE_SUFFIX)) {
+                if (!file.delete()) {
+                    logger.warn("delete preallocated file:{} failed", file);
+                }
+                continue;
+            }
+
             Long baseIndex = parse(file.getName());
             if (baseIndex == null) {
                 continue;
             }
 
-            Segment segment = new Segment(file, baseIndex, serializer, maxSegmentEntries, maxMessageSize);
+            Segment segment = newSegment(file, baseIndex);
             segments.put(baseIndex, segment);
         }
 
@@ -73,27 +107,165 @@ public class SegmentManager extends LoggerSupport implements FileNameRule<Long>
     private void check() {
         Map.Entry<Long, Segment> lastEntry = segments.lastEntry();
         if (lastEntry == null) {
-            Segment segment = nextSegment(1);
+            File file = new File(directory, generate(1L));
+            Segment segment = newSegment(file, 1);
+            segment.buildIndex();
             segments.put(1L, segment);
             currentSegment = segment;
+        } else {
+            recover();
         }
 
-        currentSegment.check();
-
         LogIndex lastIndex = currentSegment.lastIndex();
-        if (lastIndex != null) {
-            indexGenerator.skip(lastIndex.getIndex());
+        indexGenerator.skip(lastIndex == null ? currentSegment.baseIndex() - 1 : lastIndex.getIndex());
+    }
+
+    /**
+     * 带footer的segment已经正常滚动，打开时直接使用footer和索引文件，不需要扫描数据；
+     * 没有footer的segment（当前segment或异常退出时未完成滚动的segment）并行校验后重建索引
+     */
+    private void recover() {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new NamedThreadFactory("SegmentRecoverPool", true));
+        try {
+            for (Segment segment : segments.values()) {
+                if (segment == currentSegment) {
+                    segment.check(executor);
+                    continue;
+                }
+
+                segment.loadFooter();
+                if (segment.footer() == null) {
+                    logger.warn("segment:{} has no footer, recover and seal it", segment.baseIndex());
+                    segment.check(executor);
+                    segment.seal();
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 分配下一条日志的index
+     *
+     * @return index
+     */
+    public long nextIndex() {
+        return indexGenerator.nextId();
+    }
+
+    /**
+     * 最后分配的日志index
+     *
+     * @return index
+     */
+    public long currentIndex() {
+        return indexGenerator.current();
+    }
+
+    /**
+     * 批量写入已经分配好index的日志
+     *
+     * @param entries 按index递增的日志记录
+     */
+    public void append(List<LogEntry> entries) {
+        List<ByteBuffer> frames = new ArrayList<>(entries.size());
+        for (LogEntry entry : entries) {
+            frames.add(codec.encode(entry));
         }
+        append(entries, frames);
     }
 
-    public long addEntry(LogEntry entry) {
-        long index = indexGenerator.nextId();
-        entry.setIndex(index);
-        currentSegment.append(entry);
-        if (needRolling(currentSegment)) {
-            currentSegment = nextSegment(index + 1);
+    /**
+     * 批量写入已经编码好的日志，同一个segment内的日志只做一次写入，写满时滚动到下一个segment
+     *
+     * @param entries 按index递增的日志记录
+     * @param frames  与entries一一对应的记录帧
+     */
+    public void append(List<LogEntry> entries, List<ByteBuffer> frames) {
+        long size = currentSegment.writePosition();
+        int count = currentSegment.entries();
+        int from = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            size += frames.get(i).remaining();
+            count++;
+
+            boolean full = size >= maxSegmentSize || count >= maxSegmentEntries;
+            if (full || i == entries.size() - 1) {
+                currentSegment.append(entries.subList(from, i + 1), frames.subList(from, i + 1));
+                if (needRolling(currentSegment)) {
+                    currentSegment = rollSegment(entries.get(i).getIndex() + 1);
+                }
+
+                size = currentSegment.writePosition();
+                count = currentSegment.entries();
+                from = i + 1;
+            }
         }
-        return index;
+    }
+
+    /**
+     * 在后台删除所有日志的index都小于指定index的segment，当前segment不会被删除
+     *
+     * @param index log index
+     */
+    public void compact(long index) {
+        preallocator.execute(() -> {
+            Map.Entry<Long, Segment> entry = segments.firstEntry();
+            while (entry != null) {
+                Map.Entry<Long, Segment> next = segments.higherEntry(entry.getKey());
+                if (next == null || next.getKey() > index) {
+                    break;
+                }
+
+                Segment segment = entry.getValue();
+                segments.remove(entry.getKey());
+                try {
+                    segment.delete();
+                    logger.info("compact segment:{} before index:{}", entry.getKey(), index);
+                } catch (Throwable e) {
+                    logger.error("delete segment:{} caught exception", entry.getKey(), e);
+                }
+                entry = next;
+            }
+        });
+    }
+
+    /**
+     * 删除所有大于index的日志：删除之后的segment，截断index所在的segment并作为当前segment，回退index生成器，
+     * 耗时只与涉及的segment数量有关，与删除的日志数量无关。只能在提交线程中调用。
+     * index是写满的segment的最后一条日志时，该segment没有空间继续写入，截断从index + 1开始的下一个segment作为当前segment，
+     * 没有下一个segment时滚动到新的segment
+     *
+     * @param index 保留的最后一条日志的index
+     */
+    public void truncate(long index) {
+        if (index >= indexGenerator.current()) {
+            return;
+        }
+
+        // 等待后台的seal完成，避免截断后重新写入的segment再被写入footer
+        if (!unsealed.isEmpty()) {
+            preallocator.await();
+        }
+
+        Map.Entry<Long, Segment> floor = segments.floorEntry(index + 1);
+        Segment target = floor != null ? floor.getValue() : segments.firstEntry().getValue();
+        currentSegment = target;
+
+        List<Segment> newer = new ArrayList<>(segments.tailMap(target.baseIndex(), false).values());
+        for (Segment segment : newer) {
+            segments.remove(segment.baseIndex());
+            segment.delete();
+            logger.info("delete segment:{} after truncate to index:{}", segment.baseIndex(), index);
+        }
+
+        target.truncate(index);
+        if (needRolling(target)) {
+            currentSegment = rollSegment(index + 1);
+        }
+        indexGenerator.reset(Math.max(index, target.baseIndex() - 1));
     }
 
     public void skip(long entries) {
@@ -113,23 +285,58 @@ public class SegmentManager extends LoggerSupport implements FileNameRule<Long>
         return segment != null ? segment.getValue() : null;
     }
 
+    /**
+     * 起始index大于指定segment的下一个segment
+     *
+     * @param segment segment
+     * @return 没有则返回null
+     */
+    public Segment higherSegment(Segment segment) {
+        Map.Entry<Long, Segment> entry = segments.higherEntry(segment.baseIndex());
+        return entry != null ? entry.getValue() : null;
+    }
 
-    private Segment nextSegment(long index) {
-        File file = new File(directory, generate(index));
 
-        Segment segment = new Segment(file, index, serializer, maxSegmentEntries, maxMessageSize);
-        segment.buildIndex();
+    /**
+     * 换上预分配的segment，旧segment在后台刷盘、裁剪索引
+     */
+    private Segment rollSegment(long index) {
+        Segment segment = preallocator.take();
+        segment.assign(new File(directory, generate(index)), index);
         segments.put(index, segment);
-        if (currentSegment != null) {
-            currentSegment.flush();
-            currentSegment.close();
-        }
 
+        Segment old = currentSegment;
+        unsealed.add(old);
+        preallocator.execute(() -> {
+            try {
+                old.seal();
+                unsealed.remove(old);
+            } catch (Throwable e) {
+                logger.error("seal segment:{} caught exception", old.baseIndex(), e);
+            }
+        });
         return segment;
     }
 
+    private Segment preallocate() {
+        String name = fileName + SEPARATOR + PREALLOCATE_SUFFIX + (++preallocated) + EXTENSION_SEPARATOR + EXTENSION;
+        File file = new File(directory, name);
+        Segment segment = newSegment(file, 0);
+        segment.buildIndex();
+        return segment;
+    }
+
+    private Segment newSegment(File file, long baseIndex) {
+        if (segmentType == SegmentType.MMAP) {
+            // 滚动判断在写入之后，segment最多超出maxSegmentSize一条记录帧
+            int maxFrameLength = LogEntryCodec.frameLength(codec.maxMessageSize() + LogEntry.INDEX_TERM_LENGTH);
+            return new MappedSegment(file, baseIndex, codec, maxSegmentEntries, maxSegmentSize + maxFrameLength);
+        }
+        return new Segment(file, baseIndex, codec, maxSegmentEntries);
+    }
+
     private boolean needRolling(Segment segment) {
-        return segment.size() >= maxSegmentSize || segment.entries() >= maxSegmentEntries;
+        return segment.writePosition() >= maxSegmentSize || segment.entries() >= maxSegmentEntries;
     }
 
     @Override
@@ -167,9 +374,28 @@ public class SegmentManager extends LoggerSupport implements FileNameRule<Long>
     }
 
     public void flush() {
+        for (Segment segment : unsealed) {
+            segment.flush();
+        }
         currentSegment.flush();
     }
 
+    /**
+     * 等待后台任务完成后关闭所有已打开的segment
+     */
+    public void close() {
+        preallocator.close();
+        for (Segment segment : segments.values()) {
+            if (segment.isOpened()) {
+                segment.close();
+            }
+        }
+    }
+
+    public LogEntryCodec codec() {
+        return codec;
+    }
+
     public Segment currentSegment() {
         return currentSegment;
     }
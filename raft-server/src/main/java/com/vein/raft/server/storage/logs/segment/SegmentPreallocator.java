@@ -0,0 +1,92 @@
+package com.vein.raft.server.storage.logs.segment;
+
+import com.vein.common.NamedThreadFactory;
+import com.vein.common.base.LoggerSupport;
+import com.vein.storage.api.exceptions.StorageException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在后台线程提前创建下一个segment(文件、索引文件的创建、预分配和映射)，
+ * 并在后台完成滚动后旧segment的刷盘和关闭，使滚动在写入线程上只是一次替换
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午4:40
+ */
+class SegmentPreallocator extends LoggerSupport {
+    private final Callable<Segment> factory;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new NamedThreadFactory("SegmentPreallocateThread", true));
+    private volatile Future<Segment> next;
+
+    SegmentPreallocator(Callable<Segment> factory) {
+        this.factory = factory;
+        this.next = executor.submit(factory);
+    }
+
+    /**
+     * 取出预分配好的segment并开始预分配下一个，预分配还未完成时等待
+     *
+     * @return 预分配的segment
+     */
+    Segment take() {
+        Segment segment;
+        try {
+            segment = next.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageException(e);
+        } catch (ExecutionException e) {
+            logger.error("preallocate segment caught exception", e.getCause());
+            throw new StorageException(e.getCause());
+        } finally {
+            next = executor.submit(factory);
+        }
+        return segment;
+    }
+
+    /**
+     * 在后台线程执行，与预分配串行
+     *
+     * @param task 任务
+     */
+    void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    /**
+     * 等待已经提交的后台任务执行完成
+     */
+    void await() {
+        try {
+            executor.submit(() -> {
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageException(e);
+        } catch (ExecutionException e) {
+            throw new StorageException(e.getCause());
+        }
+    }
+
+    /**
+     * 等待后台任务完成后停止线程，删除未使用的预分配segment
+     */
+    void close() {
+        Future<Segment> future = next;
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+            future.get().delete();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("wait segment preallocate thread terminate is interrupted");
+        } catch (ExecutionException e) {
+            logger.warn("preallocate segment caught exception", e.getCause());
+        }
+    }
+}
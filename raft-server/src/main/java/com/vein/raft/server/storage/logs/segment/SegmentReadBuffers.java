@@ -0,0 +1,48 @@
+package com.vein.raft.server.storage.logs.segment;
+
+import java.nio.ByteBuffer;
+
+/**
+ * segment读取使用的线程本地direct buffer，避免每次读取都分配buffer
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午3:20
+ */
+final class SegmentReadBuffers {
+    /**
+     * 单条日志读取时首次读取的字节数，小日志一次读取即可拿到完整的记录帧
+     */
+    static final int DEFAULT_SIZE = 4 * 1024;
+
+    /**
+     * 超过该大小的读取不缓存buffer，避免读线程长期占用大块堆外内存
+     */
+    private static final int MAX_POOLED_SIZE = 8 * 1024 * 1024;
+
+    private static final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(DEFAULT_SIZE));
+
+    private SegmentReadBuffers() {
+    }
+
+    /**
+     * 获取当前线程的buffer，position为0，limit为size，同一线程下次获取前有效
+     *
+     * @param size 需要的字节数
+     * @return buffer
+     */
+    static ByteBuffer acquire(int size) {
+        ByteBuffer buffer = BUFFERS.get();
+        if (buffer.capacity() < size) {
+            if (size > MAX_POOLED_SIZE) {
+                return ByteBuffer.allocate(size);
+            }
+
+            buffer = ByteBuffer.allocateDirect(Integer.highestOneBit(size - 1) << 1);
+            BUFFERS.set(buffer);
+        }
+
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+    }
+}
@@ -0,0 +1,35 @@
+package com.vein.raft.server.storage.logs.segment;
+
+/**
+ * segment文件的写入方式
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午3:50
+ */
+public enum SegmentType {
+    /**
+     * 通过FileChannel写入，文件按需增长
+     */
+    CHANNEL("channel"),
+    /**
+     * 预分配文件并映射到内存，直接写入MappedByteBuffer
+     */
+    MMAP("mmap");
+
+    public final String name;
+
+    SegmentType(String name) {
+        this.name = name;
+    }
+
+    public static SegmentType parse(String name) {
+        SegmentType[] types = SegmentType.values();
+        for (SegmentType type : types) {
+            if (type.name.equalsIgnoreCase(name)) {
+                return type;
+            }
+        }
+
+        throw new IllegalArgumentException("unknown segment type:" + name);
+    }
+}
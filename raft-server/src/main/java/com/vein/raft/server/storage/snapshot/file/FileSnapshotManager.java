@@ -88,7 +88,7 @@ public class FileSnapshotManager extends AbstractService implements SnapshotMana
         Pair<Long, String> indexTime = new ImmutablePair<>(index, createTime);
 
         String fileName = generate(indexTime);
-        File file = new File(fileName);
+        File file = new File(directory, fileName);
         return new FileSnapshot(file, index, createTime, serializer, this);
     }
 
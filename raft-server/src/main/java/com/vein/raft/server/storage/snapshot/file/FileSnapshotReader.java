@@ -15,120 +15,182 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 
 /**
+ * 按块映射的快照reader，与{@link FileSnapshotWriter}对应：每次只映射position所在的一块，
+ * 读到块尾时释放当前块再映射下一块，跨块的基本类型按字节拼接
+ *
  * @author shifeng.luo
  * @version created on 2017/10/1 下午10:51
  */
 public class FileSnapshotReader extends LoggerSupport implements SnapshotReader {
-    private final MappedByteBuffer mapBuffer;
+    private static final int HEADER_SIZE = 8;
+
     private final Serializer serializer;
     private final File file;
+    private final int chunkSize;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
     private final long size;
+    private final ByteBuffer scratch = ByteBuffer.allocate(8);
+
+    private MappedByteBuffer chunk;
+    private long chunkStart;
+    private long position = HEADER_SIZE;
 
     public FileSnapshotReader(Serializer serializer, File file) {
+        this(serializer, file, FileSnapshotWriter.DEFAULT_CHUNK_SIZE);
+    }
+
+    FileSnapshotReader(Serializer serializer, File file, int chunkSize) {
         this.serializer = serializer;
         this.file = file;
-        RandomAccessFile raf = null;
+        this.chunkSize = chunkSize;
+        RandomAccessFile accessFile = null;
         try {
-            raf = new RandomAccessFile(file, "r");
-            this.mapBuffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
-            this.mapBuffer.position(8);
-            this.size = mapBuffer.limit();
+            accessFile = new RandomAccessFile(file, "r");
+            this.raf = accessFile;
+            this.channel = accessFile.getChannel();
+            this.size = channel.size();
         } catch (IOException e) {
-            logger.error("new OffsetIndex:{} caught exception", file, e);
+            logger.error("open snapshot:{} reader caught exception", file, e);
+            IoUtil.close(accessFile);
             throw new StorageException(e);
-        } finally {
-            IoUtil.close(raf);
         }
     }
 
     @Override
     public long remaining() {
-        return size - mapBuffer.position();
+        return size - position;
     }
 
     @Override
     public SnapshotReader read(byte[] bytes) {
-        mapBuffer.get(bytes);
-        return null;
+        return read(bytes, 0, bytes.length);
     }
 
+    /**
+     * 从当前位置读取length个字节，写入bytes中从当前position偏移offset开始的位置
+     */
     @Override
     public SnapshotReader read(BytesBuffer bytes, long offset, long length) {
-        return null;
+        byte[] buffer = new byte[(int) Math.min(length, chunkSize)];
+        bytes.skip(offset);
+        while (length > 0) {
+            int count = (int) Math.min(length, buffer.length);
+            read(buffer, 0, count);
+            bytes.put(buffer, 0, count);
+            length -= count;
+        }
+        return this;
     }
 
     @Override
     public SnapshotReader read(byte[] bytes, int offset, int length) {
-        mapBuffer.get(bytes, offset, length);
-        return null;
+        while (length > 0) {
+            MappedByteBuffer buffer = chunk();
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            position += count;
+            offset += count;
+            length -= count;
+        }
+        return this;
     }
 
     @Override
     public SnapshotReader read(BufferStream buffer) {
-        return null;
+        byte[] bytes = new byte[(int) Math.min(remaining(), chunkSize)];
+        while (hasRemaining()) {
+            int length = (int) Math.min(remaining(), bytes.length);
+            read(bytes, 0, length);
+            buffer.write(bytes, 0, length);
+        }
+        return this;
     }
 
     @Override
     public byte readByte() {
-        return mapBuffer.get();
+        byte b = chunk().get();
+        position++;
+        return b;
     }
 
 
     @Override
     public short readShort() {
-        return mapBuffer.getShort();
+        MappedByteBuffer buffer = chunk();
+        if (buffer.remaining() >= BytesBuffer.SHORT) {
+            position += BytesBuffer.SHORT;
+            return buffer.getShort();
+        }
+        return readScratch(BytesBuffer.SHORT).getShort();
     }
 
 
     @Override
     public char readChar() {
-        return mapBuffer.getChar();
+        MappedByteBuffer buffer = chunk();
+        if (buffer.remaining() >= BytesBuffer.CHARACTER) {
+            position += BytesBuffer.CHARACTER;
+            return buffer.getChar();
+        }
+        return readScratch(BytesBuffer.CHARACTER).getChar();
     }
 
     @Override
     public int readInt() {
-        return mapBuffer.getInt();
+        MappedByteBuffer buffer = chunk();
+        if (buffer.remaining() >= BytesBuffer.INTEGER) {
+            position += BytesBuffer.INTEGER;
+            return buffer.getInt();
+        }
+        return readScratch(BytesBuffer.INTEGER).getInt();
     }
 
 
     @Override
     public long readLong() {
-        return mapBuffer.getLong();
+        MappedByteBuffer buffer = chunk();
+        if (buffer.remaining() >= BytesBuffer.LONG) {
+            position += BytesBuffer.LONG;
+            return buffer.getLong();
+        }
+        return readScratch(BytesBuffer.LONG).getLong();
     }
 
     @Override
     public float readFloat() {
-        return mapBuffer.getFloat();
+        return Float.intBitsToFloat(readInt());
     }
 
     @Override
     public double readDouble() {
-        return mapBuffer.getDouble();
+        return Double.longBitsToDouble(readLong());
     }
 
     @Override
     public boolean readBoolean() {
-        byte b = mapBuffer.get();
+        byte b = readByte();
         return b == BooleanValue.TRUE;
     }
 
     @Override
     public String readString() {
-        int size = mapBuffer.getInt();
+        int size = readInt();
         byte[] bytes = new byte[size];
-        mapBuffer.get(bytes);
+        read(bytes);
         return new String(bytes);
     }
 
     @Override
     public String readUTF8() {
-        int size = mapBuffer.getInt();
+        int size = readInt();
         byte[] bytes = new byte[size];
-        mapBuffer.get(bytes);
+        read(bytes);
         try {
             return new String(bytes, "UTF-8");
         } catch (UnsupportedEncodingException e) {
@@ -139,33 +201,79 @@ public class FileSnapshotReader extends LoggerSupport implements SnapshotReader
 
     @Override
     public boolean hasRemaining() {
-        return size > mapBuffer.position();
+        return size > position;
     }
 
     @Override
     public SnapshotReader skip(int bytes) {
-        int position = mapBuffer.position();
-        mapBuffer.position(position + bytes);
+        position += bytes;
+        if (chunk != null && position >= chunkStart && position - chunkStart <= chunk.limit()) {
+            chunk.position((int) (position - chunkStart));
+        }
         return this;
     }
 
     @Override
     public SnapshotReader read(BytesBuffer bytes) {
-        return null;
+        return read(bytes, 0, Math.min(bytes.remaining(), remaining()));
     }
 
     @Override
     public void close() {
-        try {
-            FileUtil.close(mapBuffer);
-        } catch (ReflectiveOperationException e) {
-            logger.error("close snapshot:{} reader fail", file, e);
-            throw new RuntimeException(e);
-        }
+        releaseChunk();
+        IoUtil.close(raf);
     }
 
     @Override
     public File getFile() {
         return file;
     }
+
+    /**
+     * 跨块的基本类型按字节读入scratch
+     */
+    private ByteBuffer readScratch(int length) {
+        scratch.clear();
+        read(scratch.array(), 0, length);
+        scratch.limit(length);
+        return scratch;
+    }
+
+    /**
+     * position所在的块，读到块尾或position已经移出当前块时映射新的块，最后一块只映射到文件末尾
+     */
+    private MappedByteBuffer chunk() {
+        if (chunk != null && position >= chunkStart && position < chunkStart + chunk.limit()) {
+            return chunk;
+        }
+        if (position >= size) {
+            throw new IndexOutOfBoundsException("read snapshot:" + file + " at:" + position + " beyond size:" + size);
+        }
+
+        releaseChunk();
+        long start = position - position % chunkSize;
+        try {
+            chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(chunkSize, size - start));
+            chunkStart = start;
+            chunk.position((int) (position - start));
+            return chunk;
+        } catch (IOException e) {
+            logger.error("map snapshot:{} at:{} caught exception", file, start, e);
+            throw new StorageException(e);
+        }
+    }
+
+    private void releaseChunk() {
+        if (chunk == null) {
+            return;
+        }
+
+        try {
+            FileUtil.close(chunk);
+            chunk = null;
+        } catch (ReflectiveOperationException e) {
+            logger.error("close snapshot:{} reader fail", file, e);
+            throw new RuntimeException(e);
+        }
+    }
 }
@@ -16,131 +16,210 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 
 /**
+ * 按块映射的快照writer：每次只映射position所在的一块(默认64MB)，写满后释放当前块再映射下一块，
+ * 文件随写入按块增长，position为long，快照可以超过2GB。文件前8个字节预留给checksum
+ *
  * @author shifeng.luo
  * @version created on 2017/10/1 下午10:51
  */
 public class FileSnapshotWriter extends LoggerSupport implements SnapshotWriter {
-    private final MappedByteBuffer mapBuffer;
+    static final int DEFAULT_CHUNK_SIZE = 64 * 1024 * 1024;
+    private static final int HEADER_SIZE = 8;
+
     private final File file;
     private final Serializer serializer;
+    private final int chunkSize;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final ByteBuffer scratch = ByteBuffer.allocate(8);
+
+    private MappedByteBuffer chunk;
+    private long chunkStart;
+    private long position = HEADER_SIZE;
+
+    /**
+     * 写入过的最大位置，trimToValidSize时截断到这里
+     */
+    private long validSize = HEADER_SIZE;
 
     FileSnapshotWriter(File file, Serializer serializer) {
+        this(file, serializer, DEFAULT_CHUNK_SIZE);
+    }
+
+    FileSnapshotWriter(File file, Serializer serializer, int chunkSize) {
         this.serializer = serializer;
         this.file = file;
-        RandomAccessFile raf = null;
+        this.chunkSize = chunkSize;
+        RandomAccessFile accessFile = null;
         try {
             if (file.exists()) {
                 file.delete();
             }
-            raf = new RandomAccessFile(file, "rw");
-            raf.setLength(Integer.MAX_VALUE);
-
-            this.mapBuffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
-            this.mapBuffer.position(8);
+            accessFile = new RandomAccessFile(file, "rw");
+            this.raf = accessFile;
+            this.channel = accessFile.getChannel();
         } catch (IOException e) {
-            logger.error("new OffsetIndex:{} caught exception", file, e);
+            logger.error("open snapshot:{} writer caught exception", file, e);
+            IoUtil.close(accessFile);
             throw new StorageException(e);
-        } finally {
-            IoUtil.close(raf);
         }
     }
 
-
     @Override
     public SnapshotWriter write(BytesBuffer bytes) {
+        byte[] buffer = new byte[(int) Math.min(bytes.remaining(), chunkSize)];
+        while (bytes.hasRemaining()) {
+            int length = (int) Math.min(bytes.remaining(), buffer.length);
+            bytes.get(buffer, 0, length);
+            write(buffer, 0, length);
+        }
         return this;
     }
 
     @Override
     public SnapshotWriter write(byte[] bytes) {
-        mapBuffer.put(bytes);
-        return this;
+        return write(bytes, 0, bytes.length);
     }
 
+    /**
+     * 写入bytes中从当前position偏移offset开始的length个字节
+     */
     @Override
     public SnapshotWriter write(BytesBuffer bytes, int offset, int length) {
-        return this;
+        if (bytes.hasArray()) {
+            return write(bytes.array(), (int) (bytes.offset() + bytes.position()) + offset, length);
+        }
+
+        bytes.mark();
+        bytes.skip(offset);
+        byte[] buffer = new byte[length];
+        bytes.get(buffer);
+        bytes.reset();
+        return write(buffer);
     }
 
     @Override
     public SnapshotWriter write(byte[] bytes, int offset, int length) {
-        mapBuffer.put(bytes, offset, length);
+        while (length > 0) {
+            MappedByteBuffer buffer = chunk();
+            int count = Math.min(length, buffer.remaining());
+            buffer.put(bytes, offset, count);
+            advance(count);
+            offset += count;
+            length -= count;
+        }
         return this;
     }
 
     @Override
     public SnapshotWriter write(BufferStream buffer) {
+        byte[] bytes = new byte[(int) Math.min(buffer.remaining(), chunkSize)];
+        while (buffer.hasRemaining()) {
+            int length = (int) Math.min(buffer.remaining(), bytes.length);
+            buffer.read(bytes, 0, length);
+            write(bytes, 0, length);
+        }
         return this;
     }
 
     @Override
     public SnapshotWriter writeBoolean(boolean v) {
-        mapBuffer.put(v ? BooleanValue.TRUE : BooleanValue.FALSE);
-        return this;
+        return writeByte(v ? BooleanValue.TRUE : BooleanValue.FALSE);
     }
 
     @Override
     public SnapshotWriter writeByte(byte b) {
-        mapBuffer.put(b);
+        chunk().put(b);
+        advance(1);
         return this;
     }
 
 
     @Override
     public SnapshotWriter writeChar(char c) {
-        mapBuffer.putChar(c);
-        return this;
+        MappedByteBuffer buffer = chunk();
+        if (buffer.remaining() >= BytesBuffer.CHARACTER) {
+            buffer.putChar(c);
+            advance(BytesBuffer.CHARACTER);
+            return this;
+        }
+
+        scratch.clear();
+        scratch.putChar(c);
+        return writeScratch();
     }
 
     @Override
     public SnapshotWriter writeShort(short s) {
-        mapBuffer.putShort(s);
-        return this;
+        MappedByteBuffer buffer = chunk();
+        if (buffer.remaining() >= BytesBuffer.SHORT) {
+            buffer.putShort(s);
+            advance(BytesBuffer.SHORT);
+            return this;
+        }
+
+        scratch.clear();
+        scratch.putShort(s);
+        return writeScratch();
     }
 
 
     @Override
     public SnapshotWriter writeInt(int i) {
-        mapBuffer.putInt(i);
-        return this;
+        MappedByteBuffer buffer = chunk();
+        if (buffer.remaining() >= BytesBuffer.INTEGER) {
+            buffer.putInt(i);
+            advance(BytesBuffer.INTEGER);
+            return this;
+        }
+
+        scratch.clear();
+        scratch.putInt(i);
+        return writeScratch();
     }
 
     @Override
     public SnapshotWriter writeLong(long l) {
-        mapBuffer.putLong(l);
-        return this;
+        MappedByteBuffer buffer = chunk();
+        if (buffer.remaining() >= BytesBuffer.LONG) {
+            buffer.putLong(l);
+            advance(BytesBuffer.LONG);
+            return this;
+        }
+
+        scratch.clear();
+        scratch.putLong(l);
+        return writeScratch();
     }
 
     @Override
     public SnapshotWriter writeFloat(float f) {
-        mapBuffer.putFloat(f);
-        return this;
+        return writeInt(Float.floatToRawIntBits(f));
     }
 
     @Override
     public SnapshotWriter writeDouble(double d) {
-        mapBuffer.putDouble(d);
-        return this;
+        return writeLong(Double.doubleToRawLongBits(d));
     }
 
     @Override
     public SnapshotWriter writeString(String s) {
         byte[] bytes = s.getBytes();
-        mapBuffer.putInt(bytes.length);
-        mapBuffer.put(bytes);
-        return this;
+        writeInt(bytes.length);
+        return write(bytes);
     }
 
     @Override
     public SnapshotWriter writeUTF8(String s) {
         try {
             byte[] bytes = s.getBytes("UTF-8");
-            mapBuffer.putInt(bytes.length);
-            mapBuffer.put(bytes);
+            writeInt(bytes.length);
+            write(bytes);
         } catch (UnsupportedEncodingException e) {
             logger.error("unsupported encode:{}", "UTF-8");
             throw new RuntimeException(e);
@@ -148,10 +227,21 @@ public class FileSnapshotWriter extends LoggerSupport implements SnapshotWriter
         return this;
     }
 
+    /**
+     * 之前的块释放映射后脏页仍在page cache中，需要force整个文件
+     */
     @Override
     public SnapshotWriter flush() {
-        mapBuffer.force();
-        return this;
+        try {
+            if (chunk != null) {
+                chunk.force();
+            }
+            channel.force(false);
+            return this;
+        } catch (IOException e) {
+            logger.error("flush snapshot:{} caught exception", file, e);
+            throw new StorageException(e);
+        }
     }
 
     @Override
@@ -161,38 +251,100 @@ public class FileSnapshotWriter extends LoggerSupport implements SnapshotWriter
 
     @Override
     public SnapshotWriter skip(int size) {
-        mapBuffer.position(mapBuffer.position() + size);
+        position += size;
+        validSize = Math.max(validSize, position);
+        if (chunk != null && position - chunkStart <= chunkSize) {
+            chunk.position((int) (position - chunkStart));
+        }
         return this;
     }
 
     @Override
     public long position() {
-        return mapBuffer.position();
+        return position;
     }
 
     @Override
     public SnapshotWriter writeObject(Serializable object) {
         byte[] payload = serializer.serialize(object);
         Entry entry = new Entry(payload);
-        entry.writeTo(mapBuffer);
-        return this;
+        int size = BytesBuffer.INTEGER + payload.length + BytesBuffer.LONG;
+
+        MappedByteBuffer buffer = chunk();
+        if (buffer.remaining() >= size) {
+            entry.writeTo(buffer);
+            advance(size);
+            return this;
+        }
+
+        ByteBuffer bytes = ByteBuffer.allocate(size);
+        entry.writeTo(bytes);
+        return write(bytes.array());
     }
 
+    /**
+     * 释放当前块后把文件截断到写入过的最大位置，之后再写入会重新映射
+     */
     @Override
     public SnapshotWriter trimToValidSize() {
         try {
-            FileUtil.truncate(mapBuffer.position(), file);
+            releaseChunk();
+            channel.truncate(validSize);
             return this;
         } catch (IOException e) {
-            logger.error("truncate file:{} caught exception", e);
+            logger.error("truncate file:{} caught exception", file, e);
             throw new RuntimeException(e);
         }
     }
 
     @Override
     public void close() {
+        releaseChunk();
+        IoUtil.close(raf);
+    }
+
+    /**
+     * 写满后跨块的基本类型先写入scratch，再按字节写入
+     */
+    private SnapshotWriter writeScratch() {
+        scratch.flip();
+        return write(scratch.array(), 0, scratch.limit());
+    }
+
+    /**
+     * position所在的块，当前块写满或position已经移出当前块时映射新的块
+     */
+    private MappedByteBuffer chunk() {
+        if (chunk != null && position >= chunkStart && position < chunkStart + chunkSize) {
+            return chunk;
+        }
+
+        releaseChunk();
+        long start = position - position % chunkSize;
+        try {
+            chunk = channel.map(FileChannel.MapMode.READ_WRITE, start, chunkSize);
+            chunkStart = start;
+            chunk.position((int) (position - start));
+            return chunk;
+        } catch (IOException e) {
+            logger.error("map snapshot:{} at:{} caught exception", file, start, e);
+            throw new StorageException(e);
+        }
+    }
+
+    private void advance(int size) {
+        position += size;
+        validSize = Math.max(validSize, position);
+    }
+
+    private void releaseChunk() {
+        if (chunk == null) {
+            return;
+        }
+
         try {
-            FileUtil.close(mapBuffer);
+            FileUtil.close(chunk);
+            chunk = null;
         } catch (ReflectiveOperationException e) {
             logger.error("close snapshot:{} writer fail", file, e);
             throw new RuntimeException(e);
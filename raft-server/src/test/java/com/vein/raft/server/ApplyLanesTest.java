@@ -0,0 +1,119 @@
+package com.vein.raft.server;
+
+import com.vein.raft.client.Command;
+import com.vein.raft.server.storage.logs.TestCommand;
+import com.vein.raft.server.storage.snapshot.SnapshotReader;
+import com.vein.raft.server.storage.snapshot.SnapshotWriter;
+import com.vein.serializer.api.Serializer;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午11:20
+ */
+public class ApplyLanesTest {
+    private final KeyedStateMachine stateMachine = new KeyedStateMachine();
+    private final ApplyLanes lanes = new ApplyLanes(stateMachine, 4);
+
+    @After
+    public void tearDown() {
+        lanes.close();
+    }
+
+    @Test
+    public void keepOrderInPartition() throws Exception {
+        List<Command> commands = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            commands.add(new TestCommand((i % 7) + ":" + i));
+        }
+
+        List<Object> results = lanes.apply(commands).get(5, TimeUnit.SECONDS);
+        assertEquals(1000, results.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(commands.get(i), results.get(i));
+        }
+        for (List<Integer> applied : stateMachine.applied.values()) {
+            for (int i = 1; i < applied.size(); i++) {
+                assertTrue(applied.get(i - 1) < applied.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void barrier() throws Exception {
+        List<Command> commands = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            commands.add(new TestCommand((i % 5) + ":" + i));
+        }
+        commands.add(new TestCommand("barrier"));
+        commands.add(new TestCommand("1:101"));
+
+        List<Object> results = lanes.apply(commands).get(5, TimeUnit.SECONDS);
+        assertEquals(100, results.get(100));
+        assertEquals(102, stateMachine.count.get());
+    }
+
+    private static class KeyedStateMachine implements PartitionedLogStateMachine {
+        private final Map<String, List<Integer>> applied = new ConcurrentHashMap<>();
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Object partitionKey(Command command) {
+            String value = ((TestCommand) command).getCommand();
+            int separator = value.indexOf(':');
+            return separator < 0 ? null : value.substring(0, separator);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> CompletableFuture<T> apply(Command command) {
+            String value = ((TestCommand) command).getCommand();
+            int separator = value.indexOf(':');
+            if (separator < 0) {
+                // 屏障之前的command都已经应用
+                return CompletableFuture.completedFuture((T) (Object) count.getAndIncrement());
+            }
+
+            applied.computeIfAbsent(value.substring(0, separator), key -> new ArrayList<>())
+                .add(Integer.parseInt(value.substring(separator + 1)));
+            count.incrementAndGet();
+            return CompletableFuture.completedFuture((T) command);
+        }
+
+        @Override
+        public <T> CompletableFuture<T> query(Command command) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public Compactor compactor() {
+            return null;
+        }
+
+        @Override
+        public Serializer getSerializer() {
+            return null;
+        }
+
+        @Override
+        public void take(SnapshotWriter writer) {
+        }
+
+        @Override
+        public void install(SnapshotReader reader) {
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.vein.raft.server;
+
+import com.vein.raft.client.Command;
+import com.vein.raft.server.storage.logs.TestCommand;
+import com.vein.raft.server.storage.snapshot.SnapshotReader;
+import com.vein.raft.server.storage.snapshot.SnapshotWriter;
+import com.vein.serializer.api.Serializer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分区并行应用的基准测试：每条command做固定的计算量，分别测量逐批单线程应用和不同通道数并行应用的吞吐，
+ * command数及每条的计算轮数通过-Dbenchmark.commands、-Dbenchmark.work指定
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午11:30
+ */
+public class PartitionedApplyBenchmark {
+    private static final int BATCH_SIZE = 1024;
+    private static final int PARTITIONS = 1024;
+
+    public static void main(String[] args) throws Exception {
+        int total = Integer.getInteger("benchmark.commands", 1000000);
+        int work = Integer.getInteger("benchmark.work", 2000);
+        List<List<Command>> batches = new ArrayList<>();
+        for (int i = 0; i < total; i += BATCH_SIZE) {
+            List<Command> batch = new ArrayList<>(BATCH_SIZE);
+            for (int j = i; j < Math.min(total, i + BATCH_SIZE); j++) {
+                batch.add(new TestCommand(Integer.toString(j % PARTITIONS)));
+            }
+            batches.add(batch);
+        }
+
+        WorkStateMachine stateMachine = new WorkStateMachine(work);
+        // 预热
+        runSequential(stateMachine, batches);
+        long start = System.nanoTime();
+        runSequential(stateMachine, batches);
+        report("sequential", total, start);
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int laneCount = 1; laneCount <= Math.max(8, cores); laneCount <<= 1) {
+            ApplyLanes lanes = new ApplyLanes(stateMachine, laneCount);
+            try {
+                runLanes(lanes, batches);
+                start = System.nanoTime();
+                runLanes(lanes, batches);
+                report(laneCount + " lanes", total, start);
+            } finally {
+                lanes.close();
+            }
+        }
+    }
+
+    private static void runSequential(WorkStateMachine stateMachine, List<List<Command>> batches) {
+        long index = 1;
+        CompletableFuture<List<Object>> last = null;
+        for (List<Command> batch : batches) {
+            last = stateMachine.applyBatch(batch, index);
+            index += batch.size();
+        }
+        last.join();
+    }
+
+    private static void runLanes(ApplyLanes lanes, List<List<Command>> batches) {
+        List<CompletableFuture<List<Object>>> futures = new ArrayList<>(batches.size());
+        for (List<Command> batch : batches) {
+            futures.add(lanes.apply(batch));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+    }
+
+    private static void report(String name, int total, long start) {
+        long elapsed = System.nanoTime() - start;
+        long throughput = total * TimeUnit.SECONDS.toNanos(1) / elapsed;
+        System.out.println(name + ": " + TimeUnit.NANOSECONDS.toMillis(elapsed) + "ms, " + throughput + " commands/s");
+    }
+
+    private static class WorkStateMachine implements PartitionedLogStateMachine {
+        private final int work;
+        private final long[] partitions = new long[PARTITIONS];
+
+        private WorkStateMachine(int work) {
+            this.work = work;
+        }
+
+        @Override
+        public Object partitionKey(Command command) {
+            return ((TestCommand) command).getCommand();
+        }
+
+        @Override
+        public <T> CompletableFuture<T> apply(Command command) {
+            int partition = Integer.parseInt(((TestCommand) command).getCommand());
+            long value = partitions[partition];
+            for (int i = 0; i < work; i++) {
+                value = value * 6364136223846793005L + 1442695040888963407L;
+            }
+            partitions[partition] = value;
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public <T> CompletableFuture<T> query(Command command) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public Compactor compactor() {
+            return null;
+        }
+
+        @Override
+        public Serializer getSerializer() {
+            return null;
+        }
+
+        @Override
+        public void take(SnapshotWriter writer) {
+        }
+
+        @Override
+        public void install(SnapshotReader reader) {
+        }
+    }
+}
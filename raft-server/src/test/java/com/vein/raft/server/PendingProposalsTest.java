@@ -0,0 +1,90 @@
+package com.vein.raft.server;
+
+import com.vein.raft.server.exceptions.NotLeaderException;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午9:15
+ */
+public class PendingProposalsTest {
+    private final AtomicLong lastIndex = new AtomicLong();
+
+    @Test
+    public void complete() {
+        PendingProposals proposals = new PendingProposals(4);
+        List<CompletableFuture<Object>> futures = add(proposals, 4);
+        assertEquals(-1, proposals.add(lastIndex::incrementAndGet, new CompletableFuture<>()));
+        assertEquals(4, lastIndex.get());
+
+        assertSame(futures.get(1), proposals.remove(2));
+        assertEquals(3, proposals.size());
+        assertEquals(-1, proposals.add(lastIndex::incrementAndGet, new CompletableFuture<>()));
+
+        assertSame(futures.get(0), proposals.remove(1));
+        assertNull(proposals.remove(1));
+        assertEquals(5, proposals.add(lastIndex::incrementAndGet, new CompletableFuture<>()));
+        assertEquals(6, proposals.add(lastIndex::incrementAndGet, new CompletableFuture<>()));
+        assertEquals(4, proposals.size());
+    }
+
+    @Test
+    public void fail() {
+        PendingProposals proposals = new PendingProposals(8);
+        List<CompletableFuture<Object>> futures = add(proposals, 6);
+
+        proposals.fail(3, new NotLeaderException());
+        for (int i = 0; i < 6; i++) {
+            assertEquals(i >= 3, futures.get(i).isCompletedExceptionally());
+        }
+        assertEquals(3, proposals.size());
+        assertNull(proposals.remove(4));
+
+        lastIndex.set(3);
+        List<CompletableFuture<Object>> more = add(proposals, 2);
+        assertSame(more.get(0), proposals.remove(4));
+        assertFalse(more.get(0).isDone());
+        assertEquals(4, proposals.size());
+    }
+
+    @Test
+    public void removeAll() {
+        PendingProposals proposals = new PendingProposals(8);
+        List<CompletableFuture<Object>> futures = add(proposals, 5);
+
+        CompletableFuture<Object>[] removed = proposals.removeAll(2, 3);
+        assertEquals(3, removed.length);
+        for (int i = 0; i < 3; i++) {
+            assertSame(futures.get(i + 1), removed[i]);
+        }
+        assertEquals(2, proposals.size());
+
+        removed = proposals.removeAll(1, 8);
+        assertSame(futures.get(0), removed[0]);
+        assertNull(removed[1]);
+        assertSame(futures.get(4), removed[4]);
+        assertNull(removed[5]);
+        assertEquals(0, proposals.size());
+    }
+
+    private List<CompletableFuture<Object>> add(PendingProposals proposals, int count) {
+        List<CompletableFuture<Object>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            assertEquals(lastIndex.get() + 1, proposals.add(lastIndex::incrementAndGet, future));
+            futures.add(future);
+        }
+        return futures;
+    }
+}
@@ -0,0 +1,114 @@
+package com.vein.raft.server;
+
+import com.vein.raft.server.exceptions.NotLeaderException;
+import com.vein.raft.server.exceptions.TooManyProposalsException;
+import com.vein.raft.server.storage.logs.DurabilityPolicy;
+import com.vein.raft.server.storage.logs.RaftLogger;
+import com.vein.raft.server.storage.logs.RaftLoggerFixture;
+import com.vein.raft.server.storage.logs.TestCommand;
+import com.vein.raft.server.storage.logs.entry.LogEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午9:40
+ */
+public class ProposalQueueTest {
+    private RaftLoggerFixture logs;
+    private RaftLogger raftLogger;
+    private ProposalQueue queue;
+    private final AtomicBoolean leader = new AtomicBoolean(true);
+
+    @Before
+    public void setUp() throws Exception {
+        logs = new RaftLoggerFixture();
+        raftLogger = logs.open(DurabilityPolicy.NONE, 64 * 1024 * 1024);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (queue != null) {
+            queue.close();
+        }
+        logs.close();
+    }
+
+    @Test
+    public void batch() throws Exception {
+        AtomicInteger appends = new AtomicInteger();
+        raftLogger.setAppendListener(index -> appends.incrementAndGet());
+        PendingProposals proposals = new PendingProposals(4096);
+        queue = new ProposalQueue(raftLogger, proposals, leader::get, 100, 1024 * 1024, 1000);
+
+        List<CompletableFuture<Object>> futures = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            futures.add(queue.propose(new LogEntry(new TestCommand("command" + i), 1)));
+        }
+        waitFor(() -> raftLogger.lastIndex() == 1000);
+
+        assertEquals(1000, proposals.size());
+        assertTrue(appends.get() >= 10 && appends.get() <= 500);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("command" + i, ((TestCommand) raftLogger.get(i + 1).getCommand()).getCommand());
+            assertSame(futures.get(i), proposals.remove(i + 1));
+        }
+    }
+
+    @Test
+    public void reject() throws Exception {
+        PendingProposals proposals = new PendingProposals(4);
+        queue = new ProposalQueue(raftLogger, proposals, leader::get, 100, 1024 * 1024, 1000);
+
+        List<CompletableFuture<Object>> futures = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            futures.add(queue.propose(new LogEntry(new TestCommand("command" + i), 1)));
+        }
+        waitFor(() -> futures.get(5).isDone());
+        assertEquals(4, raftLogger.lastIndex());
+        assertFalse(futures.get(3).isDone());
+        assertEquals(TooManyProposalsException.class, cause(futures.get(4)).getClass());
+
+        leader.set(false);
+        CompletableFuture<Object> future = queue.propose(new LogEntry(new TestCommand("command"), 1));
+        waitFor(future::isDone);
+        assertEquals(NotLeaderException.class, cause(future).getClass());
+        assertEquals(4, raftLogger.lastIndex());
+    }
+
+    private Throwable cause(CompletableFuture<Object> future) throws InterruptedException {
+        try {
+            future.get();
+            throw new AssertionError("future completed normally");
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+    }
+
+    private void waitFor(Condition condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.test()) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private interface Condition {
+        boolean test();
+    }
+}
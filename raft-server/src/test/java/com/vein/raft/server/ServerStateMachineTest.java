@@ -0,0 +1,252 @@
+package com.vein.raft.server;
+
+import com.vein.raft.client.Command;
+import com.vein.raft.server.storage.logs.DurabilityPolicy;
+import com.vein.raft.server.storage.logs.RaftLogger;
+import com.vein.raft.server.storage.logs.RaftLoggerFixture;
+import com.vein.raft.server.storage.logs.TestCommand;
+import com.vein.raft.server.storage.logs.entry.LogEntry;
+import com.vein.raft.server.storage.snapshot.Snapshot;
+import com.vein.raft.server.storage.snapshot.SnapshotReader;
+import com.vein.raft.server.storage.snapshot.SnapshotWriter;
+import com.vein.raft.server.storage.snapshot.file.FileSnapshotManager;
+import com.vein.serializer.api.Serializer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午11:50
+ */
+public class ServerStateMachineTest {
+    private final CountingStateMachine stateMachine = new CountingStateMachine();
+    private final RaftMember self = new RaftMember(null, "self", null, null);
+
+    private RaftLoggerFixture logs;
+    private RaftLogger raftLogger;
+    private FileSnapshotManager snapshotManager;
+    private ExecutorService executor;
+    private ServerStateMachine serverStateMachine;
+
+    @Before
+    public void setUp() throws Exception {
+        logs = new RaftLoggerFixture();
+        raftLogger = logs.open(DurabilityPolicy.NONE, 1024);
+        snapshotManager = new FileSnapshotManager(new File(logs.directory(), "snapshot").getPath(), "snapshot",
+            logs.serializer());
+        snapshotManager.start();
+        serverStateMachine = open(stateMachine);
+    }
+
+    private ServerStateMachine open(LogStateMachine machine) {
+        executor = Executors.newSingleThreadExecutor();
+        return new ServerStateMachine(raftLogger, self, machine, snapshotManager, executor,
+            Executors.newSingleThreadExecutor(), 1024, 1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        stateMachine.release.countDown();
+        serverStateMachine.close();
+        logs.close();
+    }
+
+    @Test
+    public void applyWhileWritingSnapshot() throws Exception {
+        append(10);
+        serverStateMachine.apply(10);
+        assertTrue(stateMachine.writing.await(5, TimeUnit.SECONDS));
+        assertNull(snapshotManager.currentSnapshot());
+
+        // 快照写入阻塞时继续应用之后的日志
+        append(10);
+        serverStateMachine.apply(20);
+        awaitApplied(20);
+        assertEquals(20, stateMachine.count.get());
+        assertNull(snapshotManager.currentSnapshot());
+
+        stateMachine.release.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (snapshotManager.currentSnapshot() == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Snapshot snapshot = snapshotManager.currentSnapshot();
+        assertEquals(10, snapshot.index());
+        assertEquals(10, stateMachine.compactIndex);
+        assertEquals(1, serverStateMachine.snapshotMetrics().getPauseMicros().getCount());
+    }
+
+    @Test
+    public void snapshotAfterAsyncApply() throws Exception {
+        serverStateMachine.close();
+        AsyncStateMachine machine = new AsyncStateMachine();
+        serverStateMachine = open(machine);
+
+        append(10);
+        serverStateMachine.apply(10);
+        append(10);
+        serverStateMachine.apply(20);
+
+        // 快照等待第一批异步完成时执行线程不阻塞，之后的批次暂缓应用
+        executor.submit(() -> {
+        }).get(5, TimeUnit.SECONDS);
+        assertEquals(10, machine.count.get());
+        assertNull(snapshotManager.currentSnapshot());
+
+        machine.completeAll();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (snapshotManager.currentSnapshot() == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(10, snapshotManager.currentSnapshot().index());
+        assertEquals(10, machine.taken);
+
+        deadline = System.currentTimeMillis() + 5000;
+        while (machine.count.get() < 20 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        machine.completeAll();
+        awaitApplied(20);
+    }
+
+    private void append(int count) {
+        for (int i = 0; i < count; i++) {
+            raftLogger.append(new LogEntry(new TestCommand("test" + i), 1));
+        }
+    }
+
+    private void awaitApplied(long index) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (self.getLastApplied() < index && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(index, self.getLastApplied());
+    }
+
+    private static class CountingStateMachine implements LogStateMachine, TwoPhaseSnapshotable<Integer>, Compactor {
+        private final AtomicInteger count = new AtomicInteger();
+        private final CountDownLatch writing = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private volatile long compactIndex;
+
+        @Override
+        public <T> CompletableFuture<T> apply(Command command) {
+            count.incrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public Integer prepareSnapshot() {
+            return count.get();
+        }
+
+        @Override
+        public void writeSnapshot(Integer view, SnapshotWriter writer) {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writer.writeInt(view);
+        }
+
+        @Override
+        public Compactor compactor() {
+            return this;
+        }
+
+        @Override
+        public Serializer getSerializer() {
+            return null;
+        }
+
+        @Override
+        public void take(SnapshotWriter writer) {
+            throw new IllegalStateException("take should not be called");
+        }
+
+        @Override
+        public void install(SnapshotReader reader) {
+        }
+
+        @Override
+        public void updateCompactIndex(long index) {
+            compactIndex = index;
+        }
+
+        @Override
+        public long nextCompactIndex() {
+            return compactIndex + 5;
+        }
+    }
+
+    private static class AsyncStateMachine implements LogStateMachine, Compactor {
+        private final AtomicInteger count = new AtomicInteger();
+        private final Queue<CompletableFuture<Object>> pending = new ConcurrentLinkedQueue<>();
+        private volatile int taken;
+        private volatile long compactIndex;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> CompletableFuture<T> apply(Command command) {
+            count.incrementAndGet();
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            pending.add(future);
+            return (CompletableFuture<T>) future;
+        }
+
+        void completeAll() {
+            CompletableFuture<Object> future;
+            while ((future = pending.poll()) != null) {
+                future.complete(null);
+            }
+        }
+
+        @Override
+        public Compactor compactor() {
+            return this;
+        }
+
+        @Override
+        public Serializer getSerializer() {
+            return null;
+        }
+
+        @Override
+        public void take(SnapshotWriter writer) {
+            taken = count.get();
+            writer.writeInt(taken);
+        }
+
+        @Override
+        public void install(SnapshotReader reader) {
+        }
+
+        @Override
+        public void updateCompactIndex(long index) {
+            compactIndex = index;
+        }
+
+        @Override
+        public long nextCompactIndex() {
+            return compactIndex + 5;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.vein.raft.server.state;
+
+import com.vein.raft.client.Command;
+import com.vein.raft.server.Compactor;
+import com.vein.raft.server.LogStateMachine;
+import com.vein.raft.server.RaftMember;
+import com.vein.raft.server.RaftState;
+import com.vein.raft.server.ServerContext;
+import com.vein.raft.server.ServerStateMachine;
+import com.vein.raft.server.events.AppendRequest;
+import com.vein.raft.server.events.AppendResponse;
+import com.vein.raft.server.storage.logs.DurabilityPolicy;
+import com.vein.raft.server.storage.logs.RaftLogger;
+import com.vein.raft.server.storage.logs.RaftLoggerFixture;
+import com.vein.raft.server.storage.logs.TestCommand;
+import com.vein.raft.server.storage.logs.entry.LogEntry;
+import com.vein.raft.server.storage.snapshot.SnapshotReader;
+import com.vein.raft.server.storage.snapshot.SnapshotWriter;
+import com.vein.serializer.api.Serializer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author shifeng.luo
+ * @version created on 2026/10/19 上午10:20
+ */
+public class AbstractStateTest {
+    private static final long TERM = 3;
+
+    private final RaftMember self = new RaftMember(null, "follower", null, null);
+
+    private RaftLoggerFixture logs;
+    private RaftLogger raftLogger;
+    private ServerStateMachine stateMachine;
+    private AbstractState state;
+
+    @Before
+    public void setUp() throws Exception {
+        logs = new RaftLoggerFixture();
+        raftLogger = logs.open(DurabilityPolicy.NONE, 1024);
+        stateMachine = new ServerStateMachine(raftLogger, self, new NoopStateMachine(), null,
+            Executors.newSingleThreadExecutor(), Executors.newSingleThreadExecutor(), 1024, 1);
+        self.setTerm(TERM);
+
+        ServerContext context = ServerContext.builder()
+            .setRaftLogger(raftLogger)
+            .setSelf(self)
+            .setStateMachine(stateMachine)
+            .build();
+        state = new TestState(context);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        stateMachine.close();
+        logs.close();
+    }
+
+    @Test
+    public void heartbeatNotCommitStaleSuffix() throws Exception {
+        append(1, 1, 2);
+
+        // 旧leader的日志3未被校验，leader的commitIndex已经到3
+        AppendResponse response = state.handle(request(2, 1, 3));
+        assertTrue(response.isSuccess());
+        assertEquals(3, response.getNextIndex());
+        assertEquals(2, self.getCommitIndex());
+        assertEquals(3, raftLogger.lastIndex());
+    }
+
+    @Test
+    public void prevEntryMissing() throws Exception {
+        append(1, 1);
+
+        AppendResponse response = state.handle(request(5, 1, 0));
+        assertFalse(response.isSuccess());
+        assertEquals(3, response.getNextIndex());
+        assertEquals(0, response.getConflictTerm());
+    }
+
+    @Test
+    public void conflictAcrossTerms() throws Exception {
+        append(1, 1, 2, 2, 2, 3, 3);
+
+        // 冲突的term 3从index 6开始
+        AppendResponse response = state.handle(request(7, 4, 0));
+        assertFalse(response.isSuccess());
+        assertEquals(3, response.getConflictTerm());
+        assertEquals(6, response.getConflictIndex());
+        assertEquals(6, response.getNextIndex());
+
+        // 冲突的term 2从index 3开始，跳过整个term
+        response = state.handle(request(5, 1, 0));
+        assertFalse(response.isSuccess());
+        assertEquals(2, response.getConflictTerm());
+        assertEquals(3, response.getConflictIndex());
+    }
+
+    @Test
+    public void conflictAtCommitIndex() throws Exception {
+        append(2, 2, 2, 2, 2, 3);
+        state.handle(request(4, 2, 4));
+        assertEquals(4, self.getCommitIndex());
+
+        // 已提交的日志不会冲突，conflictIndex不小于commitIndex + 1
+        AppendResponse response = state.handle(request(5, 1, 4));
+        assertFalse(response.isSuccess());
+        assertEquals(2, response.getConflictTerm());
+        assertEquals(5, response.getConflictIndex());
+    }
+
+    @Test
+    public void conflictAtFirstIndex() throws Exception {
+        raftLogger.skip(3);
+        append(2, 2, 3);
+        assertEquals(4, raftLogger.firstIndex());
+
+        AppendResponse response = state.handle(request(5, 1, 0));
+        assertFalse(response.isSuccess());
+        assertEquals(2, response.getConflictTerm());
+        assertEquals(4, response.getConflictIndex());
+    }
+
+    @Test
+    public void leaderNextIndex() throws Exception {
+        append(1, 1, 2, 2, 4);
+        LeaderState leader = new LeaderState(state.context, null);
+
+        // leader有冲突term的日志，从它的最后一条之后开始
+        assertEquals(5, leader.nextIndex(response(2, 3, 3)));
+        // leader没有冲突term的日志，跳过follower的整个term
+        assertEquals(3, leader.nextIndex(response(3, 3, 3)));
+        // 没有冲突信息时使用follower返回的nextIndex
+        assertEquals(2, leader.nextIndex(response(0, 0, 2)));
+    }
+
+    void append(long... terms) throws Exception {
+        long index = 0;
+        for (long term : terms) {
+            index = raftLogger.append(new LogEntry(new TestCommand("test"), term));
+        }
+        // 等日志写入segment，firstIndex等读取文件的方法才能看到
+        raftLogger.durable(index).get(5, TimeUnit.SECONDS);
+    }
+
+    AppendRequest request(long prevLogIndex, long prevLogTerm, long leaderCommit, LogEntry... entries) {
+        AppendRequest request = new AppendRequest();
+        request.setSource("leader");
+        request.setDestination(self.getNodeId());
+        request.setTerm(TERM);
+        request.setPrevLogIndex(prevLogIndex);
+        request.setPrevLogTerm(prevLogTerm);
+        request.setLeaderCommit(leaderCommit);
+        request.setEntries(entries.length == 0 ? Collections.emptyList() : Arrays.asList(entries));
+        return request;
+    }
+
+    private AppendResponse response(long conflictTerm, long conflictIndex, long nextIndex) {
+        AppendResponse response = new AppendResponse();
+        response.setSuccess(false);
+        response.setConflictTerm(conflictTerm);
+        response.setConflictIndex(conflictIndex);
+        response.setNextIndex(nextIndex);
+        return response;
+    }
+
+    private static class TestState extends AbstractState {
+
+        TestState(ServerContext context) {
+            super(context);
+        }
+
+        @Override
+        public RaftState state() {
+            return RaftState.FOLLOWER;
+        }
+
+        @Override
+        public void suspect() {
+        }
+
+        @Override
+        public void wakeup() {
+        }
+    }
+
+    private static class NoopStateMachine implements LogStateMachine {
+
+        @Override
+        public <T> CompletableFuture<T> apply(Command command) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public Compactor compactor() {
+            return null;
+        }
+
+        @Override
+        public Serializer getSerializer() {
+            return null;
+        }
+
+        @Override
+        public void take(SnapshotWriter writer) {
+        }
+
+        @Override
+        public void install(SnapshotReader reader) {
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.vein.raft.server.state;
+
+import com.vein.common.base.Configure;
+import com.vein.raft.server.RaftConfig;
+import com.vein.raft.server.RaftMember;
+import com.vein.raft.server.RaftState;
+import com.vein.raft.server.ServerContext;
+import com.vein.raft.server.events.VoteRequest;
+import com.vein.raft.server.events.VoteResponse;
+import com.vein.raft.server.state.support.timer.HeartbeatTimeoutTimer;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author shifeng.luo
+ * @version created on 2026/10/19 上午11:20
+ */
+public class FollowerStateTest {
+    private static final long TERM = 3;
+
+    private final RaftMember self = new RaftMember(null, "follower", null, null);
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    private HeartbeatTimeoutTimer timer;
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private FollowerState open(Properties properties) {
+        self.setTerm(TERM);
+        ServerContext context = ServerContext.builder()
+            .setRaftConfig(new RaftConfig(new Configure("raft", properties)))
+            .setSelf(self)
+            .build();
+        timer = new HeartbeatTimeoutTimer(60 * 1000, executor, context);
+        FollowerState state = new FollowerState(context, timer);
+        context.add(RaftState.FOLLOWER, state);
+        state.wakeup();
+        return state;
+    }
+
+    private static Properties lease(int minElectTimeout) {
+        Properties properties = new Properties();
+        properties.setProperty("raft.server.read.lease", "true");
+        properties.setProperty("raft.server.elect.timeout.min", String.valueOf(minElectTimeout));
+        return properties;
+    }
+
+    @Test
+    public void rejectVoteWithinLease() {
+        FollowerState state = open(lease(3000));
+        timer.reset();
+
+        VoteResponse response = state.handle(vote(TERM + 1));
+        assertFalse(response.isVoteGranted());
+        assertEquals(TERM, response.getTerm());
+        assertEquals(TERM, self.getTerm());
+    }
+
+    @Test
+    public void grantVoteAfterLease() throws Exception {
+        FollowerState state = open(lease(50));
+        timer.reset();
+        Thread.sleep(100);
+
+        VoteResponse response = state.handle(vote(TERM + 1));
+        assertTrue(response.isVoteGranted());
+        assertEquals(TERM + 1, self.getTerm());
+    }
+
+    @Test
+    public void grantVoteWithoutLease() {
+        // 默认不开启租约读，收到心跳后仍然响应更高term的投票
+        FollowerState state = open(new Properties());
+        timer.reset();
+
+        VoteResponse response = state.handle(vote(TERM + 1));
+        assertTrue(response.isVoteGranted());
+        assertEquals(TERM + 1, self.getTerm());
+        assertEquals("candidate", self.getVotedFor());
+    }
+
+    private VoteRequest vote(long term) {
+        VoteRequest request = new VoteRequest();
+        request.setSource("candidate");
+        request.setDestination(self.getNodeId());
+        request.setTerm(term);
+        return request;
+    }
+}
@@ -0,0 +1,58 @@
+package com.vein.raft.server.state.support;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午8:20
+ */
+public class AppendBatchSizeTest {
+
+    @Test
+    public void fixed() {
+        AppendBatchSize batchSize = new AppendBatchSize(1024, 8192, false);
+        assertEquals(8192, batchSize.limit());
+
+        batchSize.onResponse(1000);
+        batchSize.onResponse(100000);
+        assertEquals(8192, batchSize.limit());
+    }
+
+    @Test
+    public void adaptive() {
+        AppendBatchSize batchSize = new AppendBatchSize(1024, 8192, true);
+        assertEquals(1024, batchSize.limit());
+
+        batchSize.onResponse(1000);
+        assertEquals(2048, batchSize.limit());
+        batchSize.onResponse(1500);
+        assertEquals(4096, batchSize.limit());
+        batchSize.onResponse(1000);
+        batchSize.onResponse(1000);
+        assertEquals(8192, batchSize.limit());
+
+        batchSize.onResponse(3000);
+        assertEquals(8192, batchSize.limit());
+        batchSize.onResponse(10000);
+        assertEquals(4096, batchSize.limit());
+        for (int i = 0; i < 5; i++) {
+            batchSize.onResponse(10000);
+        }
+        assertEquals(1024, batchSize.limit());
+    }
+
+    @Test
+    public void histogram() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(100, histogram.getMax());
+        assertEquals(50.5, histogram.getMean(), 0.001);
+        assertEquals(63, histogram.getPercentile(0.5));
+        assertEquals(100, histogram.getPercentile(0.99));
+    }
+}
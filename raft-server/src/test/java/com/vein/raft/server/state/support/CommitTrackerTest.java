@@ -0,0 +1,52 @@
+package com.vein.raft.server.state.support;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午8:50
+ */
+public class CommitTrackerTest {
+
+    @Test
+    public void commit() {
+        List<Long> commits = new ArrayList<>();
+        CommitTracker tracker = new CommitTracker(commits::add);
+        tracker.reset(Arrays.asList("a", "b", "c"), 2, 0);
+
+        tracker.update("a", 10);
+        assertEquals(0, tracker.commitIndex());
+        tracker.update("b", 5);
+        assertEquals(5, tracker.commitIndex());
+        tracker.update("b", 3);
+        tracker.update("c", 8);
+        assertEquals(8, tracker.commitIndex());
+        tracker.update("c", 12);
+        assertEquals(10, tracker.commitIndex());
+        assertEquals(Arrays.asList(5L, 8L, 10L), commits);
+        assertEquals(5, tracker.minIndex());
+    }
+
+    @Test
+    public void evenMembers() {
+        List<Long> commits = new ArrayList<>();
+        CommitTracker tracker = new CommitTracker(commits::add);
+        tracker.reset(Arrays.asList("a", "b", "c", "d"), 2, 0);
+
+        tracker.update("a", 10);
+        tracker.update("b", 10);
+        assertEquals(0, tracker.commitIndex());
+        tracker.update("c", 7);
+        assertEquals(7, tracker.commitIndex());
+        assertEquals(0, tracker.minIndex());
+        tracker.update("d", 1);
+        assertEquals(1, tracker.minIndex());
+        assertEquals(Arrays.asList(7L), commits);
+    }
+}
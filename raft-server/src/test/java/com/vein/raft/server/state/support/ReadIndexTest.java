@@ -0,0 +1,107 @@
+package com.vein.raft.server.state.support;
+
+import com.vein.raft.server.exceptions.NotLeaderException;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午10:30
+ */
+public class ReadIndexTest {
+
+    @Test
+    public void singleMember() {
+        AtomicInteger heartbeats = new AtomicInteger();
+        ReadIndex readIndex = new ReadIndex(heartbeats::incrementAndGet, 0);
+        readIndex.reset(Collections.singletonList("a"), "a", 1);
+        readIndex.start(5);
+
+        CompletableFuture<Long> read = readIndex.read(3);
+        assertTrue(read.isDone());
+        assertEquals(5L, (long) read.join());
+        assertEquals(0, heartbeats.get());
+    }
+
+    @Test
+    public void batchedHeartbeat() {
+        AtomicInteger heartbeats = new AtomicInteger();
+        ReadIndex readIndex = new ReadIndex(heartbeats::incrementAndGet, 0);
+        readIndex.reset(Arrays.asList("a", "b", "c"), "a", 2);
+        readIndex.start(0);
+
+        long before = System.nanoTime();
+        CompletableFuture<Long> first = readIndex.read(10);
+        CompletableFuture<Long> second = readIndex.read(11);
+        assertEquals(1, heartbeats.get());
+        assertFalse(first.isDone());
+
+        // 读请求之前发出的请求的响应不能确认
+        readIndex.ack("b", before - 1);
+        assertFalse(first.isDone());
+
+        long sendTime = System.nanoTime();
+        CompletableFuture<Long> third = readIndex.read(12);
+        assertEquals(1, heartbeats.get());
+
+        readIndex.ack("b", sendTime);
+        assertEquals(10L, (long) first.join());
+        assertEquals(11L, (long) second.join());
+        assertFalse(third.isDone());
+        assertEquals(2, heartbeats.get());
+
+        readIndex.ack("c", System.nanoTime());
+        assertEquals(12L, (long) third.join());
+        assertEquals(0, readIndex.pendingReads());
+    }
+
+    @Test
+    public void stepDown() {
+        ReadIndex readIndex = new ReadIndex(() -> {
+        }, 0);
+        readIndex.reset(Arrays.asList("a", "b", "c"), "a", 2);
+        readIndex.start(0);
+
+        CompletableFuture<Long> read = readIndex.read(1);
+        readIndex.fail(new NotLeaderException("leader step down"));
+        assertTrue(read.isCompletedExceptionally());
+        assertTrue(readIndex.read(1).isCompletedExceptionally());
+
+        readIndex.start(0);
+        readIndex.ack("b", System.nanoTime());
+        assertFalse(readIndex.read(1).isDone());
+    }
+
+    @Test
+    public void lease() {
+        AtomicInteger heartbeats = new AtomicInteger();
+        ReadIndex readIndex = new ReadIndex(heartbeats::incrementAndGet, 1000);
+        readIndex.reset(Arrays.asList("a", "b", "c"), "a", 2);
+        readIndex.start(3);
+
+        // 没有多数派确认时退化为ReadIndex
+        CompletableFuture<Long> first = readIndex.leaseRead(1);
+        assertFalse(first.isDone());
+        assertEquals(1, heartbeats.get());
+
+        readIndex.ack("c", System.nanoTime());
+        assertEquals(3L, (long) first.join());
+
+        CompletableFuture<Long> second = readIndex.leaseRead(7);
+        assertTrue(second.isDone());
+        assertEquals(7L, (long) second.join());
+        assertEquals(1, heartbeats.get());
+
+        readIndex.fail(new NotLeaderException("leader step down"));
+        assertTrue(readIndex.leaseRead(7).isCompletedExceptionally());
+    }
+}
@@ -0,0 +1,59 @@
+package com.vein.raft.server.state.support;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午6:40
+ */
+public class ReplicateWindowTest {
+
+    @Test
+    public void probe() {
+        ReplicateWindow window = new ReplicateWindow(4, 1024);
+        assertTrue(window.isProbing());
+        assertTrue(window.hasRoom());
+
+        assertFalse(window.acquire(100));
+        assertFalse(window.hasRoom());
+
+        CompletableFuture<Void> released = window.awaitRelease();
+        assertFalse(released.isDone());
+        window.release(100);
+        assertTrue(released.isDone());
+        assertTrue(window.hasRoom());
+    }
+
+    @Test
+    public void pipeline() {
+        ReplicateWindow window = new ReplicateWindow(4, 1024);
+        window.pipeline();
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(window.hasRoom());
+            assertTrue(window.acquire(10));
+        }
+        assertFalse(window.hasRoom());
+        assertEquals(4, window.inflightRequests());
+
+        window.release(10);
+        assertTrue(window.hasRoom());
+        assertTrue(window.acquire(2000));
+        assertFalse(window.hasRoom());
+
+        window.release(2000);
+        window.probe();
+        assertFalse(window.hasRoom());
+        for (int i = 0; i < 3; i++) {
+            window.release(10);
+        }
+        assertTrue(window.hasRoom());
+        assertTrue(window.awaitRelease().isDone());
+    }
+}
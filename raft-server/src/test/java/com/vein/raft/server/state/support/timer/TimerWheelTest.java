@@ -0,0 +1,46 @@
+package com.vein.raft.server.state.support.timer;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午7:30
+ */
+public class TimerWheelTest {
+    private final TimerWheel wheel = new TimerWheel("TestWheelThread", 5, 8);
+
+    @After
+    public void tearDown() {
+        wheel.stop();
+    }
+
+    @Test
+    public void schedule() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+        wheel.schedule(latch::countDown, 100);
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 95);
+    }
+
+    @Test
+    public void cancel() throws Exception {
+        AtomicBoolean fired = new AtomicBoolean(false);
+        TimerWheel.Timeout timeout = wheel.schedule(() -> fired.set(true), 50);
+        timeout.cancel();
+
+        CountDownLatch latch = new CountDownLatch(1);
+        wheel.schedule(latch::countDown, 100);
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertFalse(fired.get());
+    }
+}
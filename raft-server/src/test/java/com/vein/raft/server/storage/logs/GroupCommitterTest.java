@@ -0,0 +1,198 @@
+package com.vein.raft.server.storage.logs;
+
+import com.vein.raft.server.storage.logs.entry.LogEntry;
+import com.vein.raft.server.storage.logs.segment.SegmentManager;
+import com.vein.serializer.api.Serializer;
+import com.vein.storage.api.exceptions.StorageException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author shifeng.luo
+ * @version created on 2026/10/18 上午11:30
+ */
+public class GroupCommitterTest {
+
+    private RaftLoggerFixture logs;
+    private RaftLogger raftLogger;
+
+    @Before
+    public void setUp() throws Exception {
+        logs = new RaftLoggerFixture();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        logs.close();
+    }
+
+    private RaftLogger open(DurabilityPolicy policy) {
+        return logs.open(policy, 64 * 1024 * 1024);
+    }
+
+    @Test
+    public void batch() throws Exception {
+        raftLogger = open(DurabilityPolicy.BATCH);
+        logs.appendAndWait(5000);
+
+        GroupCommitMetrics metrics = raftLogger.commitMetrics();
+        assertEquals(5000, metrics.getEntries());
+        assertTrue(metrics.getBatches() <= 5000);
+        assertEquals(metrics.getSyncs(), metrics.getBatches());
+        assertEquals(5000, raftLogger.durableIndex());
+    }
+
+    @Test
+    public void interval() throws Exception {
+        raftLogger = open(DurabilityPolicy.INTERVAL);
+        logs.appendAndWait(2000);
+
+        GroupCommitMetrics metrics = raftLogger.commitMetrics();
+        assertTrue(metrics.getSyncs() <= metrics.getBatches());
+        assertEquals(2000, raftLogger.durableIndex());
+    }
+
+    @Test
+    public void none() throws Exception {
+        raftLogger = open(DurabilityPolicy.NONE);
+        logs.appendAndWait(2000);
+
+        assertEquals(0, raftLogger.commitMetrics().getSyncs());
+    }
+
+    @Test
+    public void latencyMetrics() {
+        GroupCommitMetrics metrics = new GroupCommitMetrics();
+        metrics.recordBatch(10);
+        metrics.recordBatch(10);
+        metrics.recordBatch(10);
+        metrics.recordLatency(TimeUnit.MICROSECONDS.toNanos(300));
+
+        // 三个批次只持久化了一次，平均延迟按持久化次数计算
+        assertEquals(300, metrics.getAvgLatencyMicros());
+        metrics.recordLatency(TimeUnit.MICROSECONDS.toNanos(100));
+        assertEquals(200, metrics.getAvgLatencyMicros());
+        assertEquals(300, metrics.getMaxLatencyMicros());
+    }
+
+    @Test
+    public void reopen() throws Exception {
+        raftLogger = open(DurabilityPolicy.BATCH);
+        logs.appendAndWait(2500);
+        logs.closeLogger();
+
+        raftLogger = open(DurabilityPolicy.BATCH);
+        assertEquals(2500, raftLogger.lastIndex());
+        for (long index = 1; index <= 2500; index++) {
+            LogEntry entry = raftLogger.get(index);
+            assertEquals(index, entry.getIndex());
+            assertEquals("test" + index, ((TestCommand) entry.getCommand()).getCommand());
+        }
+    }
+
+    @Test
+    public void writeFailure() throws Exception {
+        FailingSegmentManager segments = new FailingSegmentManager(logs.directory(), logs.serializer());
+        GroupCommitter committer = new GroupCommitter(segments, DurabilityPolicy.BATCH, 100, 256, 0);
+        try {
+            submit(committer, segments, 1);
+            assertEquals(1, (long) committer.durable(1).get(5, TimeUnit.SECONDS));
+
+            segments.failing = true;
+            submit(committer, segments, 2);
+            try {
+                committer.durable(2).get(5, TimeUnit.SECONDS);
+                fail("durable should fail after write failure");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof StorageException);
+            }
+
+            // 失败之后不再写入，之后的日志不会越过没有写入的日志
+            segments.failing = false;
+            try {
+                submit(committer, segments, 3);
+                fail("submit should fail after write failure");
+            } catch (StorageException e) {
+                // expected
+            }
+            try {
+                committer.awaitWritten(2);
+                fail("await written should fail after write failure");
+            } catch (StorageException e) {
+                // expected
+            }
+            assertTrue(committer.durable(3).isCompletedExceptionally());
+            assertEquals(1, committer.writtenIndex());
+            assertEquals(1, committer.durableIndex());
+            assertEquals(1, segments.appended);
+        } finally {
+            committer.close();
+            segments.close();
+        }
+    }
+
+    @Test
+    public void closeWritesRemainingEntries() throws Exception {
+        FailingSegmentManager segments = new FailingSegmentManager(logs.directory(), logs.serializer());
+        segments.delay = 50;
+        GroupCommitter committer = new GroupCommitter(segments, DurabilityPolicy.BATCH, 100, 1, 0);
+        try {
+            for (long index = 1; index <= 30; index++) {
+                submit(committer, segments, index);
+            }
+            CompletableFuture<Long> last = committer.durable(30);
+            CompletableFuture<Long> never = committer.durable(31);
+
+            // 关闭时等待队列中的日志全部写入并刷盘，没有提交的日志以异常完成
+            committer.close();
+            assertEquals(30, segments.appended);
+            assertEquals(30, (long) last.getNow(null));
+            assertTrue(never.isCompletedExceptionally());
+            assertTrue(committer.durable(32).isCompletedExceptionally());
+        } finally {
+            segments.close();
+        }
+    }
+
+    private void submit(GroupCommitter committer, SegmentManager segments, long index) {
+        LogEntry entry = new LogEntry(new TestCommand("test" + index), 1);
+        entry.setIndex(index);
+        committer.submit(entry, segments.codec().encode(entry));
+    }
+
+    private static class FailingSegmentManager extends SegmentManager {
+        private volatile boolean failing;
+        private volatile int appended;
+        private volatile long delay;
+
+        FailingSegmentManager(File directory, Serializer serializer) {
+            super("raftLog", directory, serializer, 1024 * 1024, 10000, 1000);
+        }
+
+        @Override
+        public void append(List<LogEntry> entries, List<ByteBuffer> frames) {
+            if (failing) {
+                throw new StorageException("injected write failure");
+            }
+            if (delay > 0) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(delay));
+            }
+            super.append(entries, frames);
+            appended += entries.size();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.vein.raft.server.storage.logs;
+
+import com.vein.raft.server.storage.logs.entry.LogEntry;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午2:40
+ */
+public class LogEntryCacheTest {
+    private static final int ENTRY_SIZE = 100;
+    private static final int FRAME_SIZE = ENTRY_SIZE + LogEntry.ENTRY_OTHER_SIZE - LogEntry.INDEX_TERM_LENGTH;
+
+    private static LogEntry entry(long index) {
+        return new LogEntry(index, 1, ENTRY_SIZE, new TestCommand("test" + index));
+    }
+
+    @Test
+    public void evictWrittenOnly() {
+        LogEntryCache cache = new LogEntryCache(1024, FRAME_SIZE * 10);
+        for (long index = 1; index <= 20; index++) {
+            cache.put(entry(index), 5);
+        }
+
+        assertNull(cache.get(5));
+        assertNotNull(cache.get(6));
+        assertEquals(20, cache.lastIndex());
+        assertTrue(cache.overBudget());
+
+        cache.evict(20);
+        assertEquals(FRAME_SIZE * 10, cache.bytes());
+        assertNull(cache.get(10));
+        assertNotNull(cache.get(11));
+        assertEquals(10, cache.metrics().getEvictions());
+    }
+
+    @Test
+    public void ringOverwrite() {
+        LogEntryCache cache = new LogEntryCache(8, Long.MAX_VALUE);
+        for (long index = 1; index <= 8; index++) {
+            cache.put(entry(index), index);
+        }
+        assertEquals(1, cache.occupant(entry(9)));
+
+        cache.put(entry(9), 9);
+        assertNull(cache.get(1));
+        assertEquals(9, cache.get(9).getIndex());
+        assertEquals(2, cache.get(2).getIndex());
+        assertEquals(FRAME_SIZE * 8, cache.bytes());
+    }
+
+    @Test
+    public void hotEvictions() {
+        LogEntryCache cache = new LogEntryCache(1024, FRAME_SIZE * 4);
+        cache.setHotIndex(4);
+        for (long index = 1; index <= 10; index++) {
+            cache.put(entry(index), index);
+        }
+
+        assertEquals(6, cache.metrics().getEvictions());
+        assertEquals(3, cache.metrics().getHotEvictions());
+    }
+
+    @Test
+    public void evictOldestFirst() {
+        LogEntryCache cache = new LogEntryCache(1024, FRAME_SIZE * 6);
+        cache.setHotIndex(5);
+        for (long index = 1; index <= 10; index++) {
+            cache.put(entry(index), index);
+        }
+
+        // 已复制并提交的日志最旧，先于仍被需要的日志淘汰
+        assertEquals(4, cache.metrics().getEvictions());
+        assertEquals(0, cache.metrics().getHotEvictions());
+        assertNotNull(cache.get(5));
+
+        // 超过字节上限时仍被需要的日志同样淘汰
+        cache.put(entry(11), 11);
+        assertNull(cache.get(5));
+        assertEquals(1, cache.metrics().getHotEvictions());
+    }
+
+    @Test
+    public void truncate() {
+        LogEntryCache cache = new LogEntryCache(1024, Long.MAX_VALUE);
+        for (long index = 1; index <= 10; index++) {
+            cache.put(entry(index), 0);
+        }
+
+        cache.truncate(6);
+        assertEquals(6, cache.lastIndex());
+        assertNull(cache.get(7));
+        assertEquals(FRAME_SIZE * 6, cache.bytes());
+
+        cache.put(entry(7), 0);
+        assertEquals(7, cache.get(7).getIndex());
+
+        cache.truncate(0);
+        assertEquals(0, cache.lastIndex());
+        assertEquals(0, cache.bytes());
+        assertNull(cache.get(1));
+    }
+}
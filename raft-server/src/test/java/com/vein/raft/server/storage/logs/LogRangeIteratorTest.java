@@ -0,0 +1,68 @@
+package com.vein.raft.server.storage.logs;
+
+import com.vein.raft.server.storage.logs.entry.LogEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午11:00
+ */
+public class LogRangeIteratorTest {
+
+    private RaftLoggerFixture logs;
+    private RaftLogger raftLogger;
+
+    @Before
+    public void setUp() throws Exception {
+        logs = new RaftLoggerFixture();
+        raftLogger = logs.open(DurabilityPolicy.NONE, 1024);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        logs.close();
+    }
+
+    @Test
+    public void batches() {
+        append(10);
+        LogRangeIterator iterator = raftLogger.iterator(2, 9, 3, Integer.MAX_VALUE);
+        assertRange(iterator.next(), 2, 4);
+        assertRange(iterator.next(), 5, 7);
+        assertRange(iterator.next(), 8, 9);
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void splitAtHole() {
+        append(5);
+        raftLogger.skip(3);
+        append(5);
+
+        LogRangeIterator iterator = raftLogger.iterator(3, 11, 100, Integer.MAX_VALUE);
+        assertRange(iterator.next(), 3, 5);
+        assertRange(iterator.next(), 9, 11);
+        assertFalse(iterator.hasNext());
+    }
+
+    private void append(int count) {
+        for (int i = 0; i < count; i++) {
+            raftLogger.append(new LogEntry(new TestCommand("test" + i), 1));
+        }
+    }
+
+    private void assertRange(List<LogEntry> entries, long from, long to) {
+        assertEquals(to - from + 1, entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals(from + i, entries.get(i).getIndex());
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.vein.raft.server.storage.logs;
+
+import com.vein.raft.server.storage.logs.entry.LogEntry;
+import com.vein.raft.server.storage.logs.segment.SegmentType;
+import com.vein.serializer.api.Serializer;
+import com.vein.serializer.json.JsonSerializer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 日志测试共用的临时目录和{@link RaftLogger}：每个segment 1000条日志，同一时间只打开一个RaftLogger，
+ * 打开新的之前先关闭旧的。测试的@After中调用{@link #close()}关闭日志并删除临时目录
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/19 上午11:30
+ */
+public class RaftLoggerFixture {
+
+    private final File directory;
+    private final Serializer serializer = new JsonSerializer(new RaftSerializableTypes());
+    private RaftLogger raftLogger;
+
+    public RaftLoggerFixture() throws IOException {
+        directory = Files.createTempDirectory("raft-log").toFile();
+    }
+
+    public File directory() {
+        return directory;
+    }
+
+    public Serializer serializer() {
+        return serializer;
+    }
+
+    public RaftLogger open() {
+        return open(DurabilityPolicy.BATCH, 1024);
+    }
+
+    public RaftLogger open(DurabilityPolicy policy, long cacheBytes) {
+        return open(policy, cacheBytes, SegmentType.CHANNEL);
+    }
+
+    public RaftLogger open(DurabilityPolicy policy, long cacheBytes, SegmentType segmentType) {
+        closeLogger();
+        raftLogger = new RaftLogger("raftLog", directory, serializer, 1024 * 1024, 10000, 1000, policy, 20, 256,
+            64 * 1024, cacheBytes, segmentType, 100);
+        return raftLogger;
+    }
+
+    /**
+     * 以默认的持久化策略和缓存打开
+     */
+    public RaftLogger open(int maxSegmentSize, int maxMessageSize, int maxSegmentEntries) {
+        closeLogger();
+        raftLogger = new RaftLogger("raftLog", directory, serializer, maxSegmentSize, maxMessageSize, maxSegmentEntries);
+        return raftLogger;
+    }
+
+    /**
+     * 追加内容为"test"+index的日志并等待全部持久化
+     *
+     * @param count 日志条数，从index 1开始
+     */
+    public void appendAndWait(int count) throws Exception {
+        List<CompletableFuture<Long>> futures = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            long index = raftLogger.append(new LogEntry(new TestCommand("test" + i), 1));
+            futures.add(raftLogger.durable(index));
+        }
+
+        for (int i = 0; i < count; i++) {
+            assertEquals(i + 1L, (long) futures.get(i).get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * 关闭当前打开的RaftLogger，之后可以修改目录中的文件再重新打开
+     */
+    public void closeLogger() {
+        if (raftLogger != null) {
+            RaftLogger logger = raftLogger;
+            raftLogger = null;
+            logger.close();
+        }
+    }
+
+    public void close() throws IOException {
+        try {
+            closeLogger();
+        } finally {
+            try (Stream<Path> paths = Files.walk(directory.toPath())) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+}
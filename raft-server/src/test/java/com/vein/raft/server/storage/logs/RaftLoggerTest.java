@@ -1,14 +1,25 @@
 package com.vein.raft.server.storage.logs;
 
 import com.vein.raft.server.storage.logs.entry.LogEntry;
-import com.vein.common.utils.JsonUtil;
-import com.vein.serializer.api.Serializer;
-import com.vein.serializer.json.JsonSerializer;
+import com.vein.raft.server.storage.logs.segment.SegmentType;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author shifeng.luo
@@ -16,45 +27,234 @@ import java.io.File;
  */
 public class RaftLoggerTest {
 
+    private RaftLoggerFixture logs;
     private RaftLogger raftLogger;
-    private File directory;
     private int maxSegmentSize;
     private int maxSegmentEntries;
     private int maxMessageSize;
-    private Serializer serializer;
 
     @Before
     public void setUp() throws Exception {
-        directory = new File("/Users/shifengluo/logs/raft");
+        logs = new RaftLoggerFixture();
         maxSegmentSize = 20 * 1024 * 1024;
         maxSegmentEntries = 10000;
         maxMessageSize = 10000;
-        serializer = new JsonSerializer(new RaftSerializableTypes());
+    }
 
-        raftLogger = new RaftLogger("raftLog", directory, serializer, maxSegmentSize, maxMessageSize, maxSegmentEntries);
+    @After
+    public void tearDown() throws Exception {
+        logs.close();
     }
 
     @Test
     public void append() throws Exception {
-        LogEntry entry = new LogEntry(new TestCommand("test"), 1);
-        int i = 200;
-        try {
-            for (; i < 13000; i++) {
-                entry.setIndex(i);
-                raftLogger.append(entry);
-            }
-        } catch (Exception e) {
-            System.out.println(i);
-            e.printStackTrace();
+        raftLogger = logs.open(maxSegmentSize, maxMessageSize, maxSegmentEntries);
+        long last = 0;
+        for (int i = 1; i <= 13000; i++) {
+            last = raftLogger.append(new LogEntry(new TestCommand("test" + i), 1));
         }
+        assertEquals(13000, last);
+        assertEquals(13000, (long) raftLogger.durable(last).get(5, TimeUnit.SECONDS));
     }
 
     @Test
     public void get() throws Exception {
+        raftLogger = logs.open(maxSegmentSize, maxMessageSize, maxSegmentEntries);
+        logs.appendAndWait(200);
 
         LogEntry entry = raftLogger.get(100);
-        System.out.println(entry.getIndex());
-        System.out.println(JsonUtil.toJson(entry));
+        assertEquals(100, entry.getIndex());
+        assertEquals("test100", ((TestCommand) entry.getCommand()).getCommand());
+    }
+
+    @Test
+    public void read() throws Exception {
+        raftLogger = logs.open(DurabilityPolicy.BATCH, 1024);
+        logs.appendAndWait(2500);
+        assertTrue(raftLogger.cacheMetrics().getEvictions() > 0);
+
+        List<LogEntry> entries = raftLogger.read(900, 300, Integer.MAX_VALUE);
+        assertEquals(300, entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals(900L + i, entries.get(i).getIndex());
+            assertEquals("test" + (900 + i), ((TestCommand) entries.get(i).getCommand()).getCommand());
+        }
+
+        entries = raftLogger.read(2400, 1000, Integer.MAX_VALUE);
+        assertEquals(101, entries.size());
+        assertEquals(2500, entries.get(100).getIndex());
+
+        int frameLength = entries.get(0).getSize() + LogEntry.ENTRY_OTHER_SIZE - LogEntry.INDEX_TERM_LENGTH;
+        entries = raftLogger.read(1, 1000, frameLength * 10);
+        assertEquals(10, entries.size());
+
+        entries = raftLogger.read(1, 1000, 1);
+        assertEquals(1, entries.size());
+        assertTrue(raftLogger.read(2501, 10, Integer.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    public void concurrentRead() throws Exception {
+        raftLogger = logs.open(DurabilityPolicy.NONE, 1024);
+        logs.appendAndWait(2000);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                readers.add(executor.submit(() -> {
+                    Random random = new Random();
+                    for (int j = 0; j < 2000; j++) {
+                        long index = 1 + random.nextInt(2000);
+                        LogEntry entry = raftLogger.get(index);
+                        assertEquals(index, entry.getIndex());
+                        assertEquals("test" + index, ((TestCommand) entry.getCommand()).getCommand());
+                    }
+                }));
+            }
+
+            long last = 0;
+            for (int i = 2001; i <= 3000; i++) {
+                last = raftLogger.append(new LogEntry(new TestCommand("test" + i), 1));
+            }
+            assertEquals(3000, (long) raftLogger.durable(last).get(5, TimeUnit.SECONDS));
+
+            for (Future<?> reader : readers) {
+                reader.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void truncate() throws Exception {
+        raftLogger = logs.open(DurabilityPolicy.BATCH, 1024);
+        logs.appendAndWait(2500);
+
+        raftLogger.truncate(2300);
+        assertEquals(2300, raftLogger.lastIndex());
+        assertNull(raftLogger.get(2301));
+        assertEquals(2301, raftLogger.append(new LogEntry(new TestCommand("new2301"), 2)));
+        assertEquals(2301, (long) raftLogger.durable(2301).get(5, TimeUnit.SECONDS));
+        logs.closeLogger();
+
+        raftLogger = logs.open(DurabilityPolicy.BATCH, 1024);
+        assertEquals(2301, raftLogger.lastIndex());
+        assertEquals("test2300", ((TestCommand) raftLogger.get(2300).getCommand()).getCommand());
+        assertEquals("new2301", ((TestCommand) raftLogger.get(2301).getCommand()).getCommand());
+        assertEquals(2, raftLogger.get(2301).getTerm());
+    }
+
+    @Test
+    public void truncateSealedSegment() throws Exception {
+        truncateSealedSegment(SegmentType.CHANNEL);
+    }
+
+    @Test
+    public void truncateMappedSegment() throws Exception {
+        truncateSealedSegment(SegmentType.MMAP);
+    }
+
+    private void truncateSealedSegment(SegmentType segmentType) throws Exception {
+        raftLogger = logs.open(DurabilityPolicy.BATCH, 1024, segmentType);
+        logs.appendAndWait(2500);
+
+        raftLogger.truncate(1500);
+        assertEquals(1500, raftLogger.lastIndex());
+        assertFalse(new File(logs.directory(), "raftLog_2001.segment").exists());
+        assertTrue(raftLogger.read(1501, 10, Integer.MAX_VALUE).isEmpty());
+
+        long last = 0;
+        for (int i = 1501; i <= 2100; i++) {
+            last = raftLogger.append(new LogEntry(new TestCommand("new" + i), 2));
+            assertEquals(i, last);
+        }
+        assertEquals(2100, (long) raftLogger.durable(last).get(5, TimeUnit.SECONDS));
+        logs.closeLogger();
+
+        raftLogger = logs.open(DurabilityPolicy.BATCH, 1024, segmentType);
+        assertEquals(2100, raftLogger.lastIndex());
+        List<LogEntry> entries = raftLogger.read(1, 3000, Integer.MAX_VALUE);
+        assertEquals(2100, entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            int index = i + 1;
+            assertEquals(index, entries.get(i).getIndex());
+            String expected = (index <= 1500 ? "test" : "new") + index;
+            assertEquals(expected, ((TestCommand) entries.get(i).getCommand()).getCommand());
+        }
+    }
+
+    @Test
+    public void truncateAtSegmentEnd() throws Exception {
+        truncateAtSegmentEnd(SegmentType.CHANNEL, 1000);
+        logs.close();
+        logs = new RaftLoggerFixture();
+        truncateAtSegmentEnd(SegmentType.CHANNEL, 2000);
+    }
+
+    @Test
+    public void truncateMappedSegmentAtEnd() throws Exception {
+        truncateAtSegmentEnd(SegmentType.MMAP, 1000);
+        logs.close();
+        logs = new RaftLoggerFixture();
+        truncateAtSegmentEnd(SegmentType.MMAP, 2000);
     }
 
-}
\ No newline at end of file
+    /**
+     * index是写满的segment的最后一条日志，截断后的日志写入下一个segment
+     */
+    private void truncateAtSegmentEnd(SegmentType segmentType, int index) throws Exception {
+        raftLogger = logs.open(DurabilityPolicy.BATCH, 1024, segmentType);
+        logs.appendAndWait(2500);
+
+        raftLogger.truncate(index);
+        assertEquals(index, raftLogger.lastIndex());
+        assertNull(raftLogger.get(index + 1));
+
+        long last = 0;
+        for (int i = index + 1; i <= index + 1200; i++) {
+            last = raftLogger.append(new LogEntry(new TestCommand("new" + i), 2));
+            assertEquals(i, last);
+        }
+        assertEquals(last, (long) raftLogger.durable(last).get(5, TimeUnit.SECONDS));
+        logs.closeLogger();
+
+        raftLogger = logs.open(DurabilityPolicy.BATCH, 1024, segmentType);
+        assertEquals(index + 1200, raftLogger.lastIndex());
+        List<LogEntry> entries = raftLogger.read(1, 5000, Integer.MAX_VALUE);
+        assertEquals(index + 1200, entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            int expectedIndex = i + 1;
+            assertEquals(expectedIndex, entries.get(i).getIndex());
+            String expected = (expectedIndex <= index ? "test" : "new") + expectedIndex;
+            assertEquals(expected, ((TestCommand) entries.get(i).getCommand()).getCommand());
+        }
+    }
+
+    @Test
+    public void appendAll() throws Exception {
+        raftLogger = logs.open(DurabilityPolicy.BATCH, 1024);
+        long last = 0;
+        for (int from = 1; from <= 2500; from += 250) {
+            List<LogEntry> entries = new ArrayList<>();
+            for (int i = from; i < from + 250; i++) {
+                entries.add(new LogEntry(new TestCommand("test" + i), 1));
+            }
+            last = raftLogger.appendAll(entries);
+            assertEquals(from + 249L, last);
+            assertEquals(from, entries.get(0).getIndex());
+        }
+        assertEquals(2500, (long) raftLogger.durable(last).get(5, TimeUnit.SECONDS));
+        assertTrue(raftLogger.commitMetrics().getBatches() < 2500);
+        logs.closeLogger();
+
+        raftLogger = logs.open(DurabilityPolicy.BATCH, 1024);
+        List<LogEntry> entries = raftLogger.read(1, 3000, Integer.MAX_VALUE);
+        assertEquals(2500, entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals(i + 1L, entries.get(i).getIndex());
+            assertEquals("test" + (i + 1), ((TestCommand) entries.get(i).getCommand()).getCommand());
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.vein.raft.server.storage.logs;
 
 import com.vein.raft.client.CommandTypes;
 import com.vein.serializer.api.AbstractSerializableManager;
+import com.vein.serializer.api.Serializable;
 
 /**
  * @author shifeng.luo
@@ -14,15 +15,19 @@ public class RaftSerializableTypes extends AbstractSerializableManager {
         for (CommandTypes.SerializableType type : types) {
             register(type.code, type.clazz);
         }
+
+        for (Structure structure : Structure.values()) {
+            register(structure.type, structure.clazz);
+        }
     }
 
     public enum Structure {
-        REQUEST((byte) 1, TestCommand.class);
+        REQUEST((byte) 100, TestCommand.class);
 
         public byte type;
-        public Class<?> clazz;
+        public Class<? extends Serializable> clazz;
 
-        Structure(byte type, Class<?> clazz) {
+        Structure(byte type, Class<? extends Serializable> clazz) {
             this.type = type;
             this.clazz = clazz;
         }
@@ -0,0 +1,64 @@
+package com.vein.raft.server.storage.logs.segment;
+
+import com.vein.raft.server.storage.logs.DurabilityPolicy;
+import com.vein.raft.server.storage.logs.RaftLogger;
+import com.vein.raft.server.storage.logs.RaftLoggerFixture;
+import com.vein.raft.server.storage.logs.TestCommand;
+import com.vein.raft.server.storage.logs.entry.LogEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author shifeng.luo
+ * @version created on 2026/10/19 上午11:00
+ */
+public class MappedSegmentTest {
+
+    private RaftLoggerFixture logs;
+    private RaftLogger raftLogger;
+
+    @Before
+    public void setUp() throws Exception {
+        logs = new RaftLoggerFixture();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        logs.close();
+    }
+
+    private RaftLogger open() {
+        return logs.open(DurabilityPolicy.BATCH, 1024, SegmentType.MMAP);
+    }
+
+    @Test
+    public void reopen() throws Exception {
+        raftLogger = open();
+        logs.appendAndWait(2500);
+        logs.closeLogger();
+
+        File[] files = logs.directory().listFiles((dir, name) -> name.endsWith(".segment"));
+        assertEquals(3, files.length);
+
+        raftLogger = open();
+        assertEquals(2500, raftLogger.lastIndex());
+        List<LogEntry> entries = raftLogger.read(1, 3000, Integer.MAX_VALUE);
+        assertEquals(2500, entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals(i + 1L, entries.get(i).getIndex());
+            assertEquals("test" + (i + 1), ((TestCommand) entries.get(i).getCommand()).getCommand());
+        }
+
+        long index = raftLogger.append(new LogEntry(new TestCommand("test2501"), 1));
+        assertEquals(2501, index);
+        assertEquals(2501, (long) raftLogger.durable(index).get(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,92 @@
+package com.vein.raft.server.storage.logs.segment;
+
+import com.vein.raft.server.storage.logs.RaftLogger;
+import com.vein.raft.server.storage.logs.RaftLoggerFixture;
+import com.vein.raft.server.storage.logs.TestCommand;
+import com.vein.raft.server.storage.logs.entry.LogEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author shifeng.luo
+ * @version created on 2026/10/19 上午10:50
+ */
+public class SegmentManagerTest {
+
+    private RaftLoggerFixture logs;
+    private RaftLogger raftLogger;
+
+    @Before
+    public void setUp() throws Exception {
+        logs = new RaftLoggerFixture();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        logs.close();
+    }
+
+    @Test
+    public void compact() throws Exception {
+        raftLogger = logs.open();
+        logs.appendAndWait(3500);
+        assertEquals(1, raftLogger.firstIndex());
+
+        raftLogger.compact(2600);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (raftLogger.firstIndex() != 2001 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(2001, raftLogger.firstIndex());
+        assertFalse(new File(logs.directory(), "raftLog_1.segment").exists());
+        assertFalse(new File(logs.directory(), "raftLog_1001.index").exists());
+        assertTrue(new File(logs.directory(), "raftLog_2001.segment").exists());
+        assertNull(raftLogger.get(1500));
+        assertTrue(raftLogger.read(1500, 10, Integer.MAX_VALUE).isEmpty());
+        assertEquals(2001, raftLogger.read(2001, 10, Integer.MAX_VALUE).get(0).getIndex());
+    }
+
+    @Test
+    public void compactWhileReading() throws Exception {
+        SegmentManager segments = new SegmentManager("raftLog", logs.directory(), logs.serializer(), 1024 * 1024, 1000,
+            1000);
+        try {
+            for (int i = 1; i <= 2500; i++) {
+                LogEntry entry = new LogEntry(new TestCommand("test" + i), 1);
+                entry.setIndex(segments.nextIndex());
+                segments.append(Collections.singletonList(entry));
+            }
+
+            Segment first = segments.firstSegment();
+            assertTrue(first.retain());
+            segments.compact(1500);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (segments.firstSegment() == first && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            // 文件已经删除，持有引用的读线程仍然可以读取
+            assertEquals(1001, segments.firstSegment().baseIndex());
+            assertFalse(new File(logs.directory(), "raftLog_1.segment").exists());
+            assertTrue(first.isOpened());
+            assertEquals("test500", ((TestCommand) first.get(500).getCommand()).getCommand());
+            assertFalse(first.retain());
+
+            first.release();
+            assertFalse(first.isOpened());
+        } finally {
+            segments.close();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.vein.raft.server.storage.logs.segment;
+
+import com.vein.raft.server.storage.logs.DurabilityPolicy;
+import com.vein.raft.server.storage.logs.RaftLogger;
+import com.vein.raft.server.storage.logs.RaftSerializableTypes;
+import com.vein.raft.server.storage.logs.TestCommand;
+import com.vein.raft.server.storage.logs.entry.LogEntry;
+import com.vein.serializer.api.Serializer;
+import com.vein.serializer.json.JsonSerializer;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 启动恢复耗时的基准测试：写入指定大小的日志后分别测量带footer和不带footer时重新打开的耗时，
+ * 日志大小通过-Dbenchmark.log.bytes指定，默认10GB
+ *
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午4:10
+ */
+public class SegmentRecoveryBenchmark {
+    private static final int SEGMENT_SIZE = 256 * 1024 * 1024;
+    private static final int SEGMENT_ENTRIES = 1024 * 1024;
+    private static final int PAYLOAD_SIZE = 4 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        long logBytes = Long.getLong("benchmark.log.bytes", 10L * 1024 * 1024 * 1024);
+        File directory = Files.createTempDirectory("raft-log-benchmark").toFile();
+        Serializer serializer = new JsonSerializer(new RaftSerializableTypes());
+        try {
+            long lastIndex = write(directory, serializer, logBytes);
+            System.out.println("write " + lastIndex + " entries, " + (size(directory) >> 20) + "MB");
+
+            reopen("sealed segments with footer", directory, serializer, lastIndex);
+
+            File[] files = directory.listFiles((dir, name) -> name.endsWith(".segment"));
+            for (File file : files) {
+                if (SegmentFooter.read(file) != null) {
+                    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                        raf.setLength(raf.length() - SegmentFooter.LENGTH);
+                    }
+                }
+            }
+            reopen("segments without footer", directory, serializer, lastIndex);
+            reopen("segments sealed by recovery", directory, serializer, lastIndex);
+        } finally {
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    private static RaftLogger open(File directory, Serializer serializer) {
+        return new RaftLogger("raftLog", directory, serializer, SEGMENT_SIZE, PAYLOAD_SIZE * 2, SEGMENT_ENTRIES,
+            DurabilityPolicy.NONE, 1000, 1024, 64 * 1024, 64 * 1024 * 1024, SegmentType.CHANNEL, 10000);
+    }
+
+    private static long write(File directory, Serializer serializer, long logBytes) throws Exception {
+        StringBuilder builder = new StringBuilder(PAYLOAD_SIZE);
+        for (int i = 0; i < PAYLOAD_SIZE; i++) {
+            builder.append((char) ('a' + i % 26));
+        }
+        String payload = builder.toString();
+
+        RaftLogger raftLogger = open(directory, serializer);
+        try {
+            long entries = logBytes / PAYLOAD_SIZE;
+            long index = 0;
+            for (long i = 0; i < entries; i++) {
+                index = raftLogger.append(new LogEntry(new TestCommand(payload), 1));
+            }
+            raftLogger.durable(index).get(10, TimeUnit.MINUTES);
+            return index;
+        } finally {
+            raftLogger.close();
+        }
+    }
+
+    private static void reopen(String name, File directory, Serializer serializer, long lastIndex) {
+        long start = System.nanoTime();
+        RaftLogger raftLogger = open(directory, serializer);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        try {
+            if (raftLogger.lastIndex() != lastIndex) {
+                throw new IllegalStateException("recover lastIndex:" + raftLogger.lastIndex() + ", expect:" + lastIndex);
+            }
+            System.out.println(name + ": open " + elapsed + "ms");
+        } finally {
+            raftLogger.close();
+        }
+    }
+
+    private static long size(File directory) {
+        long size = 0;
+        for (File file : directory.listFiles()) {
+            size += file.length();
+        }
+        return size;
+    }
+}
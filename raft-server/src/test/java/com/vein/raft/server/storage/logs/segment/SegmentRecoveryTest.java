@@ -0,0 +1,158 @@
+package com.vein.raft.server.storage.logs.segment;
+
+import com.vein.raft.server.storage.logs.RaftLogger;
+import com.vein.raft.server.storage.logs.RaftLoggerFixture;
+import com.vein.raft.server.storage.logs.TestCommand;
+import com.vein.raft.server.storage.logs.entry.LogEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author shifeng.luo
+ * @version created on 2026/10/18 下午3:40
+ */
+public class SegmentRecoveryTest {
+
+    private RaftLoggerFixture logs;
+    private RaftLogger raftLogger;
+
+    @Before
+    public void setUp() throws Exception {
+        logs = new RaftLoggerFixture();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        logs.close();
+    }
+
+    @Test
+    public void footer() throws Exception {
+        raftLogger = logs.open();
+        append(1, 2500);
+        logs.closeLogger();
+
+        File sealed = new File(logs.directory(), "raftLog_1001.segment");
+        SegmentFooter footer = SegmentFooter.read(sealed);
+        assertNotNull(footer);
+        assertEquals(1000, footer.entries());
+        assertEquals(1001, footer.firstIndex());
+        assertEquals(2000, footer.lastIndex());
+        assertEquals(1, footer.lastTerm());
+        assertEquals(sealed.length() - SegmentFooter.LENGTH, footer.dataLength());
+        assertNotNull(SegmentFooter.read(new File(logs.directory(), "raftLog_1.segment")));
+        assertNull(SegmentFooter.read(new File(logs.directory(), "raftLog_2001.segment")));
+
+        raftLogger = logs.open();
+        assertEquals(2500, raftLogger.lastIndex());
+        verify(1, 2500);
+        assertEquals(2501, raftLogger.append(new LogEntry(new TestCommand("test2501"), 1)));
+    }
+
+    @Test
+    public void missingFooter() throws Exception {
+        raftLogger = logs.open();
+        append(1, 2500);
+        logs.closeLogger();
+
+        File segment = new File(logs.directory(), "raftLog_1001.segment");
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.setLength(file.length() - SegmentFooter.LENGTH);
+        }
+        assertNull(SegmentFooter.read(segment));
+
+        raftLogger = logs.open();
+        assertEquals(2500, raftLogger.lastIndex());
+        verify(1, 2500);
+        assertNotNull(SegmentFooter.read(segment));
+    }
+
+    @Test
+    public void indexNotMatchFooter() throws Exception {
+        raftLogger = logs.open();
+        append(1, 2500);
+        logs.closeLogger();
+
+        // 索引与footer不一致时扫描校验记录帧重建索引
+        File index = new File(logs.directory(), "raftLog_1001.index");
+        long length = index.length();
+        try (RandomAccessFile file = new RandomAccessFile(index, "rw")) {
+            file.setLength(length / 2);
+        }
+
+        raftLogger = logs.open();
+        assertEquals(2500, raftLogger.lastIndex());
+        verify(1, 2500);
+        assertEquals(length, index.length());
+        assertNotNull(SegmentFooter.read(new File(logs.directory(), "raftLog_1001.segment")));
+    }
+
+    @Test
+    public void corruptedTail() throws Exception {
+        raftLogger = logs.open();
+        append(1, 2500);
+        logs.closeLogger();
+
+        File segment = new File(logs.directory(), "raftLog_2001.segment");
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            long length = file.length();
+            while (length > 0) {
+                file.seek(length - 1);
+                if (file.read() != 0) {
+                    break;
+                }
+                length--;
+            }
+            file.seek(length - 10);
+            file.write(0xFF);
+        }
+
+        raftLogger = logs.open();
+        assertEquals(2499, raftLogger.lastIndex());
+        verify(1, 2499);
+        append(2500, 2600);
+        verify(2500, 2600);
+    }
+
+    @Test
+    public void emptyCurrentSegment() throws Exception {
+        raftLogger = logs.open();
+        append(1, 2000);
+        logs.closeLogger();
+
+        raftLogger = logs.open();
+        assertEquals(2000, raftLogger.lastIndex());
+        assertEquals(2000, raftLogger.lastEntry().getIndex());
+        append(2001, 2100);
+        verify(1, 2100);
+    }
+
+    private void append(int from, int to) throws Exception {
+        long last = 0;
+        for (int i = from; i <= to; i++) {
+            last = raftLogger.append(new LogEntry(new TestCommand("test" + i), 1));
+            assertEquals(i, last);
+        }
+        assertEquals(last, (long) raftLogger.durable(last).get(5, TimeUnit.SECONDS));
+    }
+
+    private void verify(int from, int to) {
+        List<LogEntry> entries = raftLogger.read(from, to - from + 1, Integer.MAX_VALUE);
+        assertEquals(to - from + 1, entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals(from + i, entries.get(i).getIndex());
+            assertEquals("test" + (from + i), ((TestCommand) entries.get(i).getCommand()).getCommand());
+        }
+    }
+}
@@ -3,25 +3,35 @@ package com.vein.raft.server.storage.snapshot.file;
 import com.vein.raft.server.storage.snapshot.SnapshotReader;
 import com.vein.raft.server.storage.snapshot.SnapshotWriter;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
 /**
  * @author shifeng.luo
  * @version created on 2017/11/6 下午8:19
  */
 public class FileSnapshotWriterTest {
 
+    private File file;
     private SnapshotWriter writer;
-    private SnapshotReader reader;
 
     @Before
-    public void init() {
-        String name = "/Users/shifengluo/logs/test.txt";
-        writer = new FileSnapshotWriter(new File(name), null);
-        reader = new FileSnapshotReader(null, new File(name));
+    public void init() throws Exception {
+        file = File.createTempFile("snapshot", ".snapshot");
+        writer = new FileSnapshotWriter(file, null, 64);
+    }
+
+    @After
+    public void tearDown() {
+        writer.close();
+        file.delete();
     }
 
     @Test
@@ -30,8 +40,10 @@ public class FileSnapshotWriterTest {
         writer.writeString(test);
         writer.flush();
         writer.close();
-        String string = reader.readString();
-        System.out.println(string);
+
+        SnapshotReader reader = new FileSnapshotReader(null, file, 64);
+        assertEquals(test, reader.readString());
+        reader.close();
     }
 
     @Test
@@ -41,8 +53,64 @@ public class FileSnapshotWriterTest {
         writer.trimToValidSize();
         writer.flush();
         writer.close();
-        String string = reader.readString();
-        System.out.println(string);
+        assertEquals(8 + 4 + test.length(), file.length());
+
+        SnapshotReader reader = new FileSnapshotReader(null, file, 64);
+        assertEquals(test, reader.readString());
+        assertFalse(reader.hasRemaining());
+        reader.close();
     }
 
-}
\ No newline at end of file
+    @Test
+    public void acrossChunks() throws Exception {
+        byte[] bytes = new byte[150];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+
+        // 8字节的头部之后写入，让基本类型跨越块的边界
+        for (int i = 0; i < 20; i++) {
+            writer.writeByte((byte) i).writeShort((short) i).writeInt(i).writeLong(i).writeDouble(i);
+        }
+        writer.write(bytes);
+        writer.writeUTF8("块");
+        long size = writer.position();
+        writer.trimToValidSize();
+        writer.close();
+        assertEquals(size, file.length());
+
+        SnapshotReader reader = new FileSnapshotReader(null, file, 64);
+        for (int i = 0; i < 20; i++) {
+            assertEquals((byte) i, reader.readByte());
+            assertEquals((short) i, reader.readShort());
+            assertEquals(i, reader.readInt());
+            assertEquals(i, reader.readLong());
+            assertEquals(i, reader.readDouble(), 0);
+        }
+        byte[] read = new byte[bytes.length];
+        reader.read(read);
+        assertArrayEquals(bytes, read);
+        assertEquals("块", reader.readUTF8());
+        assertFalse(reader.hasRemaining());
+        reader.close();
+    }
+
+    @Test
+    public void beyondTwoGigabytes() throws Exception {
+        writer.close();
+        writer = new FileSnapshotWriter(file, null, 4096);
+        writer.skip(Integer.MAX_VALUE);
+        writer.skip(Integer.MAX_VALUE);
+        writer.writeLong(Long.MAX_VALUE);
+        writer.trimToValidSize();
+        writer.close();
+        assertEquals(8 + 2L * Integer.MAX_VALUE + 8, file.length());
+
+        SnapshotReader reader = new FileSnapshotReader(null, file, 4096);
+        reader.skip(Integer.MAX_VALUE);
+        reader.skip(Integer.MAX_VALUE);
+        assertEquals(8, reader.remaining());
+        assertEquals(Long.MAX_VALUE, reader.readLong());
+        reader.close();
+    }
+}